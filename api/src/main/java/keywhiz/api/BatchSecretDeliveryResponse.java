@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * One entry of a batch secret response. Carries the HTTP status the equivalent single-secret
+ * request would have received, and the secret itself when that status is 200.
+ */
+public class BatchSecretDeliveryResponse {
+  /** Secret name as it appeared in the request. */
+  @JsonProperty
+  public final String name;
+
+  @JsonProperty
+  public final int status;
+
+  @Nullable
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonProperty
+  public final SecretDeliveryResponse secret;
+
+  public BatchSecretDeliveryResponse(@JsonProperty("name") String name,
+      @JsonProperty("status") int status,
+      @Nullable @JsonProperty("secret") SecretDeliveryResponse secret) {
+    this.name = name;
+    this.status = status;
+    this.secret = secret;
+  }
+
+  public static BatchSecretDeliveryResponse found(String name, SecretDeliveryResponse secret) {
+    return new BatchSecretDeliveryResponse(name, 200, checkNotNull(secret));
+  }
+
+  public static BatchSecretDeliveryResponse failed(String name, int status) {
+    return new BatchSecretDeliveryResponse(name, status, null);
+  }
+
+  @Override public int hashCode() {
+    return Objects.hashCode(name, status, secret);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o instanceof BatchSecretDeliveryResponse) {
+      BatchSecretDeliveryResponse that = (BatchSecretDeliveryResponse) o;
+      if (Objects.equal(this.name, that.name) &&
+          this.status == that.status &&
+          Objects.equal(this.secret, that.secret)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
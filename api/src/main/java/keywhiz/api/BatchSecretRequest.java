@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import javax.validation.constraints.Size;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/** Request for several secrets at once, each named as in /secret/{name}. */
+public class BatchSecretRequest {
+  public static final int MAX_SECRETS = 1000;
+
+  /** Secret names, each optionally suffixed with a version delimiter and version. */
+  @NotEmpty
+  @Size(max = MAX_SECRETS)
+  @JsonProperty
+  public final ImmutableList<String> secrets;
+
+  public BatchSecretRequest(@JsonProperty("secrets") ImmutableList<String> secrets) {
+    this.secrets = secrets;
+  }
+
+  @Override public int hashCode() {
+    return Objects.hashCode(secrets);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o instanceof BatchSecretRequest) {
+      BatchSecretRequest that = (BatchSecretRequest) o;
+      if (Objects.equal(this.secrets, that.secrets)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
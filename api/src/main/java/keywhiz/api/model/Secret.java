@@ -17,6 +17,8 @@ package keywhiz.api.model;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import java.text.ParseException;
 import java.time.OffsetDateTime;
@@ -49,8 +51,8 @@ public class Secret {
 
   private final String description;
 
-  /** Base64-encoded content of this version of the secret. */
-  private final String secret;
+  /** Base64-encoded content of this version of the secret. Computed on first use when lazy. */
+  private final Supplier<String> secret;
 
   private final OffsetDateTime createdAt;
   private final String createdBy;
@@ -75,13 +77,49 @@ public class Secret {
       @Nullable Map<String, String> metadata,
       @Nullable String type,
       @Nullable Map<String, String> generationOptions) {
+    this(id, name, version, description, Suppliers.ofInstance(checkNotNull(secret)), createdAt,
+        createdBy, updatedAt, updatedBy, metadata, type, generationOptions);
+  }
+
+  /**
+   * Creates a secret whose content is only computed, typically decrypted, when first read. The
+   * result is kept for later reads.
+   */
+  public Secret(long id,
+      String name,
+      @Nullable String version,
+      @Nullable String description,
+      LazyString secret,
+      OffsetDateTime createdAt,
+      @Nullable String createdBy,
+      OffsetDateTime updatedAt,
+      @Nullable String updatedBy,
+      @Nullable Map<String, String> metadata,
+      @Nullable String type,
+      @Nullable Map<String, String> generationOptions) {
+    this(id, name, version, description, Suppliers.memoize(checkNotNull(secret)::compute),
+        createdAt, createdBy, updatedAt, updatedBy, metadata, type, generationOptions);
+  }
+
+  private Secret(long id,
+      String name,
+      @Nullable String version,
+      @Nullable String description,
+      Supplier<String> secret,
+      OffsetDateTime createdAt,
+      @Nullable String createdBy,
+      OffsetDateTime updatedAt,
+      @Nullable String updatedBy,
+      @Nullable Map<String, String> metadata,
+      @Nullable String type,
+      @Nullable Map<String, String> generationOptions) {
 
     checkArgument(!name.isEmpty());
     this.id = id;
     this.name = name;
     this.version = nullToEmpty(version);
     this.description = nullToEmpty(description);
-    this.secret = checkNotNull(secret); /* Expected empty when sanitized. */
+    this.secret = secret; /* Expected empty when sanitized. */
     this.createdAt = checkNotNull(createdAt);
     this.createdBy = nullToEmpty(createdBy);
     this.updatedAt = checkNotNull(updatedAt);
@@ -119,7 +157,7 @@ public class Secret {
   }
 
   public String getSecret() {
-    return secret;
+    return checkNotNull(secret.get());
   }
 
   public OffsetDateTime getCreatedAt() {
@@ -170,6 +208,7 @@ public class Secret {
     return parts;
   }
 
+  /** Compares content too, so comparing or hashing a lazy secret computes its content. */
   @Override
   public boolean equals(Object o) {
     if (o instanceof Secret) {
@@ -178,7 +217,7 @@ public class Secret {
           Objects.equal(this.name, that.name) &&
           Objects.equal(this.version, that.version) &&
           Objects.equal(this.description, that.description) &&
-          Objects.equal(this.secret, that.secret) &&
+          Objects.equal(this.getSecret(), that.getSecret()) &&
           Objects.equal(this.createdAt, that.createdAt) &&
           Objects.equal(this.createdBy, that.createdBy) &&
           Objects.equal(this.updatedAt, that.updatedAt) &&
@@ -193,8 +232,14 @@ public class Secret {
   }
 
   @Override public int hashCode() {
-    return Objects.hashCode(id, name, version, description, secret, createdAt, createdBy, updatedAt,
-        updatedBy, metadata, type, generationOptions);
+    return Objects.hashCode(id, name, version, description, getSecret(), createdAt, createdBy,
+        updatedAt, updatedBy, metadata, type, generationOptions);
+  }
+
+  /** Content of a secret which is computed only when it is read, such as by decryption. */
+  @FunctionalInterface
+  public interface LazyString {
+    String compute();
   }
 
   @Override
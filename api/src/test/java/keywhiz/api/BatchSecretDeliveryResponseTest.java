@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.OffsetDateTime;
+import org.junit.Test;
+
+import static keywhiz.testing.JsonHelpers.asJson;
+import static keywhiz.testing.JsonHelpers.jsonFixture;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchSecretDeliveryResponseTest {
+  @Test public void serializesCorrectly() throws Exception {
+    SecretDeliveryResponse secret = new SecretDeliveryResponse(
+        "Database_Password",
+        "YXNkZGFz",
+        6,
+        OffsetDateTime.parse("2011-09-29T15:46:00.232Z"),
+        false,
+        ImmutableMap.of());
+
+    ImmutableList<BatchSecretDeliveryResponse> responses = ImmutableList.of(
+        BatchSecretDeliveryResponse.found("Database_Password", secret),
+        BatchSecretDeliveryResponse.failed("Nobody_PgPass", 403));
+    assertThat(asJson(responses))
+        .isEqualTo(jsonFixture("fixtures/batchSecretDeliveryResponse.json"));
+  }
+}
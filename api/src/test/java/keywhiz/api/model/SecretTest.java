@@ -16,6 +16,8 @@
 package keywhiz.api.model;
 
 import java.text.ParseException;
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 import static keywhiz.api.model.Secret.splitNameAndVersion;
@@ -40,4 +42,31 @@ public class SecretTest {
   public void splitRejectsBadSecretName() throws Exception {
     splitNameAndVersion("secretName..notAVersion..version");
   }
+
+  @Test public void lazySecretComputedOnceOnFirstRead() {
+    AtomicInteger computations = new AtomicInteger();
+    OffsetDateTime now = OffsetDateTime.now();
+    Secret secret = new Secret(1, "name", null, null, () -> {
+      computations.incrementAndGet();
+      return "c2VjcmV0";
+    }, now, null, now, null, null, null, null);
+
+    assertThat(secret.getName()).isEqualTo("name");
+    assertThat(computations.get()).isZero();
+
+    assertThat(secret.getSecret()).isEqualTo("c2VjcmV0");
+    assertThat(secret.getSecret()).isEqualTo("c2VjcmV0");
+    assertThat(computations.get()).isEqualTo(1);
+  }
+
+  @Test public void lazySecretEqualsEagerSecret() {
+    OffsetDateTime now = OffsetDateTime.now();
+    Secret eager = new Secret(1, "name", "v1", "desc", "c2VjcmV0", now, "creator", now, "updater",
+        null, null, null);
+    Secret lazy = new Secret(1, "name", "v1", "desc", () -> "c2VjcmV0", now, "creator", now,
+        "updater", null, null, null);
+
+    assertThat(lazy).isEqualTo(eager);
+    assertThat(lazy.hashCode()).isEqualTo(eager.hashCode());
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.dropwizard.jackson.Jackson;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import keywhiz.KeywhizService;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.SanitizedSecret;
+import keywhiz.commands.DbSeedCommand;
+import keywhiz.service.config.Readonly;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.daos.AclCache;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.ClientCache;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.SecretDAO;
+import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import keywhiz.utility.DSLContexts;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.jooq.DSLContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getEncoder;
+import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
+import static keywhiz.jooq.tables.Groups.GROUPS;
+import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
+
+/**
+ * Throughput of {@link AclDAO#getSanitizedSecretsFor(Client)}, which backs the secret listing of
+ * every client, against an in-memory H2 database.
+ *
+ * The database holds the {@link DbSeedCommand} data set, plus a group of generated secrets granted
+ * to the seeded client "client" so the result size can be varied.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AclDAOBenchmark {
+  private static final int SEEDED_CLIENT_ID = 768;
+
+  @Param({"10", "100", "1000"})
+  int extraSecrets;
+
+  private JdbcConnectionPool dataSource;
+  private AclDAO aclDAO;
+  private Client client;
+
+  @Setup public void setUp() throws SQLException {
+    dataSource = JdbcConnectionPool.create("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "", "");
+    Flyway flyway = new Flyway();
+    flyway.setDataSource(dataSource);
+    flyway.setLocations("db/h2/migration");
+    flyway.clean();
+    flyway.migrate();
+
+    DSLContext jooq = DSLContexts.databaseAgnostic(dataSource);
+    DbSeedCommand.doImport(jooq);
+
+    ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+    ContentCryptographer cryptographer = BenchmarkFixtures.contentCryptographer(0);
+    AbstractModule module = new AbstractModule() {
+      @Override protected void configure() {
+        bind(DSLContext.class).toInstance(jooq);
+        bind(DSLContext.class).annotatedWith(Readonly.class).toInstance(jooq);
+        bind(ObjectMapper.class).toInstance(mapper);
+        bind(AclCache.class).toInstance(AclCache.disabled());
+        bind(ClientCache.class).toInstance(ClientCache.disabled());
+      }
+    };
+    Injector injector = Guice.createInjector(module);
+    SecretDAO secretDAO = injector.getInstance(SecretDAOFactory.class).readwrite();
+    aclDAO = injector.getInstance(AclDAOFactory.class).readonly();
+
+    int groupId = jooq.insertInto(GROUPS, GROUPS.NAME)
+        .values("benchmark")
+        .returning(GROUPS.ID)
+        .fetchOne()
+        .getId();
+    jooq.insertInto(MEMBERSHIPS, MEMBERSHIPS.GROUPID, MEMBERSHIPS.CLIENTID)
+        .values(groupId, SEEDED_CLIENT_ID)
+        .execute();
+
+    String plaintextBase64 =
+        getEncoder().encodeToString("a 32 byte secret value, or so...".getBytes(UTF_8));
+    for (int i = 0; i < extraSecrets; i++) {
+      String name = "benchmark-secret-" + i;
+      long secretId = secretDAO.createSecret(name,
+          cryptographer.encryptionKeyDerivedFrom(name).encrypt(plaintextBase64), "",
+          "benchmark", ImmutableMap.of("mode", "0400"), "", null, ImmutableMap.of())
+          .series().id();
+      jooq.insertInto(ACCESSGRANTS, ACCESSGRANTS.GROUPID, ACCESSGRANTS.SECRETID)
+          .values(groupId, Math.toIntExact(secretId))
+          .execute();
+    }
+
+    client = injector.getInstance(ClientDAOFactory.class)
+        .readonly()
+        .getClientById(SEEDED_CLIENT_ID)
+        .get();
+  }
+
+  @TearDown public void tearDown() {
+    dataSource.dispose();
+  }
+
+  @Benchmark public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor() {
+    return aclDAO.getSanitizedSecretsFor(client);
+  }
+}
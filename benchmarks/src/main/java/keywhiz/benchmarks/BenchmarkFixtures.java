@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import com.sun.crypto.provider.SunJCE;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import keywhiz.service.crypto.ContentCryptographer;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import static com.google.common.io.BaseEncoding.base16;
+
+/** Shared, deterministic inputs for benchmarks. */
+final class BenchmarkFixtures {
+  static final SecretKey BASE_KEY = new SecretKeySpec(
+      base16().lowerCase().decode("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"), "AES");
+
+  private static final Provider BC = new BouncyCastleProvider();
+
+  static {
+    if (Security.getProvider(BC.getName()) == null) {
+      Security.addProvider(BC);
+    }
+  }
+
+  private BenchmarkFixtures() {}
+
+  /**
+   * @return a cryptographer configured like {@link keywhiz.service.crypto.CryptoModule} does: SunJCE
+   * for key derivation and BouncyCastle for encryption.
+   */
+  static ContentCryptographer contentCryptographer() {
+    return contentCryptographer(100);
+  }
+
+  /**
+   * @param verificationPercent share of encryptions verified by decrypting them again
+   * @return a cryptographer as {@link #contentCryptographer()}, with custom verification.
+   */
+  static ContentCryptographer contentCryptographer(int verificationPercent) {
+    return new ContentCryptographer(BASE_KEY, new SunJCE(), BC, new SecureRandom(),
+        verificationPercent);
+  }
+}
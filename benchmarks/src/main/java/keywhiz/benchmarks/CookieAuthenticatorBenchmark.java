@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import java.security.SecureRandom;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.Cookie;
+import keywhiz.KeywhizService;
+import keywhiz.auth.User;
+import keywhiz.auth.cookie.CookieAuthenticator;
+import keywhiz.auth.cookie.GCMEncryptor;
+import keywhiz.auth.cookie.UserCookieData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link CookieAuthenticator#authenticate}, run on every admin request carrying a
+ * session cookie. Measured single threaded and contended, since all requests share one
+ * {@link GCMEncryptor}. Repeats of the valid cookie are served from the verified-cookie cache,
+ * while the tampered cookie is decrypted every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CookieAuthenticatorBenchmark {
+  private CookieAuthenticator authenticator;
+  private Cookie validCookie;
+  private Cookie tamperedCookie;
+
+  @Setup public void setUp() throws Exception {
+    ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+    GCMEncryptor encryptor =
+        new GCMEncryptor(BenchmarkFixtures.BASE_KEY.getEncoded(), new SecureRandom());
+    authenticator = new CookieAuthenticator(mapper, encryptor);
+
+    UserCookieData cookieData =
+        new UserCookieData(User.named("benchmark"), ZonedDateTime.now().plusDays(1));
+    byte[] ciphertext = encryptor.encrypt(mapper.writeValueAsBytes(cookieData));
+    validCookie = new Cookie("session", Base64.getEncoder().encodeToString(ciphertext));
+
+    ciphertext[ciphertext.length - 1] = (byte) (ciphertext[ciphertext.length - 1] ^ 1);
+    tamperedCookie = new Cookie("session", Base64.getEncoder().encodeToString(ciphertext));
+  }
+
+  @Benchmark public Optional<User> authenticate() {
+    return authenticator.authenticate(validCookie);
+  }
+
+  @Benchmark @Threads(4) public Optional<User> authenticateContended() {
+    return authenticator.authenticate(validCookie);
+  }
+
+  @Benchmark public Optional<User> rejectTampered() {
+    return authenticator.authenticate(tamperedCookie);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.benchmarks;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.AEADBadTagException;
+import keywhiz.auth.cookie.GCMEncryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Throughput of {@link GCMEncryptor}, which seals every session cookie. All requests share one
+ * encryptor, so throughput should grow with the number of threads up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GCMEncryptorBenchmark {
+  // About the size of serialized session cookie data.
+  private static final byte[] PLAINTEXT =
+      "{\"username\":\"benchmark\",\"expiration\":\"2015-01-01T00:00:00Z\"}".getBytes(UTF_8);
+
+  private GCMEncryptor encryptor;
+  private byte[] ciphertext;
+
+  @Setup public void setUp() throws Exception {
+    encryptor = new GCMEncryptor(BenchmarkFixtures.BASE_KEY.getEncoded(), new SecureRandom());
+    ciphertext = encryptor.encrypt(PLAINTEXT);
+  }
+
+  @Benchmark @Threads(1) public byte[] encrypt() throws AEADBadTagException {
+    return encryptor.encrypt(PLAINTEXT);
+  }
+
+  @Benchmark @Threads(2) public byte[] encrypt2Threads() throws AEADBadTagException {
+    return encryptor.encrypt(PLAINTEXT);
+  }
+
+  @Benchmark @Threads(4) public byte[] encrypt4Threads() throws AEADBadTagException {
+    return encryptor.encrypt(PLAINTEXT);
+  }
+
+  @Benchmark @Threads(1) public byte[] decrypt() throws AEADBadTagException {
+    return encryptor.decrypt(ciphertext);
+  }
+
+  @Benchmark @Threads(4) public byte[] decrypt4Threads() throws AEADBadTagException {
+    return encryptor.decrypt(ciphertext);
+  }
+}
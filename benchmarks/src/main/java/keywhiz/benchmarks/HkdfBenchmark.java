@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import keywhiz.hkdf.Hkdf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Throughput of {@link Hkdf#expand}, which derives one key per secret name. Output lengths cover
+ * a single block (the 16 byte content keys) and several blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HkdfBenchmark {
+  @Param({"16", "64"})
+  int outputLength;
+
+  private Hkdf hkdf;
+  private SecretKey prk;
+  private byte[] info;
+
+  @Setup public void setUp() {
+    hkdf = Hkdf.usingDefaults();
+    prk = hkdf.extract(null, BenchmarkFixtures.BASE_KEY.getEncoded());
+    info = "benchmark-secret".getBytes(UTF_8);
+  }
+
+  @Benchmark public byte[] expand() {
+    return hkdf.expand(prk, info, outputLength);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.util.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.net.SocketFactory;
+import keywhiz.auth.User;
+import keywhiz.auth.ldap.LdapAuthenticator;
+import keywhiz.auth.ldap.LdapConnectionFactory;
+import keywhiz.auth.ldap.LdapLookupCache;
+import keywhiz.auth.ldap.LdapLookupConfig;
+import keywhiz.service.config.CacheConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of an admin login through {@link LdapAuthenticator}, against an in-memory directory
+ * over plain LDAP. A cached login skips the DN and role searches but still binds as the user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LdapAuthenticatorBenchmark {
+  private static final String BASE_DN = "dc=example,dc=com";
+  private static final String SERVICE_DN = "cn=keywhiz," + BASE_DN;
+  private static final String USER_DN = "uid=benchmark,ou=users," + BASE_DN;
+
+  private static final BasicCredentials CREDENTIALS =
+      new BasicCredentials("benchmark", "benchmarkpass");
+
+  private InMemoryDirectoryServer directoryServer;
+  private LdapConnectionFactory connectionFactory;
+  private LdapAuthenticator uncachedAuthenticator;
+  private LdapAuthenticator cachedAuthenticator;
+
+  @Setup public void setUp() throws Exception {
+    directoryServer = new InMemoryDirectoryServer(BASE_DN);
+    directoryServer.add("dn: " + BASE_DN, "objectClass: domain", "dc: example");
+    directoryServer.add("dn: " + SERVICE_DN, "objectClass: person", "cn: keywhiz", "sn: keywhiz",
+        "userPassword: servicepass");
+    directoryServer.add("dn: ou=users," + BASE_DN, "objectClass: organizationalUnit", "ou: users");
+    directoryServer.add("dn: ou=roles," + BASE_DN, "objectClass: organizationalUnit", "ou: roles");
+    directoryServer.add("dn: " + USER_DN, "objectClass: inetOrgPerson", "uid: benchmark",
+        "cn: benchmark", "sn: benchmark", "userPassword: benchmarkpass");
+    directoryServer.add("dn: cn=admin,ou=roles," + BASE_DN, "objectClass: groupOfUniqueNames",
+        "cn: admin", "uniqueMember: " + USER_DN);
+    directoryServer.startListening();
+
+    LdapLookupConfig config = new LdapLookupConfig("ou=users," + BASE_DN, "uid",
+        ImmutableSet.of("admin"), "ou=roles," + BASE_DN);
+    connectionFactory = new LdapConnectionFactory("localhost", directoryServer.getListenPort(),
+        SERVICE_DN, "servicepass", config, SocketFactory.getDefault());
+
+    CacheConfig cacheConfig = new CacheConfig();
+    cacheConfig.setEnabled(true);
+    cacheConfig.setExpiration(Duration.minutes(10));
+    uncachedAuthenticator = new LdapAuthenticator(connectionFactory, config);
+    cachedAuthenticator = new LdapAuthenticator(connectionFactory, config,
+        LdapLookupCache.create(cacheConfig, Duration.seconds(5), new MetricRegistry()));
+  }
+
+  @TearDown public void tearDown() {
+    connectionFactory.close();
+    directoryServer.shutDown(true);
+  }
+
+  @Benchmark public Optional<User> loginUncached() {
+    return uncachedAuthenticator.authenticate(CREDENTIALS);
+  }
+
+  @Benchmark public Optional<User> loginCached() {
+    return cachedAuthenticator.authenticate(CREDENTIALS);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import keywhiz.utility.SecretTemplateCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link SecretTemplateCompiler#compile} for templates used by the templated secret
+ * generator. A compiler is single use, so a new one is created per call as the generator does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SecretTemplateCompilerBenchmark {
+  @Param({
+      "{{#alphanumeric}}32{{/alphanumeric}}",
+      "user:{{#numeric}}10{{/numeric}}:{{#hexadecimal}}64{{/hexadecimal}}"
+  })
+  String template;
+
+  private SecureRandom secureRandom;
+
+  @Setup public void setUp() {
+    secureRandom = new SecureRandom();
+  }
+
+  @Benchmark public String compile() {
+    return new SecretTemplateCompiler(secureRandom).compile(template);
+  }
+}
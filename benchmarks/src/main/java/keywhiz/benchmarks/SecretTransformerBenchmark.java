@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.SecretTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getEncoder;
+
+/**
+ * Throughput of {@link SecretTransformer}, turning stored rows into decrypted {@link Secret}s, for
+ * a single secret and for lists the size of a typical client's secrets or of a long-lived secret's
+ * versions, decrypted serially, in parallel and lazily.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SecretTransformerBenchmark {
+  private static final int PARALLELISM = 4;
+
+  @Param({"1", "100", "500"})
+  int secretCount;
+
+  private SecretTransformer transformer;
+  private SecretTransformer parallelTransformer;
+  private ExecutorService executor;
+  private SecretSeriesAndContent single;
+  private List<SecretSeriesAndContent> list;
+
+  @Setup public void setUp() {
+    ContentCryptographer cryptographer = BenchmarkFixtures.contentCryptographer();
+    transformer = new SecretTransformer(cryptographer);
+    executor = Executors.newFixedThreadPool(PARALLELISM - 1);
+    parallelTransformer = new SecretTransformer(cryptographer, executor, PARALLELISM);
+
+    OffsetDateTime now = OffsetDateTime.now();
+    String plaintextBase64 =
+        getEncoder().encodeToString("a 32 byte secret value, or so...".getBytes(UTF_8));
+    ImmutableList.Builder<SecretSeriesAndContent> secrets = ImmutableList.builder();
+    for (int i = 0; i < secretCount; i++) {
+      String name = "benchmark-secret-" + i;
+      String encrypted = cryptographer.encryptionKeyDerivedFrom(name).encrypt(plaintextBase64);
+      secrets.add(SecretSeriesAndContent.of(
+          SecretSeries.of(i, name, null, now, "benchmark", now, "benchmark", null, null),
+          SecretContent.of(i, i, encrypted, "", now, "benchmark", now, "benchmark",
+              ImmutableMap.of("mode", "0400"))));
+    }
+    list = secrets.build();
+    single = list.get(0);
+  }
+
+  @Benchmark public Secret transformOne() {
+    return transformer.transform(single);
+  }
+
+  @TearDown public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark public List<Secret> transformList() {
+    return transformer.transform(list);
+  }
+
+  @Benchmark public List<Secret> transformListInParallel() {
+    return parallelTransformer.transform(list);
+  }
+
+  /** Lazy transformation followed by reading only the first secret, as detail views do. */
+  @Benchmark public String transformListLazilyReadFirst() {
+    return transformer.transformLazily(list).get(0).getSecret();
+  }
+}
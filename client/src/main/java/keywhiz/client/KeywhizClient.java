@@ -18,6 +18,7 @@ package keywhiz.client;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.squareup.okhttp.Call;
 import com.squareup.okhttp.HttpUrl;
@@ -27,8 +28,13 @@ import com.squareup.okhttp.Request;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 import javax.ws.rs.core.HttpHeaders;
 import keywhiz.api.ClientDetailResponse;
 import keywhiz.api.CreateClientRequest;
@@ -54,6 +60,9 @@ import static java.lang.String.format;
 public class KeywhizClient {
   public static final MediaType JSON = MediaType.parse("application/json");
 
+  /** Number of entries requested per page when iterating over a listing. */
+  private static final int PAGE_SIZE = 500;
+
   public static class MalformedRequestException extends IOException {
 
     @Override public String getMessage() {
@@ -124,6 +133,15 @@ public class KeywhizClient {
     return mapper.readValue(response, new TypeReference<List<Group>>() {});
   }
 
+  /**
+   * Lazily iterates over all groups, requesting them from the server one page at a time.
+   *
+   * @return groups ordered by id. Request failures surface as {@link UncheckedIOException}.
+   */
+  public Iterator<Group> iterateGroups() {
+    return paginate("/admin/groups", new TypeReference<List<Group>>() {}, Group::getId);
+  }
+
   public GroupDetailResponse createGroup(String name, String description) throws IOException {
     checkArgument(!name.isEmpty());
     String response = httpPost(baseUrl.resolve("/admin/groups"), new CreateGroupRequest(name, description));
@@ -144,6 +162,16 @@ public class KeywhizClient {
     return mapper.readValue(response, new TypeReference<List<SanitizedSecret>>() {});
   }
 
+  /**
+   * Lazily iterates over all secrets, requesting them from the server one page at a time.
+   *
+   * @return secrets ordered by id. Request failures surface as {@link UncheckedIOException}.
+   */
+  public Iterator<SanitizedSecret> iterateSecrets() {
+    return paginate("/admin/secrets", new TypeReference<List<SanitizedSecret>>() {},
+        SanitizedSecret::id);
+  }
+
   public SecretDetailResponse createSecret(String name, String description, byte[] content, boolean withVersion,
       ImmutableMap<String, String> metadata) throws IOException {
     checkArgument(!name.isEmpty());
@@ -186,6 +214,15 @@ public class KeywhizClient {
     return mapper.readValue(httpResponse, new TypeReference<List<Client>>() {});
   }
 
+  /**
+   * Lazily iterates over all clients, requesting them from the server one page at a time.
+   *
+   * @return clients ordered by id. Request failures surface as {@link UncheckedIOException}.
+   */
+  public Iterator<Client> iterateClients() {
+    return paginate("/admin/clients", new TypeReference<List<Client>>() {}, Client::getId);
+  }
+
   public ClientDetailResponse createClient(String name) throws IOException {
     checkArgument(!name.isEmpty());
     String response = httpPost(baseUrl.resolve("/admin/clients"), new CreateClientRequest(name));
@@ -248,6 +285,52 @@ public class KeywhizClient {
     return call.execute().code() != HttpStatus.SC_UNAUTHORIZED;
   }
 
+  /**
+   * Walks a keyset-paginated listing, using the greatest id of each page as the cursor for the
+   * next. A page with fewer distinct ids than requested is the last one, and so is a page without
+   * any id past the cursor, which a server ignoring the paging parameters returns once it has sent
+   * every entry.
+   */
+  private <T> Iterator<T> paginate(String path, TypeReference<List<T>> type,
+      ToLongFunction<T> idOf) {
+    return new AbstractIterator<T>() {
+      private Iterator<T> page = Collections.emptyIterator();
+      private long after = 0;
+      private boolean lastPage = false;
+
+      @Override protected T computeNext() {
+        while (!page.hasNext()) {
+          if (lastPage) {
+            return endOfData();
+          }
+          long cursor = after;
+          List<T> entries = fetchPage().stream()
+              .filter(entry -> idOf.applyAsLong(entry) > cursor)
+              .collect(Collectors.toList());
+          if (entries.isEmpty()) {
+            return endOfData();
+          }
+          lastPage = entries.stream().mapToLong(idOf).distinct().count() < PAGE_SIZE;
+          after = entries.stream().mapToLong(idOf).max().getAsLong();
+          page = entries.iterator();
+        }
+        return page.next();
+      }
+
+      private List<T> fetchPage() {
+        HttpUrl url = baseUrl.resolve(path).newBuilder()
+            .addQueryParameter("after", Long.toString(after))
+            .addQueryParameter("limit", Integer.toString(PAGE_SIZE))
+            .build();
+        try {
+          return mapper.readValue(httpGet(url), type);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
+
   /**
    * Maps some of the common HTTP errors to the corresponding exceptions.
    */
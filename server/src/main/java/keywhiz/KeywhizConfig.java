@@ -23,12 +23,21 @@ import io.dropwizard.db.ManagedDataSource;
 import java.io.IOException;
 import java.util.Optional;
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import keywhiz.api.validation.ValidBase64;
 import keywhiz.auth.UserAuthenticatorFactory;
 import keywhiz.auth.cookie.CookieConfig;
+import keywhiz.generators.SecretGenerator;
+import keywhiz.service.config.CacheConfig;
+import keywhiz.service.config.EnrollmentConfig;
 import keywhiz.service.config.KeyStoreConfig;
 import keywhiz.service.config.Templates;
+import keywhiz.service.config.WatchConfig;
+import keywhiz.service.filters.CookieRenewingFilter;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -78,9 +87,45 @@ public class KeywhizConfig extends Configuration {
   @JsonProperty
   private String derivationProviderClass = "com.sun.crypto.provider.SunJCE";
 
+  @Min(0) @Max(100)
+  @JsonProperty
+  private int encryptionVerificationPercent = 100;
+
   @JsonProperty
   private String migrationsDir;
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private CacheConfig aclCache = new CacheConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private CacheConfig clientCache = new CacheConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private WatchConfig secretsWatch = new WatchConfig();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private EnrollmentConfig clientEnrollment = new EnrollmentConfig();
+
+  @Min(1)
+  @JsonProperty
+  private int decryptionThreads = 4;
+
+  @Min(1)
+  @JsonProperty
+  private int maxSecretBatchSize = SecretGenerator.DEFAULT_MAX_BATCH_SIZE;
+
+  @DecimalMin("0") @DecimalMax("1")
+  @JsonProperty
+  private double sessionRenewalFraction = CookieRenewingFilter.DEFAULT_RENEWAL_FRACTION;
+
   public String getEnvironment() {
     return environment;
   }
@@ -170,6 +215,57 @@ public class KeywhizConfig extends Configuration {
     return derivationProviderClass;
   }
 
+  /**
+   * @return Share of secret encryptions, from 0 (off) to 100 (always), which are checked by
+   * decrypting the result and comparing it to the plaintext.
+   */
+  public int getEncryptionVerificationPercent() {
+    return encryptionVerificationPercent;
+  }
+
+  /** @return Configuration for caching the secrets readable by each client. Disabled by default. */
+  public CacheConfig getAclCacheConfig() {
+    return aclCache;
+  }
+
+  /**
+   * @return Configuration for caching clients authenticated by certificate. Disabled by default.
+   */
+  public CacheConfig getClientCacheConfig() {
+    return clientCache;
+  }
+
+  /** @return Configuration for clients long-polling for changes to their secrets. */
+  public WatchConfig getSecretsWatchConfig() {
+    return secretsWatch;
+  }
+
+  /** @return Configuration for batching the creation of clients seen for the first time. */
+  public EnrollmentConfig getClientEnrollmentConfig() {
+    return clientEnrollment;
+  }
+
+  /**
+   * @return Threads decrypting long lists of secrets, such as all versions of a secret, in
+   * parallel with the request thread.
+   */
+  public int getDecryptionThreads() {
+    return decryptionThreads;
+  }
+
+  /** @return Largest number of requests accepted in one batch of secret generation. */
+  public int getMaxSecretBatchSize() {
+    return maxSecretBatchSize;
+  }
+
+  /**
+   * @return Share of a session cookie's lifetime after which admin responses renew it. At 0, every
+   * response renews the cookie.
+   */
+  public double getSessionRenewalFraction() {
+    return sessionRenewalFraction;
+  }
+
   public static class TemplatedDataSourceFactory extends DataSourceFactory {
     @Override public String getPassword() {
       try {
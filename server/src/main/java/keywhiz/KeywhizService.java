@@ -38,10 +38,12 @@ import keywhiz.commands.DbSeedCommand;
 import keywhiz.commands.GenerateAesKeyCommand;
 import keywhiz.commands.MigrateCommand;
 import keywhiz.commands.PreviewMigrateCommand;
+import keywhiz.commands.ReencodeSecretContentCommand;
 import keywhiz.generators.SecretGenerator;
 import keywhiz.generators.SecretGeneratorFactory;
 import keywhiz.generators.SecretGeneratorModule;
 import keywhiz.service.filters.CookieRenewingFilter;
+import keywhiz.service.filters.GzipETagFilter;
 import keywhiz.service.filters.SecurityHeadersFilter;
 import keywhiz.service.providers.AuthResolver;
 import keywhiz.service.providers.AutomationClientAuthFactory;
@@ -53,6 +55,7 @@ import keywhiz.service.resources.AutomationGroupResource;
 import keywhiz.service.resources.AutomationSecretAccessResource;
 import keywhiz.service.resources.AutomationSecretGeneratorsResource;
 import keywhiz.service.resources.AutomationSecretResource;
+import keywhiz.service.resources.BatchSecretDeliveryResource;
 import keywhiz.service.resources.ClientsResource;
 import keywhiz.service.resources.GroupsResource;
 import keywhiz.service.resources.MembershipResource;
@@ -139,6 +142,7 @@ public class KeywhizService extends Application<KeywhizConfig> {
     bootstrap.addCommand(new PreviewMigrateCommand());
     bootstrap.addCommand(new MigrateCommand());
     bootstrap.addCommand(new DbSeedCommand());
+    bootstrap.addCommand(new ReencodeSecretContentCommand());
     bootstrap.addCommand(new GenerateAesKeyCommand());
 
     logger.debug("Registering bundles");
@@ -160,6 +164,7 @@ public class KeywhizService extends Application<KeywhizConfig> {
 
     logger.debug("Registering resource filters");
     jersey.register(injector.getInstance(ClientCertificateFilter.class));
+    jersey.register(injector.getInstance(GzipETagFilter.class));
 
     logger.debug("Registering servlet filters");
     environment.servlets().addFilter("security-headers-filter", injector.getInstance(SecurityHeadersFilter.class))
@@ -188,6 +193,7 @@ public class KeywhizService extends Application<KeywhizConfig> {
     jersey.register(injector.getInstance(SecretsResource.class));
     jersey.register(injector.getInstance(SecretGeneratorsResource.class));
     jersey.register(injector.getInstance(SecretDeliveryResource.class));
+    jersey.register(injector.getInstance(BatchSecretDeliveryResource.class));
     jersey.register(injector.getInstance(SessionLoginResource.class));
     jersey.register(injector.getInstance(SessionLogoutResource.class));
     jersey.register(injector.getInstance(SessionMeResource.class));
@@ -15,6 +15,7 @@
  */
 package keywhiz;
 
+import com.codahale.metrics.InstrumentedExecutorService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -27,21 +28,34 @@ import io.dropwizard.java8.auth.Authenticator;
 import io.dropwizard.setup.Environment;
 import java.sql.SQLException;
 import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import keywhiz.auth.BouncyCastle;
 import keywhiz.auth.User;
 import keywhiz.auth.cookie.CookieConfig;
 import keywhiz.auth.cookie.CookieModule;
 import keywhiz.auth.cookie.SessionCookie;
 import keywhiz.auth.xsrf.Xsrf;
+import keywhiz.generators.SecretGenerator.MaxBatchSize;
 import keywhiz.generators.SecretGeneratorBindingModule;
 import keywhiz.generators.TemplatedSecretGenerator;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.config.WatchConfig;
 import keywhiz.service.crypto.ContentCryptographer;
 import keywhiz.service.crypto.CryptoModule;
+import keywhiz.service.crypto.CryptoModule.Decryption;
 import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclCache;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.ChangeNotifier;
+import keywhiz.service.daos.ClientCache;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import keywhiz.service.daos.SecretController;
 import keywhiz.utility.DSLContexts;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import keywhiz.service.filters.CookieRenewingFilter.RenewalFraction;
+import keywhiz.service.providers.ClientEnrollmentWriter;
+import keywhiz.service.resources.SecretsWatcher;
 import org.jooq.DSLContext;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -64,7 +78,10 @@ public class ServiceModule extends AbstractModule {
     bind(Clock.class).toInstance(Clock.systemUTC());
 
     install(new CookieModule(config.getCookieKey()));
-    install(new CryptoModule(config.getDerivationProviderClass(), config.getContentKeyStore()));
+    install(new CryptoModule(config.getDerivationProviderClass(), config.getContentKeyStore(),
+        config.getEncryptionVerificationPercent()));
+    bindConstant().annotatedWith(MaxBatchSize.class).to(config.getMaxSecretBatchSize());
+    bindConstant().annotatedWith(RenewalFraction.class).to(config.getSessionRenewalFraction());
 
     bind(CookieConfig.class).annotatedWith(SessionCookie.class)
         .toInstance(config.getSessionCookieConfig());
@@ -125,6 +142,59 @@ public class ServiceModule extends AbstractModule {
     return DSLContexts.databaseAgnostic(dataSource);
   }
 
+  @Provides @Singleton AclCache aclCache(KeywhizConfig config, Environment environment) {
+    return AclCache.create(config.getAclCacheConfig(), environment.metrics());
+  }
+
+  @Provides @Singleton ClientCache clientCache(KeywhizConfig config, Environment environment) {
+    return ClientCache.create(config.getClientCacheConfig(), environment.metrics());
+  }
+
+  @Provides @Singleton SecretsWatcher secretsWatcher(AclDAOFactory aclDAOFactory,
+      ChangeNotifier changeNotifier, KeywhizConfig config, Environment environment) {
+    WatchConfig watchConfig = config.getSecretsWatchConfig();
+    ScheduledExecutorService executor = environment.lifecycle()
+        .scheduledExecutorService("secrets-watch-%d")
+        .threads(watchConfig.getThreads())
+        .build();
+    ExecutorService responseExecutor = environment.lifecycle()
+        .executorService("secrets-watch-response-%d")
+        .minThreads(watchConfig.getResponseThreads())
+        .maxThreads(watchConfig.getResponseThreads())
+        .build();
+    // Rechecks follow writes to the primary immediately, before replicas may have caught up.
+    return new SecretsWatcher(aclDAOFactory.readwrite(), changeNotifier, executor,
+        responseExecutor, watchConfig);
+  }
+
+  @Provides @Singleton ClientEnrollmentWriter clientEnrollmentWriter(
+      ClientDAOFactory clientDAOFactory, KeywhizConfig config, Environment environment) {
+    ScheduledExecutorService executor = environment.lifecycle()
+        .scheduledExecutorService("client-enrollment-%d")
+        .threads(1)
+        .build();
+    return new ClientEnrollmentWriter(clientDAOFactory.readwrite(), executor,
+        config.getClientEnrollmentConfig());
+  }
+
+  @Provides @Singleton @Decryption ExecutorService decryptionExecutor(KeywhizConfig config,
+      Environment environment) {
+    int threads = config.getDecryptionThreads();
+    ExecutorService executor = environment.lifecycle()
+        .executorService("secret-decryption-%d")
+        .minThreads(threads)
+        .maxThreads(threads)
+        .build();
+    return new InstrumentedExecutorService(executor, environment.metrics(), "secret-decryption");
+  }
+
+  @Provides @Singleton SecretTransformer secretTransformer(ContentCryptographer cryptographer,
+      @Decryption ExecutorService decryptionExecutor, KeywhizConfig config) {
+    // The request thread decrypts a share too, so each list uses at most one more thread.
+    return new SecretTransformer(cryptographer, decryptionExecutor,
+        config.getDecryptionThreads() + 1);
+  }
+
   @Provides @Singleton SecretController secretController(SecretTransformer transformer,
       ContentCryptographer cryptographer, SecretDAOFactory secretDAOFactory) {
     return new SecretController(transformer, cryptographer, secretDAOFactory.readwrite());
@@ -138,7 +208,7 @@ public class ServiceModule extends AbstractModule {
 
   @Provides @Singleton
   @Readonly Authenticator<BasicCredentials, User> authenticator(KeywhizConfig config,
-      @Readonly DSLContext jooqContext) {
-    return config.getUserAuthenticatorFactory().build(jooqContext);
+      @Readonly DSLContext jooqContext, Environment environment) {
+    return config.getUserAuthenticatorFactory().build(jooqContext, environment);
   }
 }
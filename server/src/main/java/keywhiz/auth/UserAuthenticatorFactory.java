@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.google.auto.service.AutoService;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.dropwizard.jackson.Discoverable;
+import io.dropwizard.setup.Environment;
 import io.dropwizard.java8.auth.Authenticator;
 import org.jooq.DSLContext;
 
@@ -30,4 +31,14 @@ public interface UserAuthenticatorFactory extends Discoverable {
    * Builds an authenticator from username/password credentials to a {@link User}.
    */
   Authenticator<BasicCredentials, User> build(DSLContext dslContext);
+
+  /**
+   * Builds an authenticator which reports on itself to the environment's metrics and releases its
+   * resources with the environment's lifecycle. Authenticators without anything to report or
+   * release need not override this.
+   */
+  default Authenticator<BasicCredentials, User> build(DSLContext dslContext,
+      Environment environment) {
+    return build(dslContext);
+  }
 }
@@ -16,25 +16,86 @@
 
 package keywhiz.auth.bcrypt;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.dropwizard.java8.auth.Authenticator;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import keywhiz.auth.User;
 import keywhiz.service.daos.UserDAO;
 import org.mindrot.jbcrypt.BCrypt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+/**
+ * Checks passwords against bcrypt hashes stored by {@link UserDAO}.
+ *
+ * Hashes are checked on a dedicated executor. When it is saturated, logins fail fast with 503
+ * rather than tie up more request threads. Attempts per username are rate limited as well, and
+ * rejected with 429 before any hashing is done.
+ */
 public class BcryptAuthenticator implements Authenticator<BasicCredentials, User> {
   private static final Logger logger = LoggerFactory.getLogger(BcryptAuthenticator.class);
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  // Usernames idle for this long get a fresh rate limiter.
+  private static final long RATE_LIMITER_IDLE_MINUTES = 10;
+  private static final long MAX_RATE_LIMITED_USERNAMES = 10_000;
 
   private final UserDAO userDAO;
+  private final ExecutorService verificationExecutor;
+  @Nullable private final LoadingCache<String, RateLimiter> rateLimiters;
+  private final Timer verifications;
+  private final Meter rejected;
+  private final Meter rateLimited;
 
+  /** Creates an authenticator which checks hashes on the calling thread, without rate limits. */
   public BcryptAuthenticator(UserDAO userDAO) {
+    this(userDAO, MoreExecutors.newDirectExecutorService(), null, new MetricRegistry());
+  }
+
+  /**
+   * @param verificationExecutor checks hashes. Should be bounded and reject work once full.
+   * @param maxAttemptsPerUserPerSecond login attempts allowed per username, or null for no limit.
+   * @param metricRegistry registry to report verification times and rejections to.
+   */
+  public BcryptAuthenticator(UserDAO userDAO, ExecutorService verificationExecutor,
+      @Nullable Double maxAttemptsPerUserPerSecond, MetricRegistry metricRegistry) {
     this.userDAO = checkNotNull(userDAO);
+    this.verificationExecutor = checkNotNull(verificationExecutor);
+    if (maxAttemptsPerUserPerSecond == null) {
+      this.rateLimiters = null;
+    } else {
+      checkArgument(maxAttemptsPerUserPerSecond > 0, "rate limit must be positive");
+      this.rateLimiters = CacheBuilder.newBuilder()
+          .maximumSize(MAX_RATE_LIMITED_USERNAMES)
+          .expireAfterAccess(RATE_LIMITER_IDLE_MINUTES, TimeUnit.MINUTES)
+          .build(CacheLoader.from(username -> RateLimiter.create(maxAttemptsPerUserPerSecond)));
+    }
+    this.verifications = metricRegistry.timer(name(BcryptAuthenticator.class, "verifications"));
+    this.rejected = metricRegistry.meter(name(BcryptAuthenticator.class, "rejected"));
+    this.rateLimited = metricRegistry.meter(name(BcryptAuthenticator.class, "rate-limited"));
   }
 
   @Override public Optional<User> authenticate(BasicCredentials credentials)
@@ -46,6 +107,12 @@ public class BcryptAuthenticator implements Authenticator<BasicCredentials, User
       return Optional.empty();
     }
 
+    if (rateLimiters != null && !rateLimiters.getUnchecked(username).tryAcquire()) {
+      rateLimited.mark();
+      logger.warn("Too many login attempts for {}", username);
+      throw new ClientErrorException(TOO_MANY_REQUESTS);
+    }
+
     String password = credentials.getPassword();
 
     // Get hashed password column from BCrypt table by username
@@ -54,10 +121,31 @@ public class BcryptAuthenticator implements Authenticator<BasicCredentials, User
       return Optional.empty();
     }
 
-    if (BCrypt.checkpw(password, optionalHashedPwForUser.get())) {
+    if (checkpw(password, optionalHashedPwForUser.get())) {
       user = User.named(username);
     }
 
     return Optional.ofNullable(user);
   }
+
+  private boolean checkpw(String password, String hashedPassword) {
+    Future<Boolean> result;
+    try {
+      result = verificationExecutor.submit(() -> {
+        try (Timer.Context context = verifications.time()) {
+          return BCrypt.checkpw(password, hashedPassword);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejected.mark();
+      logger.warn("Too many logins in progress, rejecting login");
+      throw new ServiceUnavailableException();
+    }
+
+    try {
+      return Uninterruptibles.getUninterruptibly(result);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
 }
@@ -16,10 +16,22 @@
 
 package keywhiz.auth.bcrypt;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.google.auto.service.AutoService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.dropwizard.java8.auth.Authenticator;
+import io.dropwizard.setup.Environment;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 import keywhiz.auth.User;
 import keywhiz.auth.UserAuthenticatorFactory;
 import keywhiz.service.daos.UserDAO;
@@ -27,6 +39,8 @@ import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 /** Configuration parameters for using a BCrypt authenticator. */
 @AutoService(UserAuthenticatorFactory.class)
 @JsonTypeName("bcrypt")
@@ -34,9 +48,58 @@ import org.slf4j.LoggerFactory;
 public class BcryptAuthenticatorFactory implements UserAuthenticatorFactory {
   private static final Logger logger = LoggerFactory.getLogger(BcryptAuthenticatorFactory.class);
 
+  /**
+   * Threads checking bcrypt hashes. Logins hold a request thread while their hash is checked or
+   * queued, so at most verificationThreads + maxQueuedVerifications request threads are ever
+   * spent on logins. Further logins are rejected until there is room.
+   */
+  @Min(1)
+  private int verificationThreads = 2;
+
+  /** Logins which may wait for a verification thread. */
+  @Min(0)
+  private int maxQueuedVerifications = 8;
+
+  /** Login attempts allowed per username and second. Unlimited if not set. */
+  @Nullable @DecimalMin(value = "0", inclusive = false)
+  private Double maxAttemptsPerUserPerSecond = 10.0;
+
+  public int getVerificationThreads() {
+    return verificationThreads;
+  }
+
+  public int getMaxQueuedVerifications() {
+    return maxQueuedVerifications;
+  }
+
+  @Nullable public Double getMaxAttemptsPerUserPerSecond() {
+    return maxAttemptsPerUserPerSecond;
+  }
+
   @Override public Authenticator<BasicCredentials, User> build(DSLContext dslContext) {
+    return build(dslContext, new MetricRegistry());
+  }
+
+  @Override public Authenticator<BasicCredentials, User> build(DSLContext dslContext,
+      Environment environment) {
+    return build(dslContext, environment.metrics());
+  }
+
+  private Authenticator<BasicCredentials, User> build(DSLContext dslContext,
+      MetricRegistry metrics) {
     logger.debug("Creating BCrypt authenticator");
     UserDAO userDAO = new UserDAO(dslContext);
-    return new BcryptAuthenticator(userDAO);
+
+    BlockingQueue<Runnable> queue = maxQueuedVerifications == 0
+        ? new SynchronousQueue<>()
+        : new ArrayBlockingQueue<>(maxQueuedVerifications);
+    // Daemon threads, since nothing shuts the authenticator down.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(verificationThreads, verificationThreads,
+        0, TimeUnit.MILLISECONDS, queue,
+        new ThreadFactoryBuilder().setNameFormat("bcrypt-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.AbortPolicy());
+    metrics.register(name(BcryptAuthenticator.class, "queued"), (Gauge<Integer>) queue::size);
+
+    return new BcryptAuthenticator(userDAO, executor, maxAttemptsPerUserPerSecond, metrics);
   }
 }
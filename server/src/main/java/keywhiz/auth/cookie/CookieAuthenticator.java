@@ -16,22 +16,43 @@
 package keywhiz.auth.cookie;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.dropwizard.java8.auth.Authenticator;
+import java.nio.ByteBuffer;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Optional;
 import javax.crypto.AEADBadTagException;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.ws.rs.core.Cookie;
+import keywhiz.auth.Subtles;
 import keywhiz.auth.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Authenticates session cookies.
+ *
+ * Cookies which passed verification are remembered, keyed by their GCM authentication tag, so that
+ * the next request of the same session skips decryption and parsing. A remembered cookie is only
+ * used for a byte-for-byte identical cookie, and only until its expiration.
+ */
+@Singleton
 public class CookieAuthenticator implements Authenticator<Cookie, User> {
   private static final Logger logger = LoggerFactory.getLogger(CookieAuthenticator.class);
 
+  // Length of the GCM authentication tag ending every cookie, in bytes.
+  private static final int MAC_LENGTH = 16;
+  private static final int VERIFIED_COOKIE_CACHE_SIZE = 1_000;
+
   private final ObjectMapper mapper;
   private final GCMEncryptor encryptor;
+  private final Cache<ByteBuffer, VerifiedCookie> verifiedCookies = CacheBuilder.newBuilder()
+      .maximumSize(VERIFIED_COOKIE_CACHE_SIZE)
+      .build();
 
   @Inject public CookieAuthenticator(ObjectMapper mapper, GCMEncryptor encryptor) {
     this.mapper = mapper;
@@ -51,19 +72,47 @@ public class CookieAuthenticator implements Authenticator<Cookie, User> {
     return Optional.ofNullable(user);
   }
 
-  private Optional<UserCookieData> getUserCookieData(Cookie sessionCookie) {
+  /**
+   * @param sessionCookie cookie presented by the client.
+   * @return contents of the cookie if it is authentic and not expired.
+   */
+  public Optional<UserCookieData> getUserCookieData(Cookie sessionCookie) {
     byte[] ciphertext = Base64.getDecoder().decode(sessionCookie.getValue());
+    if (ciphertext.length < MAC_LENGTH) {
+      return Optional.empty();
+    }
+
+    ByteBuffer mac = ByteBuffer.wrap(
+        Arrays.copyOfRange(ciphertext, ciphertext.length - MAC_LENGTH, ciphertext.length));
+    VerifiedCookie verified = verifiedCookies.getIfPresent(mac);
     UserCookieData cookieData = null;
 
-    try {
-      cookieData = mapper.readValue(encryptor.decrypt(ciphertext), UserCookieData.class);
-      if (cookieData.getExpiration().isBefore(ZonedDateTime.now())) {
-        cookieData = null;
-      }
-    } catch (AEADBadTagException e) {
-      logger.warn("Cookie with bad MAC detected");
-    } catch (Exception e) { /* this cookie ain't gettin decrypted, it's bad */ }
+    if (verified != null && Subtles.secureCompare(verified.ciphertext, ciphertext)) {
+      cookieData = verified.cookieData;
+    } else {
+      try {
+        cookieData = mapper.readValue(encryptor.decrypt(ciphertext), UserCookieData.class);
+        verifiedCookies.put(mac, new VerifiedCookie(ciphertext, cookieData));
+      } catch (AEADBadTagException e) {
+        logger.warn("Cookie with bad MAC detected");
+      } catch (Exception e) { /* this cookie ain't gettin decrypted, it's bad */ }
+    }
+
+    if (cookieData != null && cookieData.getExpiration().isBefore(ZonedDateTime.now())) {
+      verifiedCookies.invalidate(mac);
+      cookieData = null;
+    }
 
     return Optional.ofNullable(cookieData);
   }
+
+  private static class VerifiedCookie {
+    final byte[] ciphertext;
+    final UserCookieData cookieData;
+
+    VerifiedCookie(byte[] ciphertext, UserCookieData cookieData) {
+      this.ciphertext = ciphertext;
+      this.cookieData = cookieData;
+    }
+  }
 }
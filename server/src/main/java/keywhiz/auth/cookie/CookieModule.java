@@ -17,6 +17,7 @@ package keywhiz.auth.cookie;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import java.security.SecureRandom;
 import java.util.Base64;
 import keywhiz.auth.xsrf.Xsrf;
@@ -35,7 +36,7 @@ public class CookieModule extends AbstractModule {
     bindConstant().annotatedWith(Xsrf.class).to("X-XSRF-TOKEN");
   }
 
-  @Provides GCMEncryptor gcmEncryptor(SecureRandom secureRandom) {
+  @Provides @Singleton GCMEncryptor gcmEncryptor(SecureRandom secureRandom) {
     byte[] cookieBytes = Base64.getDecoder().decode(cookieKey);
     return new GCMEncryptor(cookieBytes, secureRandom);
   }
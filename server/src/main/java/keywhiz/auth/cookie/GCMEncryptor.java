@@ -39,17 +39,25 @@ import static javax.crypto.Cipher.ENCRYPT_MODE;
 
 /**
  * Encrypt data using an AES key, GCM mode
+ *
+ * Safe for concurrent use without locking: each thread has its own cipher and its own nonce
+ * generator, seeded from the given source of randomness.
  */
 public class GCMEncryptor {
   private static final String ENCRYPTION_ALGORITHM = "AES/GCM/NoPadding";
   private static final String KEY_ALGORITHM = "AES";
+  private static final String NONCE_ALGORITHM = "SHA1PRNG";
   private static final int TAG_BITS = 128;
   private static final boolean ENCRYPT = true;
   private static final boolean DECRYPT = false;
   private static final int NONCE_LENGTH = 12;
+  private static final int NONCE_SEED_LENGTH = 32;
 
-  private final byte[] key;
+  private final SecretKey secretKey;
   private final SecureRandom secureRandom;
+  private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(GCMEncryptor::newCipher);
+  private final ThreadLocal<SecureRandom> nonceSources =
+      ThreadLocal.withInitial(this::newNonceSource);
 
   /**
    * Creates new encryptor.
@@ -59,13 +67,13 @@ public class GCMEncryptor {
    */
   public GCMEncryptor(byte[] key, SecureRandom secureRandom) {
     checkArgument(key.length >= 16, "GCM key expected to be 128-bits or greater.");
-    this.key = Arrays.copyOf(key, key.length);
+    this.secretKey = new SecretKeySpec(key, KEY_ALGORITHM);
     this.secureRandom = checkNotNull(secureRandom);
   }
 
-  public synchronized byte[] encrypt(byte[] plaintext) throws AEADBadTagException {
+  public byte[] encrypt(byte[] plaintext) throws AEADBadTagException {
     byte[] nonce = new byte[NONCE_LENGTH];
-    secureRandom.nextBytes(nonce);
+    nonceSources.get().nextBytes(nonce);
 
     return Bytes.concat(nonce, gcm(ENCRYPT, plaintext, nonce));
   }
@@ -85,15 +93,34 @@ public class GCMEncryptor {
 
   private byte[] gcm(boolean encrypt, byte[] input, byte[] nonce) throws AEADBadTagException {
     try {
-      Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-      SecretKey secretKey = new SecretKeySpec(key, KEY_ALGORITHM);
-
+      Cipher cipher = ciphers.get();
       GCMParameterSpec gcmParameters = new GCMParameterSpec(TAG_BITS, nonce);
       cipher.init(encrypt ? ENCRYPT_MODE : DECRYPT_MODE, secretKey, gcmParameters);
       return cipher.doFinal(input);
-    } catch (NoSuchAlgorithmException | NoSuchPaddingException | BadPaddingException | IllegalBlockSizeException | InvalidAlgorithmParameterException | InvalidKeyException e) {
+    } catch (BadPaddingException | IllegalBlockSizeException | InvalidAlgorithmParameterException | InvalidKeyException e) {
       Throwables.propagateIfInstanceOf(e, AEADBadTagException.class);
       throw Throwables.propagate(e);
     }
   }
+
+  private static Cipher newCipher() {
+    try {
+      return Cipher.getInstance(ENCRYPTION_ALGORITHM);
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private SecureRandom newNonceSource() {
+    try {
+      // Seeded before first use, so its output depends only on the seed drawn from secureRandom.
+      SecureRandom nonceSource = SecureRandom.getInstance(NONCE_ALGORITHM);
+      byte[] seed = new byte[NONCE_SEED_LENGTH];
+      secureRandom.nextBytes(seed);
+      nonceSource.setSeed(seed);
+      return nonceSource;
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
 }
@@ -17,9 +17,8 @@ package keywhiz.auth.ldap;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
 import com.unboundid.ldap.sdk.Filter;
-import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
@@ -44,10 +43,17 @@ public class LdapAuthenticator implements Authenticator<BasicCredentials, User>
 
   private final LdapConnectionFactory connectionFactory;
   private final LdapLookupConfig config;
+  private final LdapLookupCache lookupCache;
 
   public LdapAuthenticator(LdapConnectionFactory connectionFactory, LdapLookupConfig config) {
+    this(connectionFactory, config, LdapLookupCache.disabled());
+  }
+
+  public LdapAuthenticator(LdapConnectionFactory connectionFactory, LdapLookupConfig config,
+      LdapLookupCache lookupCache) {
     this.connectionFactory = connectionFactory;
     this.config = config;
+    this.lookupCache = lookupCache;
   }
 
   @Override
@@ -61,7 +67,8 @@ public class LdapAuthenticator implements Authenticator<BasicCredentials, User>
         return Optional.empty();
       }
 
-      String userDN = dnFromUsername(username);
+      String userDN = lookupCache.getDN(username, () -> dnFromUsername(username))
+          .orElseThrow(() -> new LDAPException(ResultCode.INVALID_CREDENTIALS));
       String password = credentials.getPassword();
 
       // Must have password for current config
@@ -70,12 +77,11 @@ public class LdapAuthenticator implements Authenticator<BasicCredentials, User>
         return Optional.empty();
       }
 
-      LDAPConnection authenticatedConnection = connectionFactory.getLDAPConnection(userDN, password);
-      authenticatedConnection.close();
+      connectionFactory.bind(userDN, password);
 
       Set<String> requiredRoles = config.getRequiredRoles();
       if (!requiredRoles.isEmpty()) {
-        Set<String> roles = rolesFromDN(userDN);
+        Set<String> roles = lookupCache.getRoles(userDN, () -> rolesFromDN(userDN));
 
         boolean accessAllowed = false;
         for (String requiredRole : requiredRoles) {
@@ -102,48 +108,38 @@ public class LdapAuthenticator implements Authenticator<BasicCredentials, User>
     return Optional.ofNullable(user);
   }
 
-  private String dnFromUsername(String username) throws LDAPException {
+  private Optional<String> dnFromUsername(String username) throws LDAPException {
     String baseDN = config.getUserBaseDN();
     String lookup = String.format("(%s=%s)", config.getUserAttribute(), username);
     SearchRequest searchRequest = new SearchRequest(baseDN, SearchScope.SUB, lookup);
 
-    LDAPConnection connection = connectionFactory.getLDAPConnection();
-    try {
-      SearchResult sr = connection.search(searchRequest);
-
-      if (sr.getEntryCount() == 0) {
-        throw new LDAPException(ResultCode.INVALID_CREDENTIALS);
-      }
+    SearchResult sr = connectionFactory.search(searchRequest);
 
-      return sr.getSearchEntries().get(0).getDN();
-    } finally {
-      connection.close();
+    if (sr.getEntryCount() == 0) {
+      return Optional.empty();
     }
+
+    return Optional.of(sr.getSearchEntries().get(0).getDN());
   }
 
-  private Set<String> rolesFromDN(String userDN) throws LDAPException {
+  private ImmutableSet<String> rolesFromDN(String userDN) throws LDAPException {
     SearchRequest searchRequest = new SearchRequest(config.getRoleBaseDN(),
         SearchScope.SUB, Filter.createEqualityFilter("uniqueMember", userDN));
-    Set<String> roles = Sets.newLinkedHashSet();
-
-    LDAPConnection connection = connectionFactory.getLDAPConnection();
-    try {
-      SearchResult sr = connection.search(searchRequest);
-
-      for (SearchResultEntry sre : sr.getSearchEntries()) {
-        X500Name x500Name = new X500Name(sre.getDN());
-        RDN[] rdns = x500Name.getRDNs(BCStyle.CN);
-        if (rdns.length == 0) {
-          logger.error("Could not create X500 Name for role:" + sre.getDN());
-        } else {
-          String commonName = IETFUtils.valueToString(rdns[0].getFirst().getValue());
-          roles.add(commonName);
-        }
+    ImmutableSet.Builder<String> roles = ImmutableSet.builder();
+
+    SearchResult sr = connectionFactory.search(searchRequest);
+
+    for (SearchResultEntry sre : sr.getSearchEntries()) {
+      X500Name x500Name = new X500Name(sre.getDN());
+      RDN[] rdns = x500Name.getRDNs(BCStyle.CN);
+      if (rdns.length == 0) {
+        logger.error("Could not create X500 Name for role:" + sre.getDN());
+      } else {
+        String commonName = IETFUtils.valueToString(rdns[0].getFirst().getValue());
+        roles.add(commonName);
       }
-    } finally {
-      connection.close();
     }
 
-    return roles;
+    return roles.build();
   }
 }
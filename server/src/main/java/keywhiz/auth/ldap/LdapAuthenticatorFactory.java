@@ -16,10 +16,12 @@
 
 package keywhiz.auth.ldap;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.google.auto.service.AutoService;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.dropwizard.java8.auth.Authenticator;
+import io.dropwizard.setup.Environment;
 import java.io.IOException;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
@@ -91,9 +93,27 @@ public class LdapAuthenticatorFactory implements UserAuthenticatorFactory {
   // it really matters since we need a DSLContext for all the other data.
   // https://github.com/square/keywhiz/issues/39
   @Override public Authenticator<BasicCredentials, User> build(DSLContext dslContext) {
+    return build(connectionFactory(), new MetricRegistry());
+  }
+
+  @Override public Authenticator<BasicCredentials, User> build(DSLContext dslContext,
+      Environment environment) {
+    LdapConnectionFactory connectionFactory = connectionFactory();
+    environment.lifecycle().manage(connectionFactory);
+    return build(connectionFactory, environment.metrics());
+  }
+
+  private Authenticator<BasicCredentials, User> build(LdapConnectionFactory connectionFactory,
+      MetricRegistry metrics) {
     logger.debug("Creating LDAP authenticator");
-    LdapConnectionFactory connectionFactory =
-        new LdapConnectionFactory(getServer(), getPort(), getUserDN(), getPassword());
-    return new LdapAuthenticator(connectionFactory, getLookup());
+    connectionFactory.registerMetrics(metrics);
+    LdapLookupCache lookupCache = LdapLookupCache.create(getLookup().getCache(),
+        getLookup().getNegativeCacheExpiration(), metrics);
+    return new LdapAuthenticator(connectionFactory, getLookup(), lookupCache);
+  }
+
+  private LdapConnectionFactory connectionFactory() {
+    return new LdapConnectionFactory(getServer(), getPort(), getUserDN(), getPassword(),
+        getLookup());
   }
 }
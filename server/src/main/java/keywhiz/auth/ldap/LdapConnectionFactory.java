@@ -15,34 +15,142 @@
  */
 package keywhiz.auth.ldap;
 
-import com.unboundid.ldap.sdk.LDAPConnection;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.unboundid.ldap.sdk.GetEntryLDAPConnectionPoolHealthCheck;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolStatistics;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+import com.unboundid.ldap.sdk.SingleServerSet;
+import io.dropwizard.lifecycle.Managed;
+import java.util.function.ToLongFunction;
+import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 
-public class LdapConnectionFactory {
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Provides LDAP access over a bounded pool of connections bound as the service account, so that
+ * a login does not pay for new TLS handshakes and binds. The pool is created on first use and
+ * closed when the service stops.
+ */
+public class LdapConnectionFactory implements Managed {
+  // Idle connections are checked in the background by reading the root DSE.
+  private static final long HEALTH_CHECK_TIMEOUT_MILLIS = 5_000;
+
   private final String server;
   private final int port;
   private final String userDN;
   private final String password;
+  private final LdapLookupConfig config;
+  private final SocketFactory socketFactory;
 
-  public LdapConnectionFactory(String server, int port, String userDN, String password) {
+  private volatile LDAPConnectionPool pool;
+
+  public LdapConnectionFactory(String server, int port, String userDN, String password,
+      LdapLookupConfig config) {
+    this(server, port, userDN, password, config, SSLSocketFactory.getDefault());
+  }
+
+  /**
+   * @param socketFactory creates connections to the server; the public constructor uses TLS.
+   * Plain sockets are only suitable for tests and benchmarks against a local directory.
+   */
+  public LdapConnectionFactory(String server, int port, String userDN, String password,
+      LdapLookupConfig config, SocketFactory socketFactory) {
     this.server = server;
     this.port = port;
     this.userDN = userDN;
     this.password = password;
+    this.config = checkNotNull(config);
+    this.socketFactory = checkNotNull(socketFactory);
+  }
+
+  /** Runs a search as the service account on a pooled connection. */
+  public SearchResult search(SearchRequest searchRequest) throws LDAPException {
+    return getConnectionPool().search(searchRequest);
+  }
+
+  /**
+   * Verifies a user's password by binding as that user on a pooled connection. The connection is
+   * bound as the service account again before it returns to the pool, whether or not the bind
+   * succeeded.
+   *
+   * @throws LDAPException with {@link com.unboundid.ldap.sdk.ResultCode#INVALID_CREDENTIALS} if
+   * the password is wrong.
+   */
+  public void bind(String userDN, String password) throws LDAPException {
+    getConnectionPool().bindAndRevertAuthentication(userDN, password);
   }
 
-  public LDAPConnection getLDAPConnection() throws LDAPException {
-    return getLDAPConnection(userDN, password);
+  /** Registers gauges reporting on the connection pool. */
+  public void registerMetrics(MetricRegistry metrics) {
+    register(metrics, "available-connections",
+        LDAPConnectionPoolStatistics::getNumAvailableConnections);
+    register(metrics, "maximum-connections",
+        LDAPConnectionPoolStatistics::getMaximumAvailableConnections);
+    register(metrics, "successful-checkouts",
+        LDAPConnectionPoolStatistics::getNumSuccessfulCheckouts);
+    register(metrics, "checkouts-after-waiting",
+        LDAPConnectionPoolStatistics::getNumSuccessfulCheckoutsAfterWaiting);
+    register(metrics, "failed-checkouts", LDAPConnectionPoolStatistics::getNumFailedCheckouts);
+    register(metrics, "failed-connection-attempts",
+        LDAPConnectionPoolStatistics::getNumFailedConnectionAttempts);
+    register(metrics, "connections-closed-defunct",
+        LDAPConnectionPoolStatistics::getNumConnectionsClosedDefunct);
   }
 
-  public LDAPConnection getLDAPConnection(String userDN, String password) throws LDAPException {
-    LDAPConnection ldapConnection = new LDAPConnection(SSLSocketFactory.getDefault());
+  @Override public void start() {}
+
+  @Override public void stop() {
+    close();
+  }
+
+  /** Closes the pool, if it was created. */
+  public synchronized void close() {
+    if (pool != null) {
+      pool.close();
+      pool = null;
+    }
+  }
 
-    // Connect, retrieve the DN of the user (if any)
-    ldapConnection.connect(server, port);
-    ldapConnection.bind(userDN, password);
+  LDAPConnectionPool getConnectionPool() throws LDAPException {
+    LDAPConnectionPool current = pool;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (pool == null) {
+        pool = createConnectionPool();
+      }
+      return pool;
+    }
+  }
+
+  private LDAPConnectionPool createConnectionPool() throws LDAPException {
+    GetEntryLDAPConnectionPoolHealthCheck healthCheck = new GetEntryLDAPConnectionPoolHealthCheck(
+        "", HEALTH_CHECK_TIMEOUT_MILLIS, false, false, false, true, true);
+
+    // Don't fail if the server is unreachable right now; connections are retried on checkout.
+    LDAPConnectionPool connectionPool = new LDAPConnectionPool(
+        new SingleServerSet(server, port, socketFactory), new SimpleBindRequest(userDN, password),
+        1, config.getPoolSize(), 1, null, false, healthCheck);
+    connectionPool.setConnectionPoolName("ldap");
+    connectionPool.setCreateIfNecessary(false);
+    connectionPool.setMaxWaitTimeMillis(config.getPoolMaxWait().toMilliseconds());
+    connectionPool.setHealthCheckIntervalMillis(config.getHealthCheckInterval().toMilliseconds());
+    return connectionPool;
+  }
 
-    return ldapConnection;
+  private void register(MetricRegistry metrics, String metric,
+      ToLongFunction<LDAPConnectionPoolStatistics> statistic) {
+    metrics.register(name(LdapConnectionFactory.class, metric), (Gauge<Long>) () -> {
+      LDAPConnectionPool current = pool;
+      return current == null ? 0 : statistic.applyAsLong(current.getConnectionPoolStatistics());
+    });
   }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.auth.ldap;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.unboundid.ldap.sdk.LDAPException;
+import io.dropwizard.util.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import keywhiz.service.config.CacheConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Results of the directory searches made on login: username to DN, and DN to role names.
+ *
+ * Entries expire after a configurable TTL. Unknown usernames and DNs without roles are cached too,
+ * but only for a shorter negative TTL, so a newly added user or grant is picked up quickly.
+ * Passwords are never cached; every login still binds against the directory.
+ */
+public class LdapLookupCache {
+  /** A directory search, run on a cache miss. */
+  @FunctionalInterface
+  public interface Lookup<T> {
+    T load() throws LDAPException;
+  }
+
+  @Nullable private final ExpiringCache<Optional<String>> dns;
+  @Nullable private final ExpiringCache<ImmutableSet<String>> roles;
+
+  private LdapLookupCache(@Nullable ExpiringCache<Optional<String>> dns,
+      @Nullable ExpiringCache<ImmutableSet<String>> roles) {
+    this.dns = dns;
+    this.roles = roles;
+  }
+
+  /** @return a cache which never retains entries. */
+  public static LdapLookupCache disabled() {
+    return new LdapLookupCache(null, null);
+  }
+
+  /**
+   * @param config cache settings. A disabled config results in {@link #disabled()}.
+   * @param negativeExpiration how long empty results are cached, capped at the config's expiration.
+   * @param metricRegistry registry to report hits and misses to.
+   * @return a cache honoring the given configuration.
+   */
+  public static LdapLookupCache create(CacheConfig config, Duration negativeExpiration,
+      MetricRegistry metricRegistry) {
+    checkNotNull(negativeExpiration);
+    checkNotNull(metricRegistry);
+    if (!config.isEnabled()) {
+      return disabled();
+    }
+
+    return new LdapLookupCache(
+        new ExpiringCache<>(config, negativeExpiration, dn -> !dn.isPresent(),
+            metricRegistry.meter(name(LdapLookupCache.class, "dn", "hits")),
+            metricRegistry.meter(name(LdapLookupCache.class, "dn", "misses"))),
+        new ExpiringCache<>(config, negativeExpiration, ImmutableSet::isEmpty,
+            metricRegistry.meter(name(LdapLookupCache.class, "roles", "hits")),
+            metricRegistry.meter(name(LdapLookupCache.class, "roles", "misses"))));
+  }
+
+  public boolean isEnabled() {
+    return dns != null;
+  }
+
+  /**
+   * @param username name the user logs in with.
+   * @param loader searches the directory on a miss.
+   * @return cached or freshly loaded DN of the user, absent if there is no such user.
+   */
+  public Optional<String> getDN(String username, Lookup<Optional<String>> loader)
+      throws LDAPException {
+    return dns == null ? loader.load() : dns.get(username, loader);
+  }
+
+  /**
+   * @param userDN DN of the user, as returned by {@link #getDN}.
+   * @param loader searches the directory on a miss.
+   * @return cached or freshly loaded names of the roles the user is a member of.
+   */
+  public ImmutableSet<String> getRoles(String userDN, Lookup<ImmutableSet<String>> loader)
+      throws LDAPException {
+    return roles == null ? loader.load() : roles.get(userDN, loader);
+  }
+
+  /** Keeps empty results in a separate cache with a shorter TTL. */
+  private static class ExpiringCache<T> {
+    private final Cache<String, T> found;
+    private final Cache<String, T> empty;
+    private final Predicate<T> isEmpty;
+    private final Meter hits;
+    private final Meter misses;
+
+    ExpiringCache(CacheConfig config, Duration negativeExpiration, Predicate<T> isEmpty, Meter hits,
+        Meter misses) {
+      long expirationMillis = config.getExpiration().toMilliseconds();
+      this.found = CacheBuilder.newBuilder()
+          .maximumSize(config.getMaximumSize())
+          .expireAfterWrite(expirationMillis, TimeUnit.MILLISECONDS)
+          .build();
+      this.empty = CacheBuilder.newBuilder()
+          .maximumSize(config.getMaximumSize())
+          .expireAfterWrite(Math.min(expirationMillis, negativeExpiration.toMilliseconds()),
+              TimeUnit.MILLISECONDS)
+          .build();
+      this.isEmpty = isEmpty;
+      this.hits = hits;
+      this.misses = misses;
+    }
+
+    T get(String key, Lookup<T> loader) throws LDAPException {
+      T value = found.getIfPresent(key);
+      if (value == null) {
+        value = empty.getIfPresent(key);
+      }
+      if (value != null) {
+        hits.mark();
+        return value;
+      }
+
+      misses.mark();
+      value = checkNotNull(loader.load());
+      (isEmpty.test(value) ? empty : found).put(key, value);
+      return value;
+    }
+  }
+}
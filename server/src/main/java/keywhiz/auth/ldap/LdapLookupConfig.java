@@ -17,8 +17,12 @@
 package keywhiz.auth.ldap;
 
 import com.google.common.collect.ImmutableSet;
+import io.dropwizard.util.Duration;
 import java.util.Set;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import keywhiz.service.config.CacheConfig;
 import org.hibernate.validator.constraints.NotEmpty;
 
 public class LdapLookupConfig {
@@ -48,6 +52,37 @@ public class LdapLookupConfig {
   @NotNull
   public String roleBaseDN = "";
 
+  /**
+   * Maximum number of pooled connections, bound as the service account, used for lookups and
+   * user binds.
+   */
+  @Min(1)
+  private int poolSize = 8;
+
+  /**
+   * How long a login waits for a pooled connection when all of them are in use.
+   */
+  @NotNull
+  private Duration poolMaxWait = Duration.seconds(5);
+
+  /**
+   * How often idle pooled connections are checked and replaced if the server dropped them.
+   */
+  @NotNull
+  private Duration healthCheckInterval = Duration.minutes(1);
+
+  /**
+   * Caches username to DN and DN to role lookups. Passwords are always checked against LDAP.
+   */
+  @NotNull @Valid
+  private CacheConfig cache = new CacheConfig();
+
+  /**
+   * How long unknown usernames and users without roles are cached, if caching is enabled.
+   */
+  @NotNull
+  private Duration negativeCacheExpiration = Duration.seconds(5);
+
   public LdapLookupConfig(String userBaseDN, String userAttribute,
       Set<String> requiredRoles, String roleBaseDN) {
     this.userBaseDN = userBaseDN;
@@ -74,4 +109,44 @@ public class LdapLookupConfig {
   public String getRoleBaseDN() {
     return roleBaseDN;
   }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public Duration getPoolMaxWait() {
+    return poolMaxWait;
+  }
+
+  public void setPoolMaxWait(Duration poolMaxWait) {
+    this.poolMaxWait = poolMaxWait;
+  }
+
+  public Duration getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  public void setHealthCheckInterval(Duration healthCheckInterval) {
+    this.healthCheckInterval = healthCheckInterval;
+  }
+
+  public CacheConfig getCache() {
+    return cache;
+  }
+
+  public void setCache(CacheConfig cache) {
+    this.cache = cache;
+  }
+
+  public Duration getNegativeCacheExpiration() {
+    return negativeCacheExpiration;
+  }
+
+  public void setNegativeCacheExpiration(Duration negativeCacheExpiration) {
+    this.negativeCacheExpiration = negativeCacheExpiration;
+  }
 }
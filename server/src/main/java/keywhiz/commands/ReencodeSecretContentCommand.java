@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.commands;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import java.util.List;
+import javax.sql.DataSource;
+import keywhiz.KeywhizConfig;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.utility.DSLContexts;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.jooq.DSLContext;
+import org.jooq.Record3;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static keywhiz.jooq.tables.Secrets.SECRETS;
+import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
+
+/**
+ * Re-encodes secret content stored in the legacy JSON format as binary envelopes.
+ *
+ * Ciphertext and nonce are copied as-is, so no decryption key is needed. Content whose derivation
+ * info differs from its secret name cannot be expressed as an envelope and is left untouched.
+ * Content is processed in batches ordered by id, each batch updated in its own transaction, so the
+ * command may be interrupted and re-run safely.
+ *
+ * Usage:
+ * java -jar server/target/keywhiz-server-*-SNAPSHOT-shaded.jar reencode-secret-content [--batch-size 100] server/src/main/resources/keywhiz-development.yaml
+ */
+public class ReencodeSecretContentCommand extends ConfiguredCommand<KeywhizConfig> {
+  private static final Logger logger = LoggerFactory.getLogger(ReencodeSecretContentCommand.class);
+
+  public ReencodeSecretContentCommand() {
+    super("reencode-secret-content", "Re-encodes legacy JSON secret content as binary envelopes.");
+  }
+
+  @Override public void configure(Subparser parser) {
+    super.configure(parser);
+
+    parser.addArgument("--batch-size")
+        .dest("batchSize")
+        .type(Integer.class)
+        .setDefault(100)
+        .help("number of secret content rows to re-encode per transaction");
+  }
+
+  @Override protected void run(Bootstrap<KeywhizConfig> bootstrap, Namespace namespace,
+      KeywhizConfig config) throws Exception {
+    DataSource dataSource = config.getDataSourceFactory()
+        .build(new MetricRegistry(), "reencode-datasource");
+
+    DSLContext dslContext = DSLContexts.databaseAgnostic(dataSource);
+    int reencoded = reencode(dslContext, namespace.getInt("batchSize"));
+    System.out.println(String.format("Re-encoded %d secret content rows", reencoded));
+  }
+
+  /**
+   * @param dslContext jOOQ context
+   * @param batchSize maximum number of rows read and updated per transaction
+   * @return number of rows re-encoded
+   */
+  @VisibleForTesting
+  static int reencode(DSLContext dslContext, int batchSize) {
+    checkArgument(batchSize > 0, "batch size must be positive");
+
+    int reencoded = 0;
+    int lastId = Integer.MIN_VALUE;
+    while (true) {
+      List<Record3<Integer, String, String>> batch = dslContext
+          .select(SECRETS_CONTENT.ID, SECRETS.NAME, SECRETS_CONTENT.ENCRYPTED_CONTENT)
+          .from(SECRETS_CONTENT)
+          .join(SECRETS).on(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID))
+          .where(SECRETS_CONTENT.ID.gt(lastId))
+          .orderBy(SECRETS_CONTENT.ID)
+          .limit(batchSize)
+          .fetch();
+      if (batch.isEmpty()) {
+        return reencoded;
+      }
+      lastId = batch.get(batch.size() - 1).value1();
+      reencoded += dslContext.transactionResult(configuration -> {
+        int updated = 0;
+        for (Record3<Integer, String, String> row : batch) {
+          String encryptedContent = row.value3();
+          if (!ContentCryptographer.isLegacyFormat(encryptedContent)) {
+            continue;
+          }
+
+          String envelope;
+          try {
+            envelope = ContentCryptographer.toEnvelope(row.value2(), encryptedContent);
+          } catch (IllegalArgumentException e) {
+            logger.warn("Leaving secret content {} in legacy format: {}", row.value1(),
+                e.getMessage());
+            continue;
+          }
+
+          // Guard on the old value in case the row was rewritten since it was read.
+          updated += DSL.using(configuration)
+              .update(SECRETS_CONTENT)
+              .set(SECRETS_CONTENT.ENCRYPTED_CONTENT, envelope)
+              .where(SECRETS_CONTENT.ID.eq(row.value1()))
+              .and(SECRETS_CONTENT.ENCRYPTED_CONTENT.eq(encryptedContent))
+              .execute();
+        }
+        return updated;
+      });
+    }
+  }
+}
@@ -17,12 +17,21 @@
 package keywhiz.generators;
 
 import com.google.common.collect.ImmutableList;
+import java.lang.annotation.Retention;
 import java.util.List;
+import java.util.Optional;
 import javax.inject.Inject;
+import javax.inject.Qualifier;
 import javax.ws.rs.BadRequestException;
 import keywhiz.api.model.Secret;
 import keywhiz.service.daos.SecretController;
 import keywhiz.service.resources.SecretGeneratorsResource;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.stream.Collectors.toList;
 
 /**
  * A SecretGenerator is used to generate 1 or more of Secrets based on some provided parameters
@@ -32,9 +41,12 @@ import keywhiz.service.resources.SecretGeneratorsResource;
  * See {@link SecretGeneratorsResource} to see how this interfaces with the HTTP API.
  */
 public abstract class SecretGenerator<RequestType> {
+  private static final Logger logger = LoggerFactory.getLogger(SecretGenerator.class);
+
   protected final SecretController secretController;
 
-  public static final int MAX_TEMPLATE_BATCH_SIZE = 100;
+  /** Default for the configurable limit on requests in one batch. */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
 
   @Inject public SecretGenerator(SecretController secretController) {
     this.secretController = secretController;
@@ -44,29 +56,59 @@ public abstract class SecretGenerator<RequestType> {
    * Process an entire batch of generator requests - if any of them fail, any secrets created will be
    * rolled back.
    *
+   * Requests are prepared on the calling thread and all resulting secrets are written in one
+   * transaction.
+   * Generators which do not override {@link #prepare} instead generate one request at a time, each
+   * in its own transaction.
    *
    * @param creatorName the name to be recorded as the creator of the secrets
    * @param requests the batch of generator requests
+   * @param maxBatchSize the largest number of requests accepted
    * @return the list of secrets created
    */
   // TODO(jlfwong): Remove batch generation as a feature of all generators - it should be a
   // generator of its own that just has a different RequestType
-  public List<Secret> batchGenerate(String creatorName, List<RequestType> requests) {
-    if (requests.size() > MAX_TEMPLATE_BATCH_SIZE) {
+  public List<Secret> batchGenerate(String creatorName, List<RequestType> requests,
+      int maxBatchSize) {
+    if (requests.size() > maxBatchSize) {
       throw new BadRequestException("Batch size too big.");
     }
 
-    ImmutableList.Builder<Secret> secrets = ImmutableList.builder();
+    List<Optional<List<SecretController.SecretBuilder>>> prepared = requests.stream()
+        .map(request -> prepare(creatorName, request))
+        .collect(toList());
 
-    // TODO(jlfwong): An outer transaction causes test failures. This is a result of JDBI not
-    // handling nested transactions in the intuitive way. There's no particularly good solution at
-    // the moment that I'm aware of. A future release should have something called
-    // "CommutingTransactionManager" which might fix this problem.
-    for (RequestType request : requests) {
-      secrets.addAll(generate(creatorName, request));
+    if (!prepared.stream().allMatch(Optional::isPresent)) {
+      ImmutableList.Builder<Secret> secrets = ImmutableList.builder();
+      for (RequestType request : requests) {
+        secrets.addAll(generate(creatorName, request));
+      }
+      return secrets.build();
     }
 
-    return secrets.build();
+    List<SecretController.SecretBuilder> builders = prepared.stream()
+        .flatMap(builder -> builder.get().stream())
+        .collect(toList());
+    try {
+      return secretController.createSecrets(builders);
+    } catch (DataAccessException e) {
+      logger.warn("Cannot create batch of {} secrets: {}", builders.size(), e);
+      throw new BadRequestException("Cannot create secrets.");
+    }
+  }
+
+  /**
+   * Prepare the secrets of a single request, compiled and encrypted but not yet stored, so that a
+   * batch can be written at once.
+   *
+   * @param creatorName the name to be recorded as the creator of the secrets
+   * @param request the generator request
+   * @return builders of the secrets to create, or empty if this generator only supports
+   * {@link #generate}
+   */
+  protected Optional<List<SecretController.SecretBuilder>> prepare(String creatorName,
+      RequestType request) {
+    return Optional.empty();
   }
 
   // TODO(jlfwong): Add support for Client generated secrets on top of User generated ones. This will
@@ -85,5 +127,7 @@ public abstract class SecretGenerator<RequestType> {
   // TODO(jlfwong): There should be a nicer way of doing by just returning RequestType.class or something
   // equivalent
   public abstract Class<RequestType> getRequestType();
-}
 
+  /** Denotes the configured limit on requests in one batch. */
+  @Qualifier @Retention(RUNTIME) public @interface MaxBatchSize {}
+}
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.BadRequestException;
 import keywhiz.api.TemplatedSecretsGeneratorRequest;
@@ -50,7 +51,27 @@ public class TemplatedSecretGenerator extends SecretGenerator<TemplatedSecretsGe
 
   @Override public List<Secret> generate(String creatorName, TemplatedSecretsGeneratorRequest request)
       throws BadRequestException {
+    SecretController.SecretBuilder builder = builder(creatorName, request);
 
+    Secret secret;
+    try {
+      secret = builder.build();
+    } catch (DataAccessException e) {
+      logger.warn("Cannot create secret {}: {}", request.getName(), e);
+      throw new BadRequestException(String.format("Cannot create secret '%s'.", request.getName()));
+    }
+
+    return ImmutableList.of(secret);
+  }
+
+  @Override protected Optional<List<SecretController.SecretBuilder>> prepare(String creatorName,
+      TemplatedSecretsGeneratorRequest request) throws BadRequestException {
+    return Optional.of(ImmutableList.of(builder(creatorName, request)));
+  }
+
+  /** Compiles the template of a request and encrypts the result, ready to be stored. */
+  private SecretController.SecretBuilder builder(String creatorName,
+      TemplatedSecretsGeneratorRequest request) throws BadRequestException {
     String secretName = request.getName();
     String secretContent;
 
@@ -77,16 +98,7 @@ public class TemplatedSecretGenerator extends SecretGenerator<TemplatedSecretsGe
     if (request.isWithVersion()) {
       builder.withVersion(VersionGenerator.now().toHex());
     }
-
-    Secret secret;
-    try {
-      secret = builder.build();
-    } catch (DataAccessException e) {
-      logger.warn("Cannot create secret {}: {}", secretName, e);
-      throw new BadRequestException(String.format("Cannot create secret '%s'.", secretName));
-    }
-
-    return ImmutableList.of(secret);
+    return builder;
   }
 
   @Override public Class<TemplatedSecretsGeneratorRequest> getRequestType() {
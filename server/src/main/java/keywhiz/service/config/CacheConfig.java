@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for an optional, bounded in-process cache. */
+public class CacheConfig {
+  /** Caching is opt-in. When disabled, every lookup goes to the backing store. */
+  private boolean enabled = false;
+
+  /** Upper bound on the number of cached entries. */
+  @Min(1)
+  private long maximumSize = 10_000;
+
+  /** How long an entry may be served after it was loaded. */
+  @NotNull
+  private Duration expiration = Duration.seconds(30);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public void setMaximumSize(long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  public Duration getExpiration() {
+    return expiration;
+  }
+
+  public void setExpiration(Duration expiration) {
+    this.expiration = expiration;
+  }
+}
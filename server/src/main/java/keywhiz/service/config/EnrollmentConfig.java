@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for clients enrolled automatically on first authentication. */
+public class EnrollmentConfig {
+  /** How long newly seen clients are collected before they are written in one batch. */
+  @NotNull
+  private Duration flushInterval = Duration.milliseconds(100);
+
+  /** Upper bound on the number of clients inserted by a single statement. */
+  @Min(1)
+  private int maxBatchSize = 500;
+
+  /**
+   * Upper bound on the number of clients waiting to be written. Further new clients are refused
+   * until the backlog drains.
+   */
+  @Min(1)
+  private int maxPending = 10_000;
+
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  public void setFlushInterval(Duration flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  public void setMaxPending(int maxPending) {
+    this.maxPending = maxPending;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.config;
+
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/** Configuration parameters for long-polling clients waiting on changes to their secrets. */
+public class WatchConfig {
+  /** How long a watch is held open before it is answered with 304 Not Modified. */
+  @NotNull
+  private Duration timeout = Duration.seconds(55);
+
+  /**
+   * How often waiting clients are checked for changes regardless of notifications, which only
+   * cover writes made through this server.
+   */
+  @NotNull
+  private Duration recheckInterval = Duration.seconds(30);
+
+  /** Threads checking for changes. */
+  @Min(1)
+  private int threads = 4;
+
+  /** Threads writing responses to watches which saw a change. */
+  @Min(1)
+  private int responseThreads = 16;
+
+  /** Requests allowed to wait at once. Further watches are answered with 503. */
+  @Min(1)
+  private int maxWatches = 10_000;
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public Duration getRecheckInterval() {
+    return recheckInterval;
+  }
+
+  public void setRecheckInterval(Duration recheckInterval) {
+    this.recheckInterval = recheckInterval;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public int getResponseThreads() {
+    return responseThreads;
+  }
+
+  public void setResponseThreads(int responseThreads) {
+    this.responseThreads = responseThreads;
+  }
+
+  public int getMaxWatches() {
+    return maxWatches;
+  }
+
+  public void setMaxWatches(int maxWatches) {
+    this.maxWatches = maxWatches;
+  }
+}
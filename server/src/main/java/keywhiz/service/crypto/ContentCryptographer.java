@@ -18,20 +18,27 @@ package keywhiz.service.crypto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
 import io.dropwizard.jackson.Jackson;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.SecureRandom;
-import java.util.Base64;
+import java.util.Arrays;
 import java.util.Base64.Encoder;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
@@ -44,6 +51,7 @@ import keywhiz.auth.Subtles;
 import keywhiz.hkdf.Hkdf;
 import keywhiz.service.crypto.CryptoModule.Derivation;
 import keywhiz.service.crypto.CryptoModule.Encryption;
+import keywhiz.service.crypto.CryptoModule.Verification;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,8 +65,9 @@ import static javax.crypto.Cipher.ENCRYPT_MODE;
 /**
  * Cryptographer which encrypts/decrypts secret content.
  *
- * Encryption keys are derived using a provided info tag. Encrypted content is serialized as JSON
- * with the necessary parameters for decryption.
+ * Encryption keys are derived from the secret name. Encrypted content is serialized as a base64
+ * envelope of a magic number, a format version, the nonce length, the nonce and the ciphertext. Content written in
+ * the older JSON format, which also carried the derivation info, is still readable.
  */
 public class ContentCryptographer {
   private static final Logger logger = LoggerFactory.getLogger(ContentCryptographer.class);
@@ -66,20 +75,53 @@ public class ContentCryptographer {
   private static final String KEY_ALGORITHM = "AES";
   private static final int TAG_BITS = 128;
   private static final int NONCE_BYTES = 12;
+  // Derived keys are as long as the AES block size, i.e. AES-128.
+  private static final int DERIVED_KEY_BYTES = 16;
+  private static final int DERIVED_KEY_CACHE_SIZE = 10_000;
+  private static final byte[] ENVELOPE_MAGIC = {'K', 'W'};
+  private static final byte ENVELOPE_VERSION = 1;
+  private static final int ENVELOPE_HEADER_BYTES = ENVELOPE_MAGIC.length + 2;
   private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
 
   private final SecretKey key;
   private final Provider derivationProvider;
   private final Provider encryptionProvider;
   private final SecureRandom random;
+  private final int verificationPercent;
 
+  // Keys are derived from the secret name, so every encryption or decryption of a secret derives
+  // the same key. Entries are zeroed when evicted.
+  private final LoadingCache<String, DerivedKey> derivedKeys;
+
+  // Cipher instances are not thread-safe, but are cheap to re-initialize on the same thread.
+  private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(this::newCipher);
+
+  /**
+   * @param verificationPercent share of encryptions, from 0 to 100, which are checked by
+   * decrypting the ciphertext again and comparing against the plaintext.
+   */
   @Inject public ContentCryptographer(@Derivation SecretKey key,
       @Derivation Provider derivationProvider,
-      @Encryption Provider encryptionProvider, SecureRandom random) {
+      @Encryption Provider encryptionProvider, SecureRandom random,
+      @Verification int verificationPercent) {
+    this(key, derivationProvider, encryptionProvider, random, verificationPercent,
+        DERIVED_KEY_CACHE_SIZE);
+  }
+
+  @VisibleForTesting ContentCryptographer(SecretKey key, Provider derivationProvider,
+      Provider encryptionProvider, SecureRandom random, int verificationPercent,
+      int derivedKeyCacheSize) {
+    checkArgument(verificationPercent >= 0 && verificationPercent <= 100,
+        "verificationPercent must be between 0 and 100");
     this.key = key;
     this.derivationProvider = derivationProvider;
     this.encryptionProvider = encryptionProvider;
     this.random = random;
+    this.verificationPercent = verificationPercent;
+    this.derivedKeys = CacheBuilder.newBuilder()
+        .maximumSize(derivedKeyCacheSize)
+        .removalListener((RemovalListener<String, DerivedKey>) n -> n.getValue().destroy())
+        .build(CacheLoader.from((info) -> new DerivedKey(deriveKeyBytes(info))));
   }
 
   public class Encrypter {
@@ -93,30 +135,26 @@ public class ContentCryptographer {
      * Encrypts content under a derived key.
      *
      * @param plaintextBase64 plaintext content to encrypt, which is expected to be base64-encoded
-     * @return serialized JSON containing ciphertext and parameters necessary for decryption
+     * @return serialized envelope containing ciphertext and parameters necessary for decryption
      */
     public String encrypt(String plaintextBase64) {
-      Base64.Decoder decoder = getDecoder();
-      final byte[] plaintext = decoder.decode(plaintextBase64);
+      final byte[] plaintext = getDecoder().decode(plaintextBase64);
 
       byte[] nonce = new byte[NONCE_BYTES];
       random.nextBytes(nonce);
 
       byte[] ciphertext = gcm(Mode.ENCRYPT, derivationInfo, nonce, plaintext);
-      Crypted crypted = Crypted.of(derivationInfo, ciphertext, nonce);
-      String encryptedJson;
-      try {
-        encryptedJson = MAPPER.writeValueAsString(crypted);
-      } catch (JsonProcessingException e) {
-        throw Throwables.propagate(e);
-      }
+      String envelope = seal(nonce, ciphertext);
 
-      if (!Subtles.secureCompare(decoder.decode(decrypt(encryptedJson)), plaintext)) {
-        logger.warn("Decryption of (just encrypted) data does not match original! [name={}]",
-            derivationInfo);
+      if (shouldVerify()) {
+        byte[] decrypted = gcm(Mode.DECRYPT, derivationInfo, nonce, ciphertext);
+        if (!Subtles.secureCompare(decrypted, plaintext)) {
+          logger.warn("Decryption of (just encrypted) data does not match original! [name={}]",
+              derivationInfo);
+        }
       }
 
-      return encryptedJson;
+      return envelope;
     }
   }
 
@@ -134,42 +172,162 @@ public class ContentCryptographer {
   /**
    * Decrypts content previously encrypted by {@link ContentCryptographer}.
    *
-   * @param ciphertextJson JSON from prior {@link Encrypter#encrypt} call
+   * @param secretName name of the secret the content belongs to, from which the key is derived
+   * @param encryptedContent output of a prior {@link Encrypter#encrypt} call, in either the
+   * envelope or the legacy JSON format
    * @return original base64 plaintext without padding
    */
-  public String decrypt(String ciphertextJson) {
-    Crypted crypted;
+  public String decrypt(String secretName, String encryptedContent) {
+    byte[] plaintext;
+    if (isLegacyFormat(encryptedContent)) {
+      Crypted crypted = parseLegacy(encryptedContent);
+      plaintext = gcm(Mode.DECRYPT, crypted.derivationInfo(), crypted.ivBytes(),
+          crypted.contentBytes());
+    } else {
+      ByteBuffer envelope = open(encryptedContent);
+      int nonceLength = Byte.toUnsignedInt(envelope.get());
+      if (nonceLength == 0 || nonceLength > envelope.remaining()) {
+        throw new IllegalArgumentException("Invalid envelope nonce length " + nonceLength);
+      }
+      byte[] nonce = new byte[nonceLength];
+      envelope.get(nonce);
+      byte[] ciphertext = new byte[envelope.remaining()];
+      envelope.get(ciphertext);
+      plaintext = gcm(Mode.DECRYPT, secretName, nonce, ciphertext);
+    }
+    return getEncoder().encodeToString(plaintext);
+  }
+
+  /**
+   * @param encryptedContent output of a prior {@link Encrypter#encrypt} call
+   * @return true if the content is in the legacy JSON format rather than an envelope.
+   */
+  public static boolean isLegacyFormat(String encryptedContent) {
+    // '{' is not part of the base64 alphabet, so an envelope can never start with it.
+    return encryptedContent.startsWith("{");
+  }
+
+  /**
+   * Re-encodes legacy JSON content as an envelope without decrypting it. Only possible if the
+   * content was encrypted under the secret name, which envelopes imply.
+   *
+   * @param secretName name of the secret the content belongs to
+   * @param legacyJson content in the legacy JSON format
+   * @return the same ciphertext and nonce, as an envelope
+   * @throws IllegalArgumentException if the content is not JSON or was derived from another name
+   */
+  public static String toEnvelope(String secretName, String legacyJson) {
+    Crypted crypted = parseLegacy(legacyJson);
+    checkArgument(crypted.derivationInfo().equals(secretName),
+        "Content was not encrypted under a key derived from the secret name");
+    return seal(crypted.ivBytes(), crypted.contentBytes());
+  }
+
+  private static String seal(byte[] nonce, byte[] ciphertext) {
+    // The nonce length is stored as a single unsigned byte.
+    checkArgument(nonce.length <= 0xFF, "Nonce of %s bytes is too long", nonce.length);
+    ByteBuffer envelope =
+        ByteBuffer.allocate(ENVELOPE_HEADER_BYTES + nonce.length + ciphertext.length)
+        .put(ENVELOPE_MAGIC)
+        .put(ENVELOPE_VERSION)
+        .put((byte) nonce.length)
+        .put(nonce)
+        .put(ciphertext);
+    return getEncoder().encodeToString(envelope.array());
+  }
+
+  /** @return buffer positioned at the nonce length. */
+  private static ByteBuffer open(String encryptedContent) {
+    ByteBuffer envelope;
+    try {
+      envelope = ByteBuffer.wrap(getDecoder().decode(encryptedContent));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Encrypted content is neither an envelope nor JSON", e);
+    }
+
+    if (envelope.remaining() < ENVELOPE_HEADER_BYTES
+        || envelope.get() != ENVELOPE_MAGIC[0] || envelope.get() != ENVELOPE_MAGIC[1]) {
+      throw new IllegalArgumentException("Encrypted content is not an envelope");
+    }
+    byte version = envelope.get();
+    if (version != ENVELOPE_VERSION) {
+      throw new IllegalArgumentException("Unsupported envelope version " + version);
+    }
+    return envelope;
+  }
+
+  private static Crypted parseLegacy(String ciphertextJson) {
     try {
-      crypted = MAPPER.readValue(ciphertextJson, Crypted.class);
+      return MAPPER.readValue(ciphertextJson, Crypted.class);
     } catch (IOException e) {
       throw new IllegalArgumentException("Cannot deserialize Crypted json", e);
     }
+  }
 
-    byte[] plaintext = gcm(Mode.DECRYPT, crypted.derivationInfo(), crypted.ivBytes(), crypted.contentBytes());
-    return getEncoder().encodeToString(plaintext);
+  private boolean shouldVerify() {
+    return verificationPercent == 100 ||
+        (verificationPercent > 0 && ThreadLocalRandom.current().nextInt(100) < verificationPercent);
   }
 
-  private SecretKey deriveKey(int blockSize, String info) {
+  private byte[] deriveKeyBytes(String info) {
     Hkdf hkdf = Hkdf.usingProvider(derivationProvider);
     byte[] infoBytes = info.getBytes(UTF_8);
-    byte[] derivedKeyBytes = hkdf.expand(key, infoBytes, blockSize);
-    return new SecretKeySpec(derivedKeyBytes, KEY_ALGORITHM);
+    return hkdf.expand(key, infoBytes, DERIVED_KEY_BYTES);
+  }
+
+  private SecretKey derivedKey(String info) {
+    SecretKey derivedKey = derivedKeys.getUnchecked(info).toKeySpec();
+    if (derivedKey == null) {
+      // Evicted, and therefore zeroed, between lookup and use. Rare enough to not bother caching.
+      byte[] derivedKeyBytes = deriveKeyBytes(info);
+      derivedKey = new SecretKeySpec(derivedKeyBytes, KEY_ALGORITHM);
+      Arrays.fill(derivedKeyBytes, (byte) 0);
+    }
+    return derivedKey;
+  }
+
+  private Cipher newCipher() {
+    try {
+      return Cipher.getInstance(ENCRYPTION_ALGORITHM, encryptionProvider);
+    } catch (NoSuchPaddingException | NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   private byte[] gcm(Mode mode, String info, byte[] nonce, byte[] data) {
     try {
-      Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM, encryptionProvider);
-      SecretKey derivedKey = deriveKey(cipher.getBlockSize(), info);
+      Cipher cipher = ciphers.get();
       GCMParameterSpec gcmParameters = new GCMParameterSpec(TAG_BITS, nonce);
-      cipher.init(mode.cipherMode, derivedKey, gcmParameters);
+      cipher.init(mode.cipherMode, derivedKey(info), gcmParameters);
       return cipher.doFinal(data);
-    } catch (IllegalBlockSizeException | InvalidAlgorithmParameterException | NoSuchPaddingException | NoSuchAlgorithmException | InvalidKeyException | BadPaddingException e) {
+    } catch (IllegalBlockSizeException | InvalidAlgorithmParameterException | InvalidKeyException | BadPaddingException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  /** Cached key material, zeroed once the cache lets go of it. */
+  private static class DerivedKey {
+    private final byte[] keyBytes;
+    private boolean destroyed = false;
+
+    DerivedKey(byte[] keyBytes) {
+      this.keyBytes = keyBytes;
+    }
+
+    /** @return a copy of the key, or null if it has been destroyed. */
+    @Nullable synchronized SecretKey toKeySpec() {
+      return destroyed ? null : new SecretKeySpec(keyBytes, KEY_ALGORITHM);
+    }
+
+    synchronized void destroy() {
+      Arrays.fill(keyBytes, (byte) 0);
+      destroyed = true;
+    }
+  }
+
   /**
-   * Non-public value type representing JSON serialized fields for encrypted data.
+   * Non-public value type representing JSON serialized fields for encrypted data, as written before
+   * envelopes were introduced.
    */
   @AutoValue static abstract class Crypted {
     static Crypted of(String info, byte[] content, byte[] iv) {
@@ -47,14 +47,19 @@ public class CryptoModule extends AbstractModule {
 
   private final String derivationProviderClass;
   private final KeyStoreConfig keyStoreConfig;
+  private final int verificationPercent;
 
   // TODO: These values can be read from KeywhizConfig directly once the CLI uses a proper API.
-  public CryptoModule(String derivationProviderClass, KeyStoreConfig keyStoreConfig) {
+  public CryptoModule(String derivationProviderClass, KeyStoreConfig keyStoreConfig,
+      int verificationPercent) {
     this.derivationProviderClass = derivationProviderClass;
     this.keyStoreConfig = keyStoreConfig;
+    this.verificationPercent = verificationPercent;
   }
 
-  @Override protected void configure() {}
+  @Override protected void configure() {
+    bindConstant().annotatedWith(Verification.class).to(verificationPercent);
+  }
 
   @Provides @Derivation @Singleton SecretKey baseDerivationKey(@Derivation Provider provider) {
     String alias = keyStoreConfig.alias();
@@ -106,4 +111,10 @@ public class CryptoModule extends AbstractModule {
 
   /** Denotes objects used for key derivation. */
   @Qualifier @Retention(RUNTIME) public @interface Derivation {}
+
+  /** Denotes the percentage of encryptions verified by decrypting them again. */
+  @Qualifier @Retention(RUNTIME) public @interface Verification {}
+
+  /** Denotes objects used to decrypt lists of secrets in parallel. */
+  @Qualifier @Retention(RUNTIME) public @interface Decryption {}
 }
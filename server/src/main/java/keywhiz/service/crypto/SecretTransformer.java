@@ -16,24 +16,55 @@
 
 package keywhiz.service.crypto;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import javax.inject.Inject;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretContent;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.SecretSeriesAndContent;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Transforms DB content to Secret model, performing crypto when needed.
+ *
+ * Lists long enough to be worth it are decrypted in parallel, split into at most
+ * {@code parallelism} chunks. The calling thread decrypts the first chunk itself while the rest
+ * run on the decryption executor.
  */
 public class SecretTransformer {
+  // Below this many secrets per chunk, handing work to another thread costs more than it saves.
+  private static final int MIN_SECRETS_PER_CHUNK = 16;
+
   private final ContentCryptographer cryptographer;
+  private final ExecutorService decryptionExecutor;
+  private final int parallelism;
+
+  /** Creates a transformer which decrypts on the calling thread only. */
+  public SecretTransformer(ContentCryptographer cryptographer) {
+    this(cryptographer, MoreExecutors.newDirectExecutorService(), 1);
+  }
 
-  @Inject public SecretTransformer(ContentCryptographer cryptographer) {
-    this.cryptographer = cryptographer;
+  /**
+   * @param decryptionExecutor runs chunks of a list being decrypted in parallel.
+   * @param parallelism maximum number of chunks a list is decrypted in, including the one
+   * decrypted by the calling thread.
+   */
+  public SecretTransformer(ContentCryptographer cryptographer, ExecutorService decryptionExecutor,
+      int parallelism) {
+    checkArgument(parallelism >= 1, "parallelism must be at least 1");
+    this.cryptographer = checkNotNull(cryptographer);
+    this.decryptionExecutor = checkNotNull(decryptionExecutor);
+    this.parallelism = parallelism;
   }
 
   /**
@@ -44,7 +75,76 @@ public class SecretTransformer {
     SecretSeries series = seriesAndContent.series();
     SecretContent content = seriesAndContent.content();
 
-    final String secretContent = cryptographer.decrypt(content.encryptedContent());
+    final String secretContent = cryptographer.decrypt(series.name(), content.encryptedContent());
+    return transform(seriesAndContent, secretContent);
+  }
+
+  /**
+   * Transform DB content to a Secret model when its plaintext is already at hand, such as right
+   * after it was encrypted and stored. No decryption is performed.
+   */
+  public Secret transform(SecretSeriesAndContent seriesAndContent, String secretContent) {
+    checkNotNull(secretContent);
+    return toSecret(seriesAndContent, () -> secretContent);
+  }
+
+  /**
+   * Transform DB content to a Secret model which is only decrypted if its content is read. Suits
+   * callers which mostly need the other fields, such as listings and sanitized views.
+   */
+  public Secret transformLazily(SecretSeriesAndContent seriesAndContent) {
+    checkNotNull(seriesAndContent);
+    String name = seriesAndContent.series().name();
+    String encryptedContent = seriesAndContent.content().encryptedContent();
+    return toSecret(seriesAndContent, () -> cryptographer.decrypt(name, encryptedContent));
+  }
+
+  /**
+   * Transform a list of DB content to lazily decrypted Secret models.
+   */
+  public List<Secret> transformLazily(List<SecretSeriesAndContent> seriesAndContents) {
+    return seriesAndContents.stream().map(this::transformLazily).collect(Collectors.toList());
+  }
+
+  /**
+   * Transform a list of DB content to Secret models, in the same order.
+   */
+  public List<Secret> transform(List<SecretSeriesAndContent> seriesAndContents) {
+    int chunks = Math.min(parallelism, seriesAndContents.size() / MIN_SECRETS_PER_CHUNK);
+    if (chunks <= 1) {
+      return transformSerially(seriesAndContents);
+    }
+
+    int chunkSize = (seriesAndContents.size() + chunks - 1) / chunks;
+    List<List<SecretSeriesAndContent>> partitions = Lists.partition(seriesAndContents, chunkSize);
+
+    List<Future<List<Secret>>> futures = partitions.subList(1, partitions.size()).stream()
+        .map(partition -> decryptionExecutor.submit(() -> transformSerially(partition)))
+        .collect(Collectors.toList());
+
+    ImmutableList.Builder<Secret> secrets = ImmutableList.builder();
+    try {
+      secrets.addAll(transformSerially(partitions.get(0)));
+      for (Future<List<Secret>> future : futures) {
+        secrets.addAll(Uninterruptibles.getUninterruptibly(future));
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+    return secrets.build();
+  }
+
+  private List<Secret> transformSerially(List<SecretSeriesAndContent> seriesAndContents) {
+    return seriesAndContents.stream().map(this::transform).collect(Collectors.toList());
+  }
+
+  private static Secret toSecret(SecretSeriesAndContent seriesAndContent,
+      Secret.LazyString secretContent) {
+    checkNotNull(seriesAndContent);
+    SecretSeries series = seriesAndContent.series();
+    SecretContent content = seriesAndContent.content();
 
     return new Secret(
         series.id(),
@@ -60,11 +160,4 @@ public class SecretTransformer {
         series.type().orElse(null),
         series.generationOptions());
   }
-
-  /**
-   * Transform a list of DB content to Secret models.
-   */
-  public List<Secret> transform(List<SecretSeriesAndContent> seriesAndContents) {
-    return seriesAndContents.stream().map(this::transform).collect(Collectors.toList());
-  }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.service.config.CacheConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Snapshot of the secret series each client may read, keyed by client name and then by secret
+ * name.
+ *
+ * Entries expire after a configurable TTL and are dropped whenever {@link AclDAO} writes access
+ * grants or memberships. The TTL also bounds staleness introduced by read replica lag, since a
+ * dropped entry is reloaded through the DAO's (possibly readonly) connection.
+ */
+public class AclCache {
+  @Nullable private final Cache<String, ImmutableMap<String, SecretSeries>> cache;
+  private final Meter hits;
+  private final Meter misses;
+
+  // Bumped on every invalidation so that a load racing with a write is not left in the cache.
+  private final AtomicLong generation = new AtomicLong();
+
+  private AclCache(@Nullable Cache<String, ImmutableMap<String, SecretSeries>> cache, Meter hits,
+      Meter misses) {
+    this.cache = cache;
+    this.hits = hits;
+    this.misses = misses;
+  }
+
+  /** @return a cache which never retains entries. */
+  public static AclCache disabled() {
+    return new AclCache(null, new Meter(), new Meter());
+  }
+
+  /**
+   * @param config cache settings. A disabled config results in {@link #disabled()}.
+   * @param metricRegistry registry to report hits and misses to.
+   * @return a cache honoring the given configuration.
+   */
+  public static AclCache create(CacheConfig config, MetricRegistry metricRegistry) {
+    checkNotNull(metricRegistry);
+    if (!config.isEnabled()) {
+      return disabled();
+    }
+
+    Cache<String, ImmutableMap<String, SecretSeries>> cache = CacheBuilder.newBuilder()
+        .maximumSize(config.getMaximumSize())
+        .expireAfterWrite(config.getExpiration().toMilliseconds(), TimeUnit.MILLISECONDS)
+        .build();
+    return new AclCache(cache,
+        metricRegistry.meter(name(AclCache.class, "hits")),
+        metricRegistry.meter(name(AclCache.class, "misses")));
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * @param clientName name of the client whose readable secrets are requested.
+   * @param loader computes the client's readable series, by secret name, on a miss.
+   * @return cached or freshly loaded series readable by the client.
+   */
+  ImmutableMap<String, SecretSeries> readableSeries(String clientName,
+      Supplier<ImmutableMap<String, SecretSeries>> loader) {
+    if (cache == null) {
+      return loader.get();
+    }
+
+    ImmutableMap<String, SecretSeries> series = cache.getIfPresent(clientName);
+    if (series != null) {
+      hits.mark();
+      return series;
+    }
+
+    misses.mark();
+    long loadGeneration = generation.get();
+    series = loader.get();
+    cache.put(clientName, series);
+    if (generation.get() != loadGeneration) {
+      cache.invalidate(clientName);
+    }
+    return series;
+  }
+
+  /**
+   * Drops every entry. Grant and membership writes can affect any number of clients, so there is
+   * no cheaper targeted invalidation.
+   */
+  void invalidateAll() {
+    generation.incrementAndGet();
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+}
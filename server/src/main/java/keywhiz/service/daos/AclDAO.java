@@ -16,13 +16,28 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.inject.Inject;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.Group;
@@ -37,15 +52,25 @@ import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.Condition;
 import org.jooq.Configuration;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static keywhiz.jooq.tables.Accessgrants.ACCESSGRANTS;
 import static keywhiz.jooq.tables.Clients.CLIENTS;
 import static keywhiz.jooq.tables.Groups.GROUPS;
@@ -55,6 +80,9 @@ import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 
 public class AclDAO {
   private static final Logger logger = LoggerFactory.getLogger(AclDAO.class);
+  private static final int MAX_IDS_PER_QUERY = 1000;
+  private static final int STREAMING_FETCH_SIZE = 100;
+  private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
 
   private final DSLContext dslContext;
   private final ClientDAOFactory clientDAOFactory;
@@ -64,11 +92,16 @@ public class AclDAO {
   private final ClientMapper clientMapper;
   private final GroupMapper groupMapper;
   private final SecretSeriesMapper secretSeriesMapper;
+  private final SecretContentMapper secretContentMapper;
+  private final AclCache aclCache;
+  private final ChangeNotifier changeNotifier;
 
   private AclDAO(DSLContext dslContext, ClientDAOFactory clientDAOFactory,
       GroupDAOFactory groupDAOFactory, SecretContentDAOFactory secretContentDAOFactory,
       SecretSeriesDAOFactory secretSeriesDAOFactory, ClientMapper clientMapper,
-      GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper) {
+      GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper,
+      SecretContentMapper secretContentMapper, AclCache aclCache,
+      ChangeNotifier changeNotifier) {
     this.dslContext = dslContext;
     this.clientDAOFactory = clientDAOFactory;
     this.groupDAOFactory = groupDAOFactory;
@@ -77,6 +110,9 @@ public class AclDAO {
     this.clientMapper = clientMapper;
     this.groupMapper = groupMapper;
     this.secretSeriesMapper = secretSeriesMapper;
+    this.secretContentMapper = secretContentMapper;
+    this.aclCache = aclCache;
+    this.changeNotifier = changeNotifier;
   }
 
   public void findAndAllowAccess(long secretId, long groupId) {
@@ -100,6 +136,8 @@ public class AclDAO {
 
       allowAccess(configuration, secretId, groupId);
     });
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   public void findAndRevokeAccess(long secretId, long groupId) {
@@ -123,6 +161,8 @@ public class AclDAO {
 
       revokeAccess(configuration, secretId, groupId);
     });
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   public void findAndEnrollClient(long clientId, long groupId) {
@@ -146,6 +186,8 @@ public class AclDAO {
 
       enrollClient(configuration, clientId, groupId);
     });
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   public void findAndEvictClient(long clientId, long groupId) {
@@ -169,25 +211,26 @@ public class AclDAO {
 
       evictClient(configuration, clientId, groupId);
     });
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor(Group group) {
     checkNotNull(group);
 
     ImmutableSet.Builder<SanitizedSecret> set = ImmutableSet.builder();
-
-    return dslContext.transactionResult(configuration -> {
-      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
-
-      for (SecretSeries series : getSecretSeriesFor(configuration, group)) {
-        for (SecretContent content : secretContentDAO.getSecretContentsBySecretId(series.id())) {
-          SecretSeriesAndContent seriesAndContent = SecretSeriesAndContent.of(series, content);
-          set.add(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
-        }
-      }
-
-      return set.build();
-    });
+    dslContext
+        .select()
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
+        .join(GROUPS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+        .where(GROUPS.NAME.eq(group.getName()))
+        .fetch()
+        .forEach(record -> set.add(SanitizedSecret.fromSecretSeriesAndContent(
+            SecretSeriesAndContent.of(secretSeriesMapper.map(record.into(SECRETS)),
+                secretContentMapper.map(record.into(SECRETS_CONTENT))))));
+    return set.build();
   }
 
   public Set<Group> getGroupsFor(Secret secret) {
@@ -202,6 +245,24 @@ public class AclDAO {
     return new HashSet<>(r);
   }
 
+  /**
+   * Fetches the groups with access to every secret series in one query, to be grouped in memory
+   * instead of issuing {@link #getGroupsFor(Secret)} per secret.
+   *
+   * @return groups keyed by secret series id. Series without grants are absent.
+   */
+  public ImmutableSetMultimap<Long, Group> getGroupsForSecrets() {
+    ImmutableSetMultimap.Builder<Long, Group> groups = ImmutableSetMultimap.builder();
+    dslContext
+        .select()
+        .from(GROUPS)
+        .join(ACCESSGRANTS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
+        .fetch()
+        .forEach(record -> groups.put(record.getValue(ACCESSGRANTS.SECRETID).longValue(),
+            groupMapper.map(record.into(GROUPS))));
+    return groups.build();
+  }
+
   public Set<Group> getGroupsFor(Client client) {
     List<Group> r = dslContext
         .select()
@@ -214,6 +275,31 @@ public class AclDAO {
     return new HashSet<>(r);
   }
 
+  /**
+   * Fetches the groups of many clients at once, instead of issuing
+   * {@link #getGroupsFor(Client)} per client. Ids are queried in chunks of
+   * {@value #MAX_IDS_PER_QUERY} to keep statements within database parameter limits.
+   *
+   * @param clientIds ids of the clients to look up.
+   * @return groups keyed by client id. Clients without memberships are absent.
+   */
+  public ImmutableSetMultimap<Long, Group> getGroupsForClients(Collection<Long> clientIds) {
+    checkNotNull(clientIds);
+
+    ImmutableSetMultimap.Builder<Long, Group> groups = ImmutableSetMultimap.builder();
+    for (List<Long> chunk : Iterables.partition(clientIds, MAX_IDS_PER_QUERY)) {
+      dslContext
+          .select()
+          .from(GROUPS)
+          .join(MEMBERSHIPS).on(GROUPS.ID.eq(MEMBERSHIPS.GROUPID))
+          .where(MEMBERSHIPS.CLIENTID.in(chunk.stream().map(Math::toIntExact).collect(toList())))
+          .fetch()
+          .forEach(record -> groups.put(record.getValue(MEMBERSHIPS.CLIENTID).longValue(),
+              groupMapper.map(record.into(GROUPS))));
+    }
+    return groups.build();
+  }
+
   public Set<Client> getClientsFor(Group group) {
     List<Client> r = dslContext
         .select()
@@ -227,30 +313,187 @@ public class AclDAO {
   }
 
   public ImmutableSet<SanitizedSecret> getSanitizedSecretsFor(Client client) {
-    checkNotNull(client);
-
-    // In the past, the two data fetches below were wrapped in a transaction. The transaction was
-    // removed because jOOQ transactions doesn't play well with MySQL readonly connections
-    // (see https://github.com/jOOQ/jOOQ/issues/3955).
-    //
-    // A possible work around is to write a transaction manager (see http://git.io/vkuFM)
-    //
-    // Removing the transaction however seems to be simpler and safe. The first data fetch's
-    // secret.id is used for the second data fetch.
-    //
-    // A third way to work around this issue is to write a SQL join. Jooq makes it relatively easy,
-    // but such joins hurt code re-use.
-    SecretContentDAO secretContentDAO = secretContentDAOFactory.using(dslContext.configuration());
-
     ImmutableSet.Builder<SanitizedSecret> sanitizedSet = ImmutableSet.builder();
+    forEachSanitizedSecretFor(client, sanitizedSet::add);
+    return sanitizedSet.build();
+  }
 
-    for (SecretSeries series : getSecretSeriesFor(dslContext.configuration(), client)) {
-      for (SecretContent content : secretContentDAO.getSecretContentsBySecretId(series.id())) {
+  /**
+   * Passes each secret accessible by a client to a consumer as rows are read, so callers that
+   * stream results need not hold them all in memory. The underlying cursor, and therefore a
+   * connection, stays open until the consumer has seen every secret.
+   *
+   * Whether rows are actually streamed from the database depends on the dialect. MySQL streams
+   * one row at a time, Postgres reads a batch of rows per round trip within a transaction, and H2
+   * reads the whole result before the first row is returned.
+   *
+   * If the database fails part way through, the exception propagates out of this method after
+   * the consumer has already seen some secrets. Callers must not treat what they received until
+   * then as the complete set.
+   *
+   * @param client client to fetch accessible secrets for
+   * @param consumer called once per accessible secret version, ordered by secret series
+   */
+  public void forEachSanitizedSecretFor(Client client, Consumer<SanitizedSecret> consumer) {
+    checkNotNull(client);
+    checkNotNull(consumer);
+
+    switch (dslContext.configuration().dialect().family()) {
+      case MYSQL:
+      case MARIADB:
+        // Connector/J only streams result sets for this fetch size; any other is buffered.
+        forEachSanitizedSecretFor(dslContext, Integer.MIN_VALUE, client, consumer);
+        break;
+      case POSTGRES:
+        // The Postgres driver ignores the fetch size, buffering every row, unless autocommit is off.
+        dslContext.transaction(configuration -> forEachSanitizedSecretFor(
+            DSL.using(configuration), STREAMING_FETCH_SIZE, client, consumer));
+        break;
+      default:
+        forEachSanitizedSecretFor(dslContext, STREAMING_FETCH_SIZE, client, consumer);
+    }
+  }
+
+  private void forEachSanitizedSecretFor(DSLContext context, int fetchSize, Client client,
+      Consumer<SanitizedSecret> consumer) {
+    // Series and contents are fetched with a single statement, rather than one query per series,
+    // as clients routinely hold hundreds of secrets. The access check is expressed as a semi-join
+    // so a client with several paths to the same secret still yields each row once, and rows are
+    // streamed through a cursor instead of being materialized as a jOOQ Result. Ordering by series
+    // means only the current series needs to be kept while iterating.
+    Cursor<Record> cursor = context
+        .select(SECRETS.fields())
+        .select(SECRETS_CONTENT.fields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .where(SECRETS.ID.in(
+            DSL.select(ACCESSGRANTS.SECRETID)
+                .from(ACCESSGRANTS)
+                .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+                .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+                .where(CLIENTS.NAME.eq(client.getName()))))
+        .orderBy(SECRETS.ID)
+        .fetchSize(fetchSize)
+        .fetchLazy();
+    try {
+      SecretSeries series = null;
+      for (Record record : cursor) {
+        if (series == null || series.id() != record.getValue(SECRETS.ID)) {
+          series = secretSeriesMapper.map(record.into(SECRETS));
+        }
+        SecretContent content = secretContentMapper.map(record.into(SECRETS_CONTENT));
         SecretSeriesAndContent seriesAndContent = SecretSeriesAndContent.of(series, content);
-        sanitizedSet.add(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
+        consumer.accept(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
       }
+    } finally {
+      cursor.close();
     }
-    return sanitizedSet.build();
+  }
+
+  /**
+   * Summarizes everything that determines the secrets returned to a client, so that unchanged
+   * responses can be recognized without reading or decrypting any content.
+   *
+   * @param client client to fingerprint accessible secrets for
+   * @return opaque value which changes whenever a secret, version, access grant or membership
+   * affecting the client is added, removed or updated
+   */
+  public String getSecretsFingerprintFor(Client client) {
+    checkNotNull(client);
+    return hashFingerprint(client.getName(),
+        fingerprintRecord(client, DSL.trueCondition()).intoList());
+  }
+
+  /**
+   * Computes {@link #getSecretsFingerprintFor(Client)} for many clients with one grouped query per
+   * chunk of names, rather than one query per client.
+   *
+   * @param clientNames names of the clients to fingerprint accessible secrets for
+   * @return fingerprint of each client name, equal to the one computed for the client alone
+   */
+  public ImmutableMap<String, String> getSecretsFingerprintsFor(Set<String> clientNames) {
+    checkNotNull(clientNames);
+
+    Map<String, String> fingerprints = Maps.newHashMapWithExpectedSize(clientNames.size());
+    for (List<String> chunk : Iterables.partition(clientNames, MAX_IDS_PER_QUERY)) {
+      dslContext
+          .select(CLIENTS.NAME)
+          .select(fingerprintFields())
+          .from(SECRETS)
+          .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+          .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
+          .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+          .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+          .where(CLIENTS.NAME.in(chunk))
+          .groupBy(CLIENTS.NAME)
+          .fetch()
+          .forEach(record -> {
+            List<Object> values = record.intoList();
+            fingerprints.put(record.getValue(CLIENTS.NAME),
+                hashFingerprint(record.getValue(CLIENTS.NAME), values.subList(1, values.size())));
+          });
+    }
+
+    // Clients without any secret have no group, and aggregate over no rows when alone.
+    List<Object> empty = Arrays.asList(0, null, null, null, null, null, null, null);
+    for (String name : clientNames) {
+      fingerprints.computeIfAbsent(name, missing -> hashFingerprint(missing, empty));
+    }
+    return ImmutableMap.copyOf(fingerprints);
+  }
+
+  /**
+   * @param client client to fingerprint the secret for
+   * @param name name of the secret
+   * @param version version of the secret, empty for unversioned secrets
+   * @return opaque value which changes whenever the secret version, or the client's access to it,
+   * changes. Absent if the client cannot access the secret version.
+   */
+  public Optional<String> getSecretFingerprintFor(Client client, String name, String version) {
+    checkNotNull(client);
+    checkArgument(!name.isEmpty());
+    checkNotNull(version);
+
+    Record record =
+        fingerprintRecord(client, SECRETS.NAME.eq(name).and(SECRETS_CONTENT.VERSION.eq(version)));
+    if (record.getValue(0, Integer.class) == 0) {
+      return Optional.empty();
+    }
+    return Optional.of(hashFingerprint(client.getName(), record.intoList()));
+  }
+
+  // Sums of ids catch rows being replaced within the timestamp resolution, and counts catch rows
+  // being removed, which leaves the latest timestamps unchanged. Each access path is one row, so
+  // adding or removing a redundant grant or membership also changes the fingerprint.
+  private Record fingerprintRecord(Client client, Condition condition) {
+    return dslContext
+        .select(fingerprintFields())
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
+        .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+        .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+        .where(CLIENTS.NAME.eq(client.getName()))
+        .and(condition)
+        .fetchOne();
+  }
+
+  private static List<Field<?>> fingerprintFields() {
+    return ImmutableList.of(DSL.count(),
+        DSL.sum(SECRETS_CONTENT.ID), maxTimestamp(SECRETS_CONTENT.UPDATEDAT),
+        maxTimestamp(SECRETS.UPDATEDAT),
+        DSL.sum(ACCESSGRANTS.ID), maxTimestamp(ACCESSGRANTS.UPDATEDAT),
+        DSL.sum(MEMBERSHIPS.ID), maxTimestamp(MEMBERSHIPS.UPDATEDAT));
+  }
+
+  // Bypasses the OffsetDateTime converter, which cannot handle the null of an empty aggregate.
+  private static Field<Timestamp> maxTimestamp(Field<?> field) {
+    return DSL.max(DSL.field("{0}", SQLDataType.TIMESTAMP, field));
+  }
+
+  private static String hashFingerprint(String clientName, List<?> aggregates) {
+    String values = Joiner.on(':').useForNull("").join(aggregates);
+    return Hashing.sha256().hashString(clientName + '\0' + values, UTF_8).toString();
   }
 
   public Set<Client> getClientsFor(Secret secret) {
@@ -284,7 +527,7 @@ public class AclDAO {
     // but such joins hurt code re-use.
     SecretContentDAO secretContentDAO = secretContentDAOFactory.using(dslContext.configuration());
 
-    Optional<SecretSeries> secretSeries = getSecretSeriesFor(dslContext.configuration(), client, name);
+    Optional<SecretSeries> secretSeries = getReadableSecretSeries(client, name);
     if (!secretSeries.isPresent()) {
       return Optional.empty();
     }
@@ -300,27 +543,62 @@ public class AclDAO {
     return Optional.of(SanitizedSecret.fromSecretSeriesAndContent(seriesAndContent));
   }
 
-  protected void allowAccess(Configuration configuration, long secretId, long groupId) {
-    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+  /**
+   * Filters secret series names down to those the client may read, using a single query.
+   *
+   * @param client client to access secrets
+   * @param names names of SecretSeries
+   * @return subset of names readable by the client. As with
+   * {@link #getSanitizedSecretFor(Client, String, String)}, unauthorized and missing series are
+   * not distinguished.
+   */
+  public ImmutableSet<String> getReadableSecretNamesFor(Client client, Set<String> names) {
+    checkNotNull(client);
+    checkNotNull(names);
+    if (names.isEmpty()) {
+      return ImmutableSet.of();
+    }
 
-    int secretIdInt = Math.toIntExact(secretId);
-    int groupIdInt = Math.toIntExact(groupId);
+    if (aclCache.isEnabled()) {
+      ImmutableMap<String, SecretSeries> readable = aclCache.readableSeries(client.getName(),
+          () -> Maps.uniqueIndex(getSecretSeriesFor(dslContext.configuration(), client),
+              SecretSeries::name));
+      return ImmutableSet.copyOf(Sets.intersection(names, readable.keySet()));
+    }
+
+    List<String> r = dslContext
+        .selectDistinct(SECRETS.NAME)
+        .from(SECRETS)
+        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
+        .join(MEMBERSHIPS).on(ACCESSGRANTS.GROUPID.eq(MEMBERSHIPS.GROUPID))
+        .join(CLIENTS).on(CLIENTS.ID.eq(MEMBERSHIPS.CLIENTID))
+        .where(SECRETS.NAME.in(names).and(CLIENTS.NAME.eq(client.getName())))
+        .fetch(SECRETS.NAME);
+    return ImmutableSet.copyOf(r);
+  }
 
-    boolean assigned = 0 < DSL.using(configuration)
-        .fetchCount(ACCESSGRANTS,
-            ACCESSGRANTS.SECRETID.eq(secretIdInt).and(
-            ACCESSGRANTS.GROUPID.eq(groupIdInt)));
-    if (assigned) {
-      return;
+  /**
+   * Resolves the series through the {@link AclCache} when enabled, loading every series readable
+   * by the client on a miss so that subsequent lookups for other names are served from memory.
+   */
+  private Optional<SecretSeries> getReadableSecretSeries(Client client, String name) {
+    if (!aclCache.isEnabled()) {
+      return getSecretSeriesFor(dslContext.configuration(), client, name);
     }
 
-    DSL.using(configuration)
-        .insertInto(ACCESSGRANTS)
-        .set(ACCESSGRANTS.SECRETID, secretIdInt)
-        .set(ACCESSGRANTS.GROUPID, groupIdInt)
-        .set(ACCESSGRANTS.CREATEDAT, now)
-        .set(ACCESSGRANTS.UPDATEDAT, now)
-        .execute();
+    ImmutableMap<String, SecretSeries> readable = aclCache.readableSeries(client.getName(),
+        () -> Maps.uniqueIndex(getSecretSeriesFor(dslContext.configuration(), client),
+            SecretSeries::name));
+    return Optional.ofNullable(readable.get(name));
+  }
+
+  protected void allowAccess(Configuration configuration, long secretId, long groupId) {
+    int inserted = insertIfAbsent(configuration, ACCESSGRANTS, ACCESSGRANTS.GROUPID,
+        ACCESSGRANTS.SECRETID, ACCESSGRANTS.CREATEDAT, ACCESSGRANTS.UPDATEDAT,
+        Math.toIntExact(groupId), Math.toIntExact(secretId));
+    if (inserted > 0) {
+      aclCache.invalidateAll();
+    }
   }
 
   protected void revokeAccess(Configuration configuration, long secretId, long groupId) {
@@ -329,29 +607,16 @@ public class AclDAO {
         .where(ACCESSGRANTS.SECRETID.eq(Math.toIntExact(secretId))
             .and(ACCESSGRANTS.GROUPID.eq(Math.toIntExact(groupId))))
         .execute();
+    aclCache.invalidateAll();
   }
 
   protected void enrollClient(Configuration configuration, long clientId, long groupId) {
-    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-
-    int groupIdInt = Math.toIntExact(groupId);
-    int clientIdInt = Math.toIntExact(clientId);
-
-    boolean enrolled = 0 < DSL.using(configuration)
-        .fetchCount(MEMBERSHIPS,
-            MEMBERSHIPS.GROUPID.eq(groupIdInt).and(
-            MEMBERSHIPS.CLIENTID.eq(clientIdInt)));
-    if (enrolled) {
-      return;
+    int inserted = insertIfAbsent(configuration, MEMBERSHIPS, MEMBERSHIPS.GROUPID,
+        MEMBERSHIPS.CLIENTID, MEMBERSHIPS.CREATEDAT, MEMBERSHIPS.UPDATEDAT,
+        Math.toIntExact(groupId), Math.toIntExact(clientId));
+    if (inserted > 0) {
+      aclCache.invalidateAll();
     }
-
-    DSL.using(configuration)
-        .insertInto(MEMBERSHIPS)
-        .set(MEMBERSHIPS.GROUPID, groupIdInt)
-        .set(MEMBERSHIPS.CLIENTID, clientIdInt)
-        .set(MEMBERSHIPS.CREATEDAT, now)
-        .set(MEMBERSHIPS.UPDATEDAT, now)
-        .execute();
   }
 
   protected void evictClient(Configuration configuration, long clientId, long groupId) {
@@ -360,20 +625,67 @@ public class AclDAO {
         .where(MEMBERSHIPS.CLIENTID.eq(Math.toIntExact(clientId))
             .and(MEMBERSHIPS.GROUPID.eq(Math.toIntExact(groupId))))
         .execute();
+    aclCache.invalidateAll();
   }
 
-  protected ImmutableSet<SecretSeries> getSecretSeriesFor(Configuration configuration, Group group) {
-    List<SecretSeries> r = DSL.using(configuration)
-        .select()
-        .from(SECRETS)
-        .join(ACCESSGRANTS).on(SECRETS.ID.eq(ACCESSGRANTS.SECRETID))
-        .join(GROUPS).on(GROUPS.ID.eq(ACCESSGRANTS.GROUPID))
-        .where(GROUPS.NAME.eq(group.getName()))
-        .fetchInto(SECRETS)
-        .map(secretSeriesMapper);
-    return ImmutableSet.copyOf(r);
+  /**
+   * Inserts a row into one of the group join tables unless the pair is already present, in a
+   * single statement. MySQL ignores the duplicate key, and Postgres skips the conflicting row.
+   * Other dialects guard the insert with NOT EXISTS, and a concurrent insert of the same pair
+   * passing it as well is rejected by the unique index, which is treated as the pair existing.
+   *
+   * @return number of rows inserted, 0 if the pair already existed.
+   */
+  private static <R extends Record> int insertIfAbsent(Configuration configuration,
+      Table<R> table, TableField<R, Integer> groupField, TableField<R, Integer> memberField,
+      TableField<R, OffsetDateTime> createdAtField, TableField<R, OffsetDateTime> updatedAtField,
+      int groupId, int memberId) {
+    DSLContext context = DSL.using(configuration);
+    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+
+    switch (configuration.dialect().family()) {
+      case MYSQL:
+      case MARIADB:
+        return context
+            .insertInto(table, groupField, memberField, createdAtField, updatedAtField)
+            .values(groupId, memberId, now, now)
+            .onDuplicateKeyIgnore()
+            .execute();
+      case POSTGRES:
+        // Rendered as plain SQL, as jOOQ 3.6 predates ON CONFLICT. Unlike catching the unique
+        // violation, this does not abort the surrounding transaction.
+        return context.execute("{0} on conflict do nothing", context
+            .insertInto(table, groupField, memberField, createdAtField, updatedAtField)
+            .values(groupId, memberId, now, now));
+      default:
+        try {
+          return context
+              .insertInto(table, groupField, memberField, createdAtField, updatedAtField)
+              .select(DSL.select(DSL.val(groupId, groupField), DSL.val(memberId, memberField),
+                  DSL.val(now, createdAtField), DSL.val(now, updatedAtField))
+                  .whereNotExists(context.selectOne()
+                      .from(table)
+                      .where(groupField.eq(groupId).and(memberField.eq(memberId)))))
+              .execute();
+        } catch (DataAccessException e) {
+          if (isUniqueViolation(e)) {
+            return 0;
+          }
+          throw e;
+        }
+    }
+  }
+
+  @VisibleForTesting static boolean isUniqueViolation(DataAccessException e) {
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException) {
+        return UNIQUE_VIOLATION_SQL_STATE.equals(((SQLException) cause).getSQLState());
+      }
+    }
+    return false;
   }
 
+
   protected ImmutableSet<SecretSeries> getSecretSeriesFor(Configuration configuration, Client client) {
     List<SecretSeries> r = DSL.using(configuration)
         .select()
@@ -418,12 +730,17 @@ public class AclDAO {
     private final ClientMapper clientMapper;
     private final GroupMapper groupMapper;
     private final SecretSeriesMapper secretSeriesMapper;
+    private final SecretContentMapper secretContentMapper;
+    private final AclCache aclCache;
+    private final ChangeNotifier changeNotifier;
 
     @Inject public AclDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
         ClientDAOFactory clientDAOFactory, GroupDAOFactory groupDAOFactory,
         SecretContentDAOFactory secretContentDAOFactory,
         SecretSeriesDAOFactory secretSeriesDAOFactory, ClientMapper clientMapper,
-        GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper) {
+        GroupMapper groupMapper, SecretSeriesMapper secretSeriesMapper,
+        SecretContentMapper secretContentMapper, AclCache aclCache,
+        ChangeNotifier changeNotifier) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.clientDAOFactory = clientDAOFactory;
@@ -433,22 +750,28 @@ public class AclDAO {
       this.clientMapper = clientMapper;
       this.groupMapper = groupMapper;
       this.secretSeriesMapper = secretSeriesMapper;
+      this.secretContentMapper = secretContentMapper;
+      this.aclCache = aclCache;
+      this.changeNotifier = changeNotifier;
     }
 
     @Override public AclDAO readwrite() {
       return new AclDAO(jooq, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretContentMapper, aclCache, changeNotifier);
     }
 
     @Override public AclDAO readonly() {
       return new AclDAO(readonlyJooq, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretContentMapper, aclCache, changeNotifier);
     }
 
     @Override public AclDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
       return new AclDAO(dslContext, clientDAOFactory, groupDAOFactory, secretContentDAOFactory,
-          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper);
+          secretSeriesDAOFactory, clientMapper, groupMapper, secretSeriesMapper,
+          secretContentMapper, aclCache, changeNotifier);
     }
   }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Tells listeners that secrets, access grants or memberships were committed by this process.
+ *
+ * Notifications carry no detail and may be spurious; listeners are expected to re-read whatever
+ * they depend on. Writes made by other processes are not observed.
+ */
+@Singleton
+public class ChangeNotifier {
+  private final Set<Runnable> listeners = new CopyOnWriteArraySet<>();
+
+  @Inject public ChangeNotifier() {}
+
+  /**
+   * @param listener called on the writing thread after each change, so it must return quickly.
+   */
+  public void addListener(Runnable listener) {
+    listeners.add(checkNotNull(listener));
+  }
+
+  public void removeListener(Runnable listener) {
+    listeners.remove(listener);
+  }
+
+  void changed() {
+    listeners.forEach(Runnable::run);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.daos;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.CacheConfig;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Clients recently resolved from a certificate principal, keyed by the principal's full
+ * distinguished name so that a hit needs neither a DN parse nor a database lookup.
+ *
+ * Entries expire after a configurable TTL and are dropped when {@link ClientDAO} deletes the
+ * client. Disabled clients are cached as well; callers check {@link Client#isEnabled()} on every
+ * use, and a client disabled directly in the database is picked up once its entry expires.
+ */
+public class ClientCache {
+  @Nullable private final Cache<String, Client> cache;
+  private final Meter hits;
+  private final Meter misses;
+
+  // Bumped on every invalidation so that a load racing with a delete is not left in the cache.
+  private final AtomicLong generation = new AtomicLong();
+
+  private ClientCache(@Nullable Cache<String, Client> cache, Meter hits, Meter misses) {
+    this.cache = cache;
+    this.hits = hits;
+    this.misses = misses;
+  }
+
+  /** @return a cache which never retains entries. */
+  public static ClientCache disabled() {
+    return new ClientCache(null, new Meter(), new Meter());
+  }
+
+  /**
+   * @param config cache settings. A disabled config results in {@link #disabled()}.
+   * @param metricRegistry registry to report hits and misses to.
+   * @return a cache honoring the given configuration.
+   */
+  public static ClientCache create(CacheConfig config, MetricRegistry metricRegistry) {
+    checkNotNull(metricRegistry);
+    if (!config.isEnabled()) {
+      return disabled();
+    }
+
+    Cache<String, Client> cache = CacheBuilder.newBuilder()
+        .maximumSize(config.getMaximumSize())
+        .expireAfterWrite(config.getExpiration().toMilliseconds(), TimeUnit.MILLISECONDS)
+        .build();
+    return new ClientCache(cache,
+        metricRegistry.meter(name(ClientCache.class, "hits")),
+        metricRegistry.meter(name(ClientCache.class, "misses")));
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * @param principalName distinguished name of the authenticated principal.
+   * @param loader resolves the client on a miss. Absent results are not cached.
+   * @return cached or freshly loaded client for the principal.
+   */
+  public Optional<Client> get(String principalName, Supplier<Optional<Client>> loader) {
+    if (cache == null) {
+      return loader.get();
+    }
+
+    Client client = cache.getIfPresent(principalName);
+    if (client != null) {
+      hits.mark();
+      return Optional.of(client);
+    }
+
+    misses.mark();
+    long loadGeneration = generation.get();
+    Optional<Client> loaded = loader.get();
+    if (loaded.isPresent()) {
+      cache.put(principalName, loaded.get());
+      if (generation.get() != loadGeneration) {
+        cache.invalidate(principalName);
+      }
+    }
+    return loaded;
+  }
+
+  /** Drops every entry resolving to the named client, whichever principal it was cached under. */
+  void invalidate(String clientName) {
+    generation.incrementAndGet();
+    if (cache != null) {
+      cache.asMap().values().removeIf(client -> client.getName().equals(clientName));
+    }
+  }
+}
@@ -16,17 +16,20 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import javax.inject.Inject;
 import keywhiz.api.model.Client;
 import keywhiz.jooq.tables.records.ClientsRecord;
 import keywhiz.service.config.Readonly;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep8;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -35,10 +38,15 @@ import static keywhiz.jooq.tables.Clients.CLIENTS;
 public class ClientDAO {
   private final DSLContext dslContext;
   private final ClientMapper clientMapper;
+  private final ClientCache clientCache;
+  private final AclCache aclCache;
 
-  private ClientDAO(DSLContext dslContext, ClientMapper clientMapper) {
+  private ClientDAO(DSLContext dslContext, ClientMapper clientMapper, ClientCache clientCache,
+      AclCache aclCache) {
     this.dslContext = dslContext;
     this.clientMapper = clientMapper;
+    this.clientCache = clientCache;
+    this.aclCache = aclCache;
   }
 
   public long createClient(String name, String user, Optional<String> description) {
@@ -59,11 +67,52 @@ public class ClientDAO {
     return r.getId();
   }
 
+  /**
+   * Creates clients which do not exist yet, using a single multi-row insert.
+   *
+   * @param names names of the clients to create. Names already present are skipped.
+   * @param user creator recorded for the new clients.
+   * @param description description recorded for the new clients.
+   */
+  public void createClients(Set<String> names, String user, Optional<String> description) {
+    checkNotNull(names);
+    if (names.isEmpty()) {
+      return;
+    }
+
+    dslContext.transaction(configuration -> {
+      DSLContext context = DSL.using(configuration);
+      Set<String> existing = ImmutableSet.copyOf(context.select(CLIENTS.NAME)
+          .from(CLIENTS)
+          .where(CLIENTS.NAME.in(names))
+          .fetch(CLIENTS.NAME));
+
+      OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+      InsertValuesStep8<ClientsRecord, String, String, OffsetDateTime, String, OffsetDateTime,
+          String, Boolean, Boolean> insert = context.insertInto(CLIENTS, CLIENTS.NAME,
+          CLIENTS.CREATEDBY, CLIENTS.CREATEDAT, CLIENTS.UPDATEDBY, CLIENTS.UPDATEDAT,
+          CLIENTS.DESCRIPTION, CLIENTS.ENABLED, CLIENTS.AUTOMATIONALLOWED);
+      boolean inserting = false;
+      for (String name : names) {
+        if (!existing.contains(name)) {
+          insert = insert.values(name, user, now, user, now, description.orElse(null), true, false);
+          inserting = true;
+        }
+      }
+      if (inserting) {
+        insert.execute();
+      }
+    });
+  }
+
   public void deleteClient(Client client) {
     dslContext
         .delete(CLIENTS)
         .where(CLIENTS.ID.eq(Math.toIntExact(client.getId())))
         .execute();
+    // Memberships of the client are removed by cascade.
+    clientCache.invalidate(client.getName());
+    aclCache.invalidateAll();
   }
 
   public Optional<Client> getClient(String name) {
@@ -84,29 +133,49 @@ public class ClientDAO {
     return ImmutableSet.copyOf(r);
   }
 
+  /**
+   * @param afterId only clients with a greater id are returned.
+   * @param limit maximum number of clients returned.
+   * @return a page of clients, ordered by id.
+   */
+  public ImmutableList<Client> getClients(long afterId, int limit) {
+    List<Client> r = dslContext
+        .selectFrom(CLIENTS)
+        .where(CLIENTS.ID.gt(Math.toIntExact(afterId)))
+        .orderBy(CLIENTS.ID)
+        .limit(limit)
+        .fetch()
+        .map(clientMapper);
+    return ImmutableList.copyOf(r);
+  }
+
   public static class ClientDAOFactory implements DAOFactory<ClientDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
     private final ClientMapper clientMapper;
+    private final ClientCache clientCache;
+    private final AclCache aclCache;
 
     @Inject public ClientDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        ClientMapper clientMapper) {
+        ClientMapper clientMapper, ClientCache clientCache, AclCache aclCache) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.clientMapper = clientMapper;
+      this.clientCache = clientCache;
+      this.aclCache = aclCache;
     }
 
     @Override public ClientDAO readwrite() {
-      return new ClientDAO(jooq, clientMapper);
+      return new ClientDAO(jooq, clientMapper, clientCache, aclCache);
     }
 
     @Override public ClientDAO readonly() {
-      return new ClientDAO(readonlyJooq, clientMapper);
+      return new ClientDAO(readonlyJooq, clientMapper, clientCache, aclCache);
     }
 
     @Override public ClientDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new ClientDAO(dslContext, clientMapper);
+      return new ClientDAO(dslContext, clientMapper, clientCache, aclCache);
     }
   }
 }
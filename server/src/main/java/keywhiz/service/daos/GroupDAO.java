@@ -16,6 +16,7 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -35,10 +36,15 @@ import static keywhiz.jooq.tables.Groups.GROUPS;
 public class GroupDAO {
   private final DSLContext dslContext;
   private final GroupMapper groupMapper;
+  private final AclCache aclCache;
+  private final ChangeNotifier changeNotifier;
 
-  private GroupDAO(DSLContext dslContext, GroupMapper groupMapper) {
+  private GroupDAO(DSLContext dslContext, GroupMapper groupMapper, AclCache aclCache,
+      ChangeNotifier changeNotifier) {
     this.dslContext = dslContext;
     this.groupMapper = groupMapper;
+    this.aclCache = aclCache;
+    this.changeNotifier = changeNotifier;
   }
 
   public long createGroup(String name, String creator, Optional<String> description) {
@@ -62,6 +68,9 @@ public class GroupDAO {
         .delete(GROUPS)
         .where(GROUPS.ID.eq(Math.toIntExact(group.getId())))
         .execute();
+    // Grants and memberships of the group are removed by cascade.
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   public Optional<Group> getGroup(String name) {
@@ -79,29 +88,49 @@ public class GroupDAO {
     return ImmutableSet.copyOf(r);
   }
 
+  /**
+   * @param afterId only groups with a greater id are returned.
+   * @param limit maximum number of groups returned.
+   * @return a page of groups, ordered by id.
+   */
+  public ImmutableList<Group> getGroups(long afterId, int limit) {
+    List<Group> r = dslContext
+        .selectFrom(GROUPS)
+        .where(GROUPS.ID.gt(Math.toIntExact(afterId)))
+        .orderBy(GROUPS.ID)
+        .limit(limit)
+        .fetch()
+        .map(groupMapper);
+    return ImmutableList.copyOf(r);
+  }
+
   public static class GroupDAOFactory implements DAOFactory<GroupDAO> {
     private final DSLContext jooq;
     private final DSLContext readonlyJooq;
     private final GroupMapper groupMapper;
+    private final AclCache aclCache;
+    private final ChangeNotifier changeNotifier;
 
     @Inject public GroupDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        GroupMapper groupMapper) {
+        GroupMapper groupMapper, AclCache aclCache, ChangeNotifier changeNotifier) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.groupMapper = groupMapper;
+      this.aclCache = aclCache;
+      this.changeNotifier = changeNotifier;
     }
 
     @Override public GroupDAO readwrite() {
-      return new GroupDAO(jooq, groupMapper);
+      return new GroupDAO(jooq, groupMapper, aclCache, changeNotifier);
     }
 
     @Override public GroupDAO readonly() {
-      return new GroupDAO(readonlyJooq, groupMapper);
+      return new GroupDAO(readonlyJooq, groupMapper, aclCache, changeNotifier);
     }
 
     @Override public GroupDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new GroupDAO(dslContext, groupMapper);
+      return new GroupDAO(dslContext, groupMapper, aclCache, changeNotifier);
     }
   }
 }
@@ -19,21 +19,29 @@ package keywhiz.service.daos;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Throwables;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import javax.inject.Inject;
 import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
 import keywhiz.jooq.tables.records.SecretsContentRecord;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 
 /**
@@ -53,6 +61,57 @@ public class SecretContentDAO {
 
   public long createSecretContent(long secretId, String encryptedContent, String version,
       String creator, Map<String, String> metadata) {
+    return insertSecretContent(secretId, encryptedContent, version, creator, metadata).getId();
+  }
+
+  /**
+   * Like {@link #createSecretContent}, but returns the stored content as held in memory, with the
+   * generated id, rather than reading it back.
+   */
+  SecretContent createAndGetSecretContent(long secretId, String encryptedContent, String version,
+      String creator, Map<String, String> metadata) {
+    return secretContentMapper.map(
+        insertSecretContent(secretId, encryptedContent, version, creator, metadata));
+  }
+
+  /**
+   * Creates the contents of a batch of secrets with one batch insert, each under the series of
+   * its name, then reads them back in one query for their generated ids.
+   *
+   * @return the stored content of each secret, in the order given.
+   */
+  ImmutableList<SecretContent> createSecretContents(Map<String, SecretSeries> seriesByName,
+      List<NewSecret> secrets) {
+    List<SecretsContentRecord> records = secrets.stream()
+        .map(secret -> newSecretContentRecord(seriesByName.get(secret.name()).id(),
+            secret.encryptedSecret(), secret.version(), secret.creator(), secret.metadata()))
+        .collect(toList());
+    dslContext.batchInsert(records).execute();
+
+    Set<Integer> secretIds = records.stream().map(SecretsContentRecord::getSecretid).collect(toSet());
+    Set<String> versions = records.stream().map(SecretsContentRecord::getVersion).collect(toSet());
+    Table<Integer, String, SecretContent> stored = HashBasedTable.create();
+    dslContext.selectFrom(SECRETS_CONTENT)
+        .where(SECRETS_CONTENT.SECRETID.in(secretIds))
+        .and(SECRETS_CONTENT.VERSION.in(versions))
+        .fetch()
+        .forEach(r -> stored.put(r.getSecretid(), r.getVersion(), secretContentMapper.map(r)));
+
+    return records.stream()
+        .map(r -> stored.get(r.getSecretid(), r.getVersion()))
+        .collect(collectingAndThen(toList(), ImmutableList::copyOf));
+  }
+
+  private SecretsContentRecord insertSecretContent(long secretId, String encryptedContent,
+      String version, String creator, Map<String, String> metadata) {
+    SecretsContentRecord r =
+        newSecretContentRecord(secretId, encryptedContent, version, creator, metadata);
+    r.store();
+    return r;
+  }
+
+  private SecretsContentRecord newSecretContentRecord(long secretId, String encryptedContent,
+      String version, String creator, Map<String, String> metadata) {
     SecretsContentRecord r = dslContext.newRecord(SECRETS_CONTENT);
 
     String jsonMetadata;
@@ -73,9 +132,7 @@ public class SecretContentDAO {
     r.setUpdatedby(creator);
     r.setUpdatedat(now);
     r.setMetadata(jsonMetadata);
-    r.store();
-
-    return r.getId();
+    return r;
   }
 
   public Optional<SecretContent> getSecretContentById(long id) {
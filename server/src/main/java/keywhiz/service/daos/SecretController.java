@@ -16,14 +16,17 @@
 
 package keywhiz.service.daos;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.service.crypto.ContentCryptographer;
 import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -43,28 +46,36 @@ public class SecretController {
 
   /**
    * @param secretId external secret series id to look up secrets by.
-   * @return all Secrets with given id. May be empty or include multiple versions.
+   * @return all Secrets with given id. May be empty or include multiple versions. Contents are
+   * only decrypted when read, as callers rarely need more than one version.
    */
   public List<Secret> getSecretsById(long secretId) {
-    return transformer.transform(secretDAO.getSecretsById(secretId));
+    return transformer.transformLazily(secretDAO.getSecretsById(secretId));
   }
 
   /**
    * @param secretId external secret series id to look up secrets by.
    * @param version specific version of secret. May be empty.
-   * @return Secret matching input parameters or Optional.absent().
+   * @return Secret matching input parameters or Optional.absent(). Its content is only decrypted
+   * when read.
    */
   public Optional<Secret> getSecretByIdAndVersion(long secretId, String version) {
-    return secretDAO.getSecretByIdAndVersion(secretId, version).map(transformer::transform);
+    return secretDAO.getSecretByIdAndVersion(secretId, version).map(transformer::transformLazily);
   }
 
   /**
    * @param name of secret series to look up secrets by.
    * @param version specific version of secret. May be empty.
-   * @return Secret matching input parameters or Optional.absent().
+   * @return Secret matching input parameters or Optional.absent(). Its content is only decrypted
+   * when read, so existence checks and sanitized views do no crypto.
    */
   public Optional<Secret> getSecretByNameAndVersion(String name, String version) {
-    return secretDAO.getSecretByNameAndVersion(name, version).map(transformer::transform);
+    return secretDAO.getSecretByNameAndVersion(name, version).map(transformer::transformLazily);
+  }
+
+  /** @return all existing secrets, decrypted. */
+  public List<Secret> getSecrets() {
+    return transformer.transform(secretDAO.getSecrets());
   }
 
   /** @return all existing sanitized secrets. */
@@ -74,6 +85,17 @@ public class SecretController {
         .collect(toList());
   }
 
+  /**
+   * @param afterId only secrets of series with a greater id are returned.
+   * @param limit maximum number of secret series returned.
+   * @return a page of sanitized secrets, ordered by series id.
+   */
+  public List<SanitizedSecret> getSanitizedSecrets(long afterId, int limit) {
+    return secretDAO.getSecrets(afterId, limit).stream()
+        .map(SanitizedSecret::fromSecretSeriesAndContent)
+        .collect(toList());
+  }
+
   /** @return all versions for this secret name. */
   public List<String> getVersionsForName(String name) {
     checkArgument(!name.isEmpty());
@@ -85,7 +107,25 @@ public class SecretController {
     checkArgument(!secret.isEmpty());
     checkArgument(!creator.isEmpty());
     String encryptedSecret = cryptographer.encryptionKeyDerivedFrom(name).encrypt(secret);
-    return new SecretBuilder(transformer, secretDAO, name, encryptedSecret, creator);
+    return new SecretBuilder(transformer, secretDAO, name, secret, encryptedSecret, creator);
+  }
+
+  /**
+   * Creates the secrets of several builders in one transaction. Any failure, such as a duplicate
+   * name and version, rolls back the whole batch.
+   *
+   * @param builders builders of the secrets to create, as from {@link #builder}.
+   * @return the newly created secrets, in the order given.
+   */
+  public ImmutableList<Secret> createSecrets(List<SecretBuilder> builders) {
+    List<SecretSeriesAndContent> created = secretDAO.createSecrets(
+        builders.stream().map(SecretBuilder::toNewSecret).collect(toList()));
+
+    ImmutableList.Builder<Secret> secrets = ImmutableList.builder();
+    for (int i = 0; i < builders.size(); i++) {
+      secrets.add(transformer.transform(created.get(i), builders.get(i).secret));
+    }
+    return secrets.build();
   }
 
   /** Builder to generate new secret series or versions with. */
@@ -93,6 +133,7 @@ public class SecretController {
     private final SecretTransformer transformer;
     private final SecretDAO secretDAO;
     private final String name;
+    private final String secret;
     private final String encryptedSecret;
     private final String creator;
     private String description = "";
@@ -105,14 +146,16 @@ public class SecretController {
      * @param transformer
      * @param secretDAO
      * @param name of secret series.
+     * @param secret plaintext content of secret version
      * @param encryptedSecret encrypted content of secret version
      * @param creator username responsible for creating this secret version.
      */
-    private SecretBuilder(SecretTransformer transformer, SecretDAO secretDAO, String name, String encryptedSecret,
-        String creator) {
+    private SecretBuilder(SecretTransformer transformer, SecretDAO secretDAO, String name,
+        String secret, String encryptedSecret, String creator) {
       this.transformer = transformer;
       this.secretDAO = secretDAO;
       this.name = name;
+      this.secret = secret;
       this.encryptedSecret = encryptedSecret;
       this.creator = creator;
     }
@@ -173,9 +216,14 @@ public class SecretController {
      * @return an instance of the newly created secret.
      */
     public Secret build() {
-        secretDAO.createSecret(name, encryptedSecret, version, creator, metadata, description, type,
-            generationOptions);
-        return transformer.transform(secretDAO.getSecretByNameAndVersion(name, version).get());
+      SecretSeriesAndContent created = secretDAO.createSecret(name, encryptedSecret, version,
+          creator, metadata, description, type, generationOptions);
+      return transformer.transform(created, secret);
+    }
+
+    NewSecret toNewSecret() {
+      return NewSecret.of(name, encryptedSecret, version, creator, metadata, description, type,
+          generationOptions);
     }
   }
 }
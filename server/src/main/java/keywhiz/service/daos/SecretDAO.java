@@ -16,8 +16,12 @@
 
 package keywhiz.service.daos;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.SetMultimap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import javax.annotation.Nullable;
@@ -29,12 +33,15 @@ import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.daos.SecretContentDAO.SecretContentDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static keywhiz.jooq.tables.Secrets.SECRETS;
+import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 
 /**
  * Primary class to interact with {@link Secret}s.
@@ -46,37 +53,75 @@ public class SecretDAO {
   private final DSLContext dslContext;
   private final SecretContentDAOFactory secretContentDAOFactory;
   private final SecretSeriesDAOFactory secretSeriesDAOFactory;
+  private final SecretSeriesMapper secretSeriesMapper;
+  private final SecretContentMapper secretContentMapper;
+  private final AclCache aclCache;
+  private final ChangeNotifier changeNotifier;
 
   private SecretDAO(DSLContext dslContext, SecretContentDAOFactory secretContentDAOFactory,
-      SecretSeriesDAOFactory secretSeriesDAOFactory) {
+      SecretSeriesDAOFactory secretSeriesDAOFactory, SecretSeriesMapper secretSeriesMapper,
+      SecretContentMapper secretContentMapper, AclCache aclCache, ChangeNotifier changeNotifier) {
     this.dslContext = dslContext;
     this.secretContentDAOFactory = secretContentDAOFactory;
     this.secretSeriesDAOFactory = secretSeriesDAOFactory;
+    this.secretSeriesMapper = secretSeriesMapper;
+    this.secretContentMapper = secretContentMapper;
+    this.aclCache = aclCache;
+    this.changeNotifier = changeNotifier;
   }
 
+  /**
+   * Creates a secret version, and its series if the name is new. An existing series is reused
+   * as is, keeping its description.
+   *
+   * @return the series and content as written, without reading them back.
+   */
   @VisibleForTesting
-  public long createSecret(String name, String encryptedSecret, String version,
+  public SecretSeriesAndContent createSecret(String name, String encryptedSecret, String version,
       String creator, Map<String, String> metadata, String description, @Nullable String type,
       @Nullable Map<String, String> generationOptions) {
-    // TODO(jlfwong): Should the description be updated...?
+    SecretSeriesAndContent secret = dslContext.transactionResult(configuration -> {
+      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
+      SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
 
-    return dslContext.transactionResult(configuration -> {
+      SecretSeries series = secretSeriesDAO.createSecretSeriesIfAbsent(name, creator, description,
+          type, generationOptions);
+      SecretContent content = secretContentDAO.createAndGetSecretContent(series.id(),
+          encryptedSecret, version, creator, metadata);
+      return SecretSeriesAndContent.of(series, content);
+    });
+    changeNotifier.changed();
+    return secret;
+  }
+
+  /**
+   * Creates a batch of secret versions in one transaction. New series are written with one batch
+   * insert and all contents with another, so a failure, such as a duplicate name and version,
+   * rolls back the whole batch.
+   *
+   * @return the series and content of each secret, in the order given.
+   */
+  public ImmutableList<SecretSeriesAndContent> createSecrets(List<NewSecret> secrets) {
+    if (secrets.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    ImmutableList<SecretSeriesAndContent> created = dslContext.transactionResult(configuration -> {
       SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
 
-      Optional<SecretSeries> secretSeries = secretSeriesDAO.getSecretSeriesByName(name);
-      long secretId;
-      if (secretSeries.isPresent()) {
-        secretId = secretSeries.get().id();
-      } else {
-        secretId = secretSeriesDAO.createSecretSeries(name, creator, description, type,
-            generationOptions);
-      }
+      Map<String, SecretSeries> seriesByName = secretSeriesDAO.createSecretSeriesIfAbsent(secrets);
+      List<SecretContent> contents = secretContentDAO.createSecretContents(seriesByName, secrets);
 
-      secretContentDAO.createSecretContent(secretId, encryptedSecret, version, creator,
-          metadata);
-      return secretId;
+      ImmutableList.Builder<SecretSeriesAndContent> builder = ImmutableList.builder();
+      for (int i = 0; i < secrets.size(); i++) {
+        builder.add(SecretSeriesAndContent.of(seriesByName.get(secrets.get(i).name()),
+            contents.get(i)));
+      }
+      return builder.build();
     });
+    changeNotifier.changed();
+    return created;
   }
 
   /**
@@ -187,21 +232,66 @@ public class SecretDAO {
     return Optional.of(SecretSeriesAndContent.of(secretSeries.get(), secretContent.get()));
   }
 
-  /** @return all existing secrets. */
-  public ImmutableList<SecretSeriesAndContent> getSecrets() {
-    return dslContext.transactionResult(configuration -> {
-      SecretContentDAO secretContentDAO = secretContentDAOFactory.using(configuration);
-      SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
+  /**
+   * Looks up several secrets with a single join, without decrypting them.
+   *
+   * @param namesAndVersions secret series names, each with the versions wanted. Versions may be
+   * empty.
+   * @return secrets found, in no particular order. Pairs without a match are omitted.
+   */
+  public ImmutableList<SecretSeriesAndContent> getSecretsByNameAndVersion(
+      SetMultimap<String, String> namesAndVersions) {
+    checkNotNull(namesAndVersions);
+    if (namesAndVersions.isEmpty()) {
+      return ImmutableList.of();
+    }
 
-      ImmutableList.Builder<SecretSeriesAndContent> secretsBuilder = ImmutableList.builder();
+    Condition condition = DSL.falseCondition();
+    for (Map.Entry<String, String> entry : namesAndVersions.entries()) {
+      condition = condition.or(SECRETS.NAME.eq(entry.getKey())
+          .and(SECRETS_CONTENT.VERSION.eq(entry.getValue())));
+    }
 
-      secretSeriesDAO.getSecretSeries()
-          .forEach((series) -> secretContentDAO.getSecretContentsBySecretId(series.id())
-              .forEach(
-                  (content) -> secretsBuilder.add(SecretSeriesAndContent.of(series, content))));
+    return fetchSecrets(condition);
+  }
 
-      return secretsBuilder.build();
-    });
+  /** @return all existing secrets, ordered by series and then by version creation. */
+  public ImmutableList<SecretSeriesAndContent> getSecrets() {
+    return fetchSecrets(DSL.trueCondition());
+  }
+
+  /**
+   * @param afterId only secret series with a greater id are returned.
+   * @param limit maximum number of secret series returned. All versions of each are included.
+   * @return a page of secrets, ordered by series and then by version creation.
+   */
+  public ImmutableList<SecretSeriesAndContent> getSecrets(long afterId, int limit) {
+    // Selected separately rather than as an IN subquery, which MySQL cannot combine with LIMIT.
+    List<Integer> seriesIds = dslContext
+        .select(SECRETS.ID)
+        .from(SECRETS)
+        .where(SECRETS.ID.gt(Math.toIntExact(afterId)))
+        .orderBy(SECRETS.ID)
+        .limit(limit)
+        .fetch(SECRETS.ID);
+    if (seriesIds.isEmpty()) {
+      return ImmutableList.of();
+    }
+    return fetchSecrets(SECRETS.ID.in(seriesIds));
+  }
+
+  private ImmutableList<SecretSeriesAndContent> fetchSecrets(Condition condition) {
+    ImmutableList.Builder<SecretSeriesAndContent> secrets = ImmutableList.builder();
+    dslContext.select()
+        .from(SECRETS)
+        .join(SECRETS_CONTENT).on(SECRETS.ID.eq(SECRETS_CONTENT.SECRETID))
+        .where(condition)
+        .orderBy(SECRETS.ID, SECRETS_CONTENT.ID)
+        .fetch()
+        .forEach(record -> secrets.add(SecretSeriesAndContent.of(
+            secretSeriesMapper.map(record.into(SECRETS)),
+            secretContentMapper.map(record.into(SECRETS_CONTENT)))));
+    return secrets.build();
   }
 
   /**
@@ -216,6 +306,9 @@ public class SecretDAO {
       SecretSeriesDAO secretSeriesDAO = secretSeriesDAOFactory.using(configuration);
       secretSeriesDAO.deleteSecretSeriesByName(name);
     });
+    // Invalidate again once committed, so no load racing the transaction keeps the deleted series.
+    aclCache.invalidateAll();
+    changeNotifier.changed();
   }
 
   /**
@@ -244,6 +337,28 @@ public class SecretDAO {
         secretSeriesDAO.deleteSecretSeriesById(seriesId);
       }
     });
+    aclCache.invalidateAll();
+    changeNotifier.changed();
+  }
+
+  /** A secret version yet to be stored, with its content already encrypted. */
+  @AutoValue public static abstract class NewSecret {
+    public static NewSecret of(String name, String encryptedSecret, String version, String creator,
+        Map<String, String> metadata, String description, @Nullable String type,
+        @Nullable Map<String, String> generationOptions) {
+      return new AutoValue_SecretDAO_NewSecret(name, encryptedSecret, version, creator,
+          ImmutableMap.copyOf(metadata), description, type,
+          generationOptions == null ? null : ImmutableMap.copyOf(generationOptions));
+    }
+
+    public abstract String name();
+    public abstract String encryptedSecret();
+    public abstract String version();
+    public abstract String creator();
+    public abstract ImmutableMap<String, String> metadata();
+    public abstract String description();
+    @Nullable public abstract String type();
+    @Nullable public abstract ImmutableMap<String, String> generationOptions();
   }
 
   public static class SecretDAOFactory implements DAOFactory<SecretDAO> {
@@ -251,27 +366,40 @@ public class SecretDAO {
     private final DSLContext readonlyJooq;
     private final SecretContentDAOFactory secretContentDAOFactory;
     private final SecretSeriesDAOFactory secretSeriesDAOFactory;
+    private final SecretSeriesMapper secretSeriesMapper;
+    private final SecretContentMapper secretContentMapper;
+    private final AclCache aclCache;
+    private final ChangeNotifier changeNotifier;
 
     @Inject public SecretDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
         SecretContentDAOFactory secretContentDAOFactory,
-        SecretSeriesDAOFactory secretSeriesDAOFactory) {
+        SecretSeriesDAOFactory secretSeriesDAOFactory, SecretSeriesMapper secretSeriesMapper,
+        SecretContentMapper secretContentMapper, AclCache aclCache,
+        ChangeNotifier changeNotifier) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.secretContentDAOFactory = secretContentDAOFactory;
       this.secretSeriesDAOFactory = secretSeriesDAOFactory;
+      this.secretSeriesMapper = secretSeriesMapper;
+      this.secretContentMapper = secretContentMapper;
+      this.aclCache = aclCache;
+      this.changeNotifier = changeNotifier;
     }
 
     @Override public SecretDAO readwrite() {
-      return new SecretDAO(jooq, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(jooq, secretContentDAOFactory, secretSeriesDAOFactory,
+          secretSeriesMapper, secretContentMapper, aclCache, changeNotifier);
     }
 
     @Override public SecretDAO readonly() {
-      return new SecretDAO(readonlyJooq, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(readonlyJooq, secretContentDAOFactory, secretSeriesDAOFactory,
+          secretSeriesMapper, secretContentMapper, aclCache, changeNotifier);
     }
 
     @Override public SecretDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new SecretDAO(dslContext, secretContentDAOFactory, secretSeriesDAOFactory);
+      return new SecretDAO(dslContext, secretContentDAOFactory, secretSeriesDAOFactory,
+          secretSeriesMapper, secretContentMapper, aclCache, changeNotifier);
     }
   }
 }
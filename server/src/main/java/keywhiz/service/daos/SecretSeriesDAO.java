@@ -20,21 +20,29 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.jooq.tables.records.SecretsRecord;
 import keywhiz.service.config.Readonly;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static keywhiz.jooq.tables.Secrets.SECRETS;
 
 /**
@@ -44,16 +52,96 @@ public class SecretSeriesDAO {
   private final DSLContext dslContext;
   private final ObjectMapper mapper;
   private final SecretSeriesMapper secretSeriesMapper;
+  private final AclCache aclCache;
 
-  private SecretSeriesDAO(DSLContext dslContext, ObjectMapper mapper, SecretSeriesMapper secretSeriesMapper) {
+  private SecretSeriesDAO(DSLContext dslContext, ObjectMapper mapper,
+      SecretSeriesMapper secretSeriesMapper, AclCache aclCache) {
     this.dslContext = dslContext;
     this.mapper = mapper;
     this.secretSeriesMapper = secretSeriesMapper;
+    this.aclCache = aclCache;
   }
 
   long createSecretSeries(String name, String creator, String description, @Nullable String type,
       @Nullable Map<String, String> generationOptions) {
-    SecretsRecord r =  dslContext.newRecord(SECRETS);
+    SecretsRecord r = newSecretSeriesRecord(name, creator, description, type, generationOptions);
+    r.store();
+
+    return r.getId();
+  }
+
+  /**
+   * Creates a secret series unless one with the same name exists, without a separate existence
+   * check. MySQL ignores the duplicate name; other dialects guard the insert with NOT EXISTS.
+   *
+   * @return the series with the given name, whether it was created now or before.
+   */
+  SecretSeries createSecretSeriesIfAbsent(String name, String creator, String description,
+      @Nullable String type, @Nullable Map<String, String> generationOptions) {
+    SecretsRecord r = newSecretSeriesRecord(name, creator, description, type, generationOptions);
+
+    switch (dslContext.configuration().dialect().family()) {
+      case MYSQL:
+      case MARIADB:
+        dslContext.insertInto(SECRETS).set(r).onDuplicateKeyIgnore().execute();
+        break;
+      default:
+        dslContext.insertInto(SECRETS, SECRETS.NAME, SECRETS.DESCRIPTION, SECRETS.CREATEDBY,
+            SECRETS.CREATEDAT, SECRETS.UPDATEDBY, SECRETS.UPDATEDAT, SECRETS.TYPE, SECRETS.OPTIONS)
+            .select(DSL.select(DSL.val(r.getName(), SECRETS.NAME),
+                DSL.val(r.getDescription(), SECRETS.DESCRIPTION),
+                DSL.val(r.getCreatedby(), SECRETS.CREATEDBY),
+                DSL.val(r.getCreatedat(), SECRETS.CREATEDAT),
+                DSL.val(r.getUpdatedby(), SECRETS.UPDATEDBY),
+                DSL.val(r.getUpdatedat(), SECRETS.UPDATEDAT),
+                DSL.val(r.getType(), SECRETS.TYPE),
+                DSL.val(r.getOptions(), SECRETS.OPTIONS))
+                .whereNotExists(dslContext.selectOne()
+                    .from(SECRETS)
+                    .where(SECRETS.NAME.eq(name))))
+            .execute();
+    }
+
+    return getSecretSeriesByName(name).orElseThrow(() ->
+        new IllegalStateException(format("Secret series %s missing after insert", name)));
+  }
+
+  /**
+   * Creates the series of a batch of secrets with one batch insert, skipping names which already
+   * exist. When a name repeats within the batch, its first secret provides the description, type
+   * and generation options.
+   *
+   * @return every series named in the batch, keyed by name.
+   */
+  ImmutableMap<String, SecretSeries> createSecretSeriesIfAbsent(List<NewSecret> secrets) {
+    Set<String> names = secrets.stream().map(NewSecret::name).collect(toSet());
+    Set<String> existing = dslContext.select(SECRETS.NAME)
+        .from(SECRETS)
+        .where(SECRETS.NAME.in(names))
+        .fetchSet(SECRETS.NAME);
+
+    Map<String, SecretsRecord> missing = new LinkedHashMap<>();
+    for (NewSecret secret : secrets) {
+      if (!existing.contains(secret.name()) && !missing.containsKey(secret.name())) {
+        missing.put(secret.name(), newSecretSeriesRecord(secret.name(), secret.creator(),
+            secret.description(), secret.type(), secret.generationOptions()));
+      }
+    }
+    if (!missing.isEmpty()) {
+      dslContext.batchInsert(missing.values()).execute();
+    }
+
+    return dslContext.selectFrom(SECRETS)
+        .where(SECRETS.NAME.in(names))
+        .fetch()
+        .stream()
+        .map(secretSeriesMapper::map)
+        .collect(collectingAndThen(toMap(SecretSeries::name, s -> s), ImmutableMap::copyOf));
+  }
+
+  private SecretsRecord newSecretSeriesRecord(String name, String creator, String description,
+      @Nullable String type, @Nullable Map<String, String> generationOptions) {
+    SecretsRecord r = dslContext.newRecord(SECRETS);
 
     OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
 
@@ -74,9 +162,7 @@ public class SecretSeriesDAO {
     } else {
       r.setOptions("{}");
     }
-    r.store();
-
-    return r.getId();
+    return r;
   }
 
   public Optional<SecretSeries> getSecretSeriesById(long id) {
@@ -103,12 +189,15 @@ public class SecretSeriesDAO {
         .delete(SECRETS)
         .where(SECRETS.NAME.eq(name))
         .execute();
+    // Grants of the series are removed by cascade.
+    aclCache.invalidateAll();
   }
 
   public void deleteSecretSeriesById(long id) {
     dslContext.delete(SECRETS)
         .where(SECRETS.ID.eq(Math.toIntExact(id)))
         .execute();
+    aclCache.invalidateAll();
   }
 
   public static class SecretSeriesDAOFactory implements DAOFactory<SecretSeriesDAO> {
@@ -116,26 +205,28 @@ public class SecretSeriesDAO {
     private final DSLContext readonlyJooq;
     private final ObjectMapper objectMapper;
     private final SecretSeriesMapper secretSeriesMapper;
+    private final AclCache aclCache;
 
     @Inject public SecretSeriesDAOFactory(DSLContext jooq, @Readonly DSLContext readonlyJooq,
-        ObjectMapper objectMapper, SecretSeriesMapper secretSeriesMapper) {
+        ObjectMapper objectMapper, SecretSeriesMapper secretSeriesMapper, AclCache aclCache) {
       this.jooq = jooq;
       this.readonlyJooq = readonlyJooq;
       this.objectMapper = objectMapper;
       this.secretSeriesMapper = secretSeriesMapper;
+      this.aclCache = aclCache;
     }
 
     @Override public SecretSeriesDAO readwrite() {
-      return new SecretSeriesDAO(jooq, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(jooq, objectMapper, secretSeriesMapper, aclCache);
     }
 
     @Override public SecretSeriesDAO readonly() {
-      return new SecretSeriesDAO(readonlyJooq, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(readonlyJooq, objectMapper, secretSeriesMapper, aclCache);
     }
 
     @Override public SecretSeriesDAO using(Configuration configuration) {
       DSLContext dslContext = DSL.using(checkNotNull(configuration));
-      return new SecretSeriesDAO(dslContext, objectMapper, secretSeriesMapper);
+      return new SecretSeriesDAO(dslContext, objectMapper, secretSeriesMapper, aclCache);
     }
   }
 }
@@ -17,34 +17,56 @@ package keywhiz.service.filters;
 
 import com.google.common.net.HttpHeaders;
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.Optional;
 import javax.inject.Inject;
+import javax.inject.Qualifier;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.core.Cookie;
-import keywhiz.auth.User;
 import keywhiz.auth.cookie.CookieAuthenticator;
 import keywhiz.auth.cookie.CookieConfig;
 import keywhiz.auth.cookie.SessionCookie;
+import keywhiz.auth.cookie.UserCookieData;
 import keywhiz.service.resources.SessionLoginResource;
 
-/** Checks for valid session cookies on requests and sets a newer cookie. */
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static keywhiz.service.resources.SessionLoginResource.SESSION_LIFETIME;
+
+/**
+ * Checks for valid session cookies on requests and sets a newer cookie once the current one has
+ * used up a configured share of its lifetime.
+ */
 public class CookieRenewingFilter implements ContainerResponseFilter {
+  public static final double DEFAULT_RENEWAL_FRACTION = 0.5;
+
   private final CookieConfig sessionCookieConfig;
   private final CookieAuthenticator authenticator;
   private final SessionLoginResource sessionLoginResource;
+  private final Duration renewWithin;
 
+  /**
+   * @param renewalFraction share of a session's lifetime, from 0 to 1, after which it is renewed.
+   */
   @Inject public CookieRenewingFilter(@SessionCookie CookieConfig sessionCookieConfig,
-      CookieAuthenticator authenticator, SessionLoginResource sessionLoginResource) {
+      CookieAuthenticator authenticator, SessionLoginResource sessionLoginResource,
+      @RenewalFraction double renewalFraction) {
+    checkArgument(renewalFraction >= 0 && renewalFraction <= 1,
+        "renewalFraction must be between 0 and 1");
     this.sessionCookieConfig = sessionCookieConfig;
     this.authenticator = authenticator;
     this.sessionLoginResource = sessionLoginResource;
+    this.renewWithin =
+        Duration.ofMillis(Math.round(SESSION_LIFETIME.toMillis() * (1 - renewalFraction)));
   }
 
   /**
-   * If the user has a valid session token, set a new session token. The new one should have a later
-   * expiration time.
+   * If the user has a valid session token close enough to expiring, set a new session token. The
+   * new one should have a later expiration time.
    */
   @Override public void filter(ContainerRequestContext request, ContainerResponseContext response)
       throws IOException {
@@ -60,10 +82,17 @@ public class CookieRenewingFilter implements ContainerResponseFilter {
     }
 
     Cookie requestCookie = request.getCookies().get(sessionCookieName);
-    Optional<User> optionalUser = authenticator.authenticate(requestCookie);
-    if (optionalUser.isPresent()) {
-      sessionLoginResource.cookiesForUser(optionalUser.get())
+    Optional<UserCookieData> cookieData = authenticator.getUserCookieData(requestCookie);
+    if (cookieData.isPresent() && isDueForRenewal(cookieData.get())) {
+      sessionLoginResource.cookiesForUser(cookieData.get().getUser())
           .forEach(c -> response.getHeaders().add(HttpHeaders.SET_COOKIE, c));
     }
   }
+
+  private boolean isDueForRenewal(UserCookieData cookieData) {
+    return !ZonedDateTime.now().plus(renewWithin).isBefore(cookieData.getExpiration());
+  }
+
+  /** Denotes the configured share of a session's lifetime after which it is renewed. */
+  @Qualifier @Retention(RUNTIME) public @interface RenewalFraction {}
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.filters;
+
+import com.google.common.net.HttpHeaders;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Removes the suffix Jetty's gzip handler appends to ETags of compressed responses from
+ * If-None-Match request headers, so conditional requests from clients accepting gzip match the
+ * ETags resources compute.
+ */
+@PreMatching
+@Priority(Priorities.HEADER_DECORATOR)
+public class GzipETagFilter implements ContainerRequestFilter {
+  private static final String GZIP_SUFFIX = "--gzip\"";
+
+  @Override public void filter(ContainerRequestContext request) throws IOException {
+    List<String> ifNoneMatch = request.getHeaders().get(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      request.getHeaders().put(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.stream()
+          .map(value -> value.replace(GZIP_SUFFIX, "\""))
+          .collect(toList()));
+    }
+  }
+}
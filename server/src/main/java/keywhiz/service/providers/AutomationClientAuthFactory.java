@@ -17,14 +17,14 @@
 package keywhiz.service.providers;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Throwables;
-import io.dropwizard.auth.AuthenticationException;
-import io.dropwizard.java8.auth.Authenticator;
+import java.security.Principal;
 import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.NotAuthorizedException;
 import keywhiz.api.model.AutomationClient;
+import keywhiz.api.model.Client;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import org.glassfish.jersey.server.ContainerRequest;
@@ -33,48 +33,47 @@ import static java.lang.String.format;
 
 /**
  * Authenticates {@link AutomationClient}s from requests based on the principal present in a
- * {@link javax.ws.rs.core.SecurityContext} and by querying the database.
+ * {@link javax.ws.rs.core.SecurityContext} and by querying the database, or the
+ * {@link ClientCache} when enabled.
  *
  * Modeled similar to io.dropwizard.auth.AuthFactory, however that is not yet usable.
  * See https://github.com/dropwizard/dropwizard/issues/864.
  */
 public class AutomationClientAuthFactory {
-  private final Authenticator<String, AutomationClient> authenticator;
+  private final ClientDAO clientDAO;
+  private final ClientCache clientCache;
 
-  @Inject public AutomationClientAuthFactory(ClientDAOFactory clientDAOFactory) {
-    this.authenticator = new MyAuthenticator(clientDAOFactory.readonly());
+  @Inject public AutomationClientAuthFactory(ClientDAOFactory clientDAOFactory,
+      ClientCache clientCache) {
+    this.clientDAO = clientDAOFactory.readonly();
+    this.clientCache = clientCache;
   }
 
-  @VisibleForTesting AutomationClientAuthFactory(ClientDAO clientDAO) {
-    this.authenticator = new MyAuthenticator(clientDAO);
+  @VisibleForTesting AutomationClientAuthFactory(ClientDAO clientDAO, ClientCache clientCache) {
+    this.clientDAO = clientDAO;
+    this.clientCache = clientCache;
   }
 
   public AutomationClient provide(ContainerRequest request) {
-    Optional<String> possibleClientName = ClientAuthFactory.getClientName(request);
-    if (!possibleClientName.isPresent()) {
+    Principal principal = request.getSecurityContext().getUserPrincipal();
+    if (principal == null) {
       throw new NotAuthorizedException("Not authorized as a AutomationClient");
     }
-    String clientName = possibleClientName.get();
 
-    try {
-      return authenticator.authenticate(clientName)
-          .orElseThrow(() -> new ForbiddenException(
-              format("ClientCert name %s not authorized as a AutomationClient", clientName)));
-    } catch (AuthenticationException e) {
-      throw Throwables.propagate(e);
-    }
-  }
-
-  private static class MyAuthenticator implements Authenticator<String, AutomationClient> {
-    private final ClientDAO clientDAO;
-
-    private MyAuthenticator(ClientDAO clientDAO) {
-      this.clientDAO = clientDAO;
+    Optional<Client> client = clientCache.get(principal.getName(),
+        () -> ClientAuthFactory.getClientName(principal).flatMap(clientDAO::getClient));
+    if (!client.isPresent()) {
+      String clientName = ClientAuthFactory.getClientName(principal)
+          .orElseThrow(() -> new NotAuthorizedException("Not authorized as a AutomationClient"));
+      throw new ForbiddenException(
+          format("ClientCert name %s not authorized as a AutomationClient", clientName));
     }
 
-    @Override public Optional<AutomationClient> authenticate(String name)
-        throws AuthenticationException {
-      return clientDAO.getClient(name).map(AutomationClient::of);
+    AutomationClient automationClient = AutomationClient.of(client.get());
+    if (automationClient == null) {
+      throw new ForbiddenException(format("ClientCert name %s not authorized as a AutomationClient",
+          client.get().getName()));
     }
+    return automationClient;
   }
 }
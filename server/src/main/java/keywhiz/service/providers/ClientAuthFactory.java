@@ -17,14 +17,12 @@
 package keywhiz.service.providers;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Throwables;
-import io.dropwizard.auth.AuthenticationException;
-import io.dropwizard.java8.auth.Authenticator;
 import java.security.Principal;
 import java.util.Optional;
 import javax.inject.Inject;
 import javax.ws.rs.NotAuthorizedException;
 import keywhiz.api.model.Client;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import org.bouncycastle.asn1.x500.RDN;
@@ -39,7 +37,8 @@ import static java.lang.String.format;
 
 /**
  * Authenticates {@link Client}s from requests based on the principal present in a
- * {@link javax.ws.rs.core.SecurityContext} and by querying the database.
+ * {@link javax.ws.rs.core.SecurityContext} and by querying the database, or the
+ * {@link ClientCache} when enabled.
  *
  * Modeled similar to io.dropwizard.auth.AuthFactory, however that is not yet usable.
  * See https://github.com/dropwizard/dropwizard/issues/864.
@@ -47,38 +46,45 @@ import static java.lang.String.format;
 public class ClientAuthFactory {
   private static final Logger logger = LoggerFactory.getLogger(ClientAuthFactory.class);
 
-  private final Authenticator<String, Client> authenticator;
+  private final ClientDAO clientDAO;
+  private final ClientCache clientCache;
+  private final ClientEnrollmentWriter enrollmentWriter;
 
-  @Inject public ClientAuthFactory(ClientDAOFactory clientDAOFactory) {
-    this.authenticator = new MyAuthenticator(clientDAOFactory.readwrite());
+  @Inject public ClientAuthFactory(ClientDAOFactory clientDAOFactory, ClientCache clientCache,
+      ClientEnrollmentWriter enrollmentWriter) {
+    this.clientDAO = clientDAOFactory.readwrite();
+    this.clientCache = clientCache;
+    this.enrollmentWriter = enrollmentWriter;
   }
 
-  @VisibleForTesting ClientAuthFactory(ClientDAO clientDAO) {
-    this.authenticator = new MyAuthenticator(clientDAO);
+  @VisibleForTesting ClientAuthFactory(ClientDAO clientDAO, ClientCache clientCache,
+      ClientEnrollmentWriter enrollmentWriter) {
+    this.clientDAO = clientDAO;
+    this.clientCache = clientCache;
+    this.enrollmentWriter = enrollmentWriter;
   }
 
   public Client provide(ContainerRequest request) {
-    Optional<String> possibleClientName = getClientName(request);
-    if (!possibleClientName.isPresent()) {
+    Principal principal = request.getSecurityContext().getUserPrincipal();
+    if (principal == null) {
       throw new NotAuthorizedException("ClientCert not authorized as a Client");
     }
-    String clientName = possibleClientName.get();
 
-    try {
-      return authenticator.authenticate(clientName)
-          .orElseThrow(() -> new NotAuthorizedException(
-              format("ClientCert name %s not authorized as a Client", clientName)));
-    } catch (AuthenticationException e) {
-      throw Throwables.propagate(e);
-    }
-  }
+    // Provisional clients of pending enrollments are kept out of the cache.
+    Client client = clientCache.get(principal.getName(),
+        () -> getClientName(principal).flatMap(clientDAO::getClient))
+        .orElseGet(() -> getClientName(principal).map(enrollmentWriter::enroll)
+            .orElseThrow(() -> new NotAuthorizedException("ClientCert not authorized as a Client")));
 
-  static Optional<String> getClientName(ContainerRequest request) {
-    Principal principal = request.getSecurityContext().getUserPrincipal();
-    if (principal == null) {
-      return Optional.empty();
+    if (!client.isEnabled()) {
+      logger.warn("Client {} authenticated but disabled via DB", client);
+      throw new NotAuthorizedException(
+          format("ClientCert name %s not authorized as a Client", client.getName()));
     }
+    return client;
+  }
 
+  static Optional<String> getClientName(Principal principal) {
     X500Name name = new X500Name(principal.getName());
     RDN[] rdns = name.getRDNs(BCStyle.CN);
     if (rdns.length == 0) {
@@ -87,36 +93,4 @@ public class ClientAuthFactory {
     }
     return Optional.of(IETFUtils.valueToString(rdns[0].getFirst().getValue()));
   }
-
-  private static class MyAuthenticator implements Authenticator<String, Client> {
-    private final ClientDAO clientDAO;
-
-    private MyAuthenticator(ClientDAO clientDAO) {
-      this.clientDAO = clientDAO;
-    }
-
-    @Override public Optional<Client> authenticate(String name)
-        throws AuthenticationException {
-      Optional<Client> optionalClient = clientDAO.getClient(name);
-      if (optionalClient.isPresent()) {
-        Client client = optionalClient.get();
-        if (client.isEnabled()) {
-          return optionalClient;
-        } else {
-          logger.warn("Client {} authenticated but disabled via DB", client);
-          return Optional.empty();
-        }
-      }
-
-      /*
-       * If a client is seen for the first time, authenticated by certificate, and has no DB entry,
-       * then a DB entry is created here. The client can be disabled in the future by flipping the
-       * 'enabled' field.
-       */
-      // TODO(justin): Consider making this behavior configurable.
-      long clientId = clientDAO.createClient(name, "automatic",
-          Optional.of("Client created automatically from valid certificate authentication"));
-      return Optional.of(clientDAO.getClientById(clientId).get());
-    }
-  }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.providers;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.ServiceUnavailableException;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.EnrollmentConfig;
+import keywhiz.service.daos.ClientDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Records clients seen for the first time in the database without holding up their requests.
+ *
+ * Names are de-duplicated while they wait and written by a background task in multi-row inserts,
+ * so a burst of new hosts costs a handful of writes rather than one per request. Until its row
+ * exists, a client is represented by a provisional {@link Client} with id 0, which has no group
+ * memberships and therefore no access to secrets. Since it is not yet in the database either,
+ * secret requests in that window are answered as if the secret did not exist. Names still pending
+ * when the server stops are enrolled again on the client's next request.
+ */
+public class ClientEnrollmentWriter {
+  private static final Logger logger = LoggerFactory.getLogger(ClientEnrollmentWriter.class);
+
+  static final String CREATOR = "automatic";
+  static final String DESCRIPTION =
+      "Client created automatically from valid certificate authentication";
+
+  private final ClientDAO clientDAO;
+  private final ScheduledExecutorService executor;
+  private final long flushIntervalMillis;
+  private final int maxBatchSize;
+  private final int maxPending;
+  private final ConcurrentMap<String, Client> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  /**
+   * @param clientDAO read-write DAO to create clients with
+   * @param executor runs the background writes
+   * @param config batching parameters
+   */
+  public ClientEnrollmentWriter(ClientDAO clientDAO, ScheduledExecutorService executor,
+      EnrollmentConfig config) {
+    this.clientDAO = checkNotNull(clientDAO);
+    this.executor = checkNotNull(executor);
+    this.flushIntervalMillis = config.getFlushInterval().toMilliseconds();
+    this.maxBatchSize = config.getMaxBatchSize();
+    this.maxPending = config.getMaxPending();
+  }
+
+  /**
+   * Queues a client for creation.
+   *
+   * @param name name of a client without a database entry
+   * @return provisional client to serve requests with until the write lands
+   * @throws ServiceUnavailableException if too many clients are already waiting to be written
+   */
+  public Client enroll(String name) {
+    // Checked loosely, so concurrent enrollments may overshoot the limit by a few names.
+    if (pending.size() >= maxPending && !pending.containsKey(name)) {
+      logger.warn("Refusing to enroll client {}: {} clients already pending", name, maxPending);
+      throw new ServiceUnavailableException();
+    }
+    Client client = pending.computeIfAbsent(name, ClientEnrollmentWriter::provisional);
+    scheduleFlush();
+    return client;
+  }
+
+  /** @return number of clients waiting to be written. */
+  public int pending() {
+    return pending.size();
+  }
+
+  @VisibleForTesting void flush() {
+    flushScheduled.set(false);
+    ImmutableSet<String> names =
+        ImmutableSet.copyOf(Iterables.limit(pending.keySet(), maxBatchSize));
+    if (names.isEmpty()) {
+      return;
+    }
+
+    try {
+      clientDAO.createClients(names, CREATOR, Optional.of(DESCRIPTION));
+    } catch (RuntimeException e) {
+      // Likely a single bad or concurrently created name; retry one by one so it cannot block the
+      // rest of the batch. Names which still fail are dropped and enrolled again on next sight.
+      logger.warn("Enrolling {} clients failed, retrying individually", names.size(), e);
+      for (String name : names) {
+        try {
+          clientDAO.createClients(ImmutableSet.of(name), CREATOR, Optional.of(DESCRIPTION));
+        } catch (RuntimeException individual) {
+          logger.error("Failed enrolling client {}", name, individual);
+        }
+      }
+    }
+    names.forEach(pending::remove);
+
+    if (!pending.isEmpty()) {
+      scheduleFlush();
+    }
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static Client provisional(String name) {
+    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+    return new Client(0, name, DESCRIPTION, now, CREATOR, now, CREATOR, true, false);
+  }
+}
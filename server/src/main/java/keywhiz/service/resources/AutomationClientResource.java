@@ -18,8 +18,11 @@ package keywhiz.service.resources;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import javax.inject.Inject;
@@ -105,15 +108,23 @@ public class AutomationClientResource {
    *
    * @optionalParams name
    * @param name the name of the Client to retrieve, if provided
+   * @optionalParams after
+   * @param after only list Clients with a greater ID, if provided
+   * @optionalParams limit
+   * @param limit maximum number of Clients to list, if provided
    *
-   * @description Returns a single Client or a set of all Clients
+   * @description Returns a single Client or a set of all Clients.
+   * Listing is paginated by ID when after or limit is given, with a Link header to the next page.
    * @responseMessage 200 Found and retrieved Client(s)
+   * @responseMessage 400 Invalid pagination parameters
    * @responseMessage 404 Client with given name not found (if name provided)
    */
   @GET
   public Response findClient(
       @Auth AutomationClient automationClient,
-      @QueryParam("name") Optional<String> name) {
+      @QueryParam("name") Optional<String> name,
+      @QueryParam("after") LongParam after,
+      @QueryParam("limit") IntParam limit) {
     logger.info("Automation ({}) - Looking up a name {}", automationClient.getName(), name);
 
     if (name.isPresent()) {
@@ -124,11 +135,21 @@ public class AutomationClientResource {
           .build();
     }
 
-    List<ClientDetailResponse> clients = clientDAO.getClients().stream()
-        .map(c -> ClientDetailResponse.fromClient(c, ImmutableList.copyOf(aclDAO.getGroupsFor(c)),
+    Optional<Pagination> pagination = Pagination.of(after, limit);
+    Collection<Client> clients = pagination.isPresent()
+        ? clientDAO.getClients(pagination.get().after(), pagination.get().limit())
+        : clientDAO.getClients();
+    ImmutableSetMultimap<Long, Group> groupsByClient = aclDAO.getGroupsForClients(
+        clients.stream().map(Client::getId).collect(toList()));
+    List<ClientDetailResponse> responses = clients.stream()
+        .map(c -> ClientDetailResponse.fromClient(c, groupsByClient.get(c.getId()).asList(),
             ImmutableList.of()))
         .collect(toList());
-    return Response.ok().entity(clients).build();
+    if (pagination.isPresent()) {
+      return pagination.get().respond(responses, response -> response.id,
+          AutomationClientResource.class);
+    }
+    return Response.ok().entity(responses).build();
   }
 
   /**
@@ -33,6 +33,7 @@ import javax.ws.rs.core.MediaType;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.generators.SecretGenerator;
+import keywhiz.generators.SecretGenerator.MaxBatchSize;
 import keywhiz.service.exceptions.UnprocessableEntityException;
 
 /**
@@ -45,11 +46,14 @@ import keywhiz.service.exceptions.UnprocessableEntityException;
 public class AutomationSecretGeneratorsResource {
   private final ObjectMapper mapper;
   private final Map<String, SecretGenerator> generatorMap;
+  private final int maxBatchSize;
 
   @Inject
-  public AutomationSecretGeneratorsResource(ObjectMapper mapper, Map<String, SecretGenerator> generatorMap) {
+  public AutomationSecretGeneratorsResource(ObjectMapper mapper, Map<String, SecretGenerator> generatorMap,
+      @MaxBatchSize int maxBatchSize) {
     this.mapper = mapper;
     this.generatorMap = generatorMap;
+    this.maxBatchSize = maxBatchSize;
   }
 
   /**
@@ -108,7 +112,8 @@ public class AutomationSecretGeneratorsResource {
       throw new BadRequestException("Batch was empty.");
     }
 
-    return SanitizedSecret.fromSecrets(generator.batchGenerate(client.getName(), requestParams));
+    return SanitizedSecret.fromSecrets(generator.batchGenerate(client.getName(), requestParams,
+        maxBatchSize));
   }
 
   private SecretGenerator getGeneratorOrThrow(String generatorName) {
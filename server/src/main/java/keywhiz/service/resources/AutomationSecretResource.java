@@ -17,6 +17,7 @@ package keywhiz.service.resources;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.jersey.params.LongParam;
 import java.util.List;
@@ -38,7 +39,6 @@ import keywhiz.api.AutomationSecretResponse;
 import keywhiz.api.CreateSecretRequest;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.Group;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.VersionGenerator;
 import keywhiz.service.daos.AclDAO;
@@ -152,15 +152,9 @@ public class AutomationSecretResource {
           ImmutableList.copyOf(aclDAO.getGroupsFor(secret));
       responseBuilder.add(AutomationSecretResponse.fromSecret(secret, groups));
     } else {
-      List<SanitizedSecret> secrets = secretController.getSanitizedSecrets();
-
-      for (SanitizedSecret sanitizedSecret : secrets) {
-        Secret secret = secretController.getSecretByIdAndVersion(
-            sanitizedSecret.id(), sanitizedSecret.version()).orElseThrow(() ->
-            new IllegalStateException(format("Cannot find record related to %s", sanitizedSecret)));
-
-        ImmutableList<Group> groups =
-            ImmutableList.copyOf(aclDAO.getGroupsFor(secret));
+      ImmutableSetMultimap<Long, Group> groupsBySecret = aclDAO.getGroupsForSecrets();
+      for (Secret secret : secretController.getSecrets()) {
+        ImmutableList<Group> groups = groupsBySecret.get(secret.getId()).asList();
         responseBuilder.add(AutomationSecretResponse.fromSecret(secret, groups));
       }
     }
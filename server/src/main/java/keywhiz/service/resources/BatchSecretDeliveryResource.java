@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import io.dropwizard.auth.Auth;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.validation.Valid;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+import keywhiz.api.BatchSecretDeliveryResponse;
+import keywhiz.api.BatchSecretRequest;
+import keywhiz.api.SecretDeliveryResponse;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.AclDAO.AclDAOFactory;
+import keywhiz.service.daos.ClientDAO;
+import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
+import keywhiz.service.daos.SecretDAO;
+import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static keywhiz.api.model.Secret.splitNameAndVersion;
+
+/**
+ * @parentEndpointName secret
+ *
+ * @resourceDescription Retrieve several Secrets in one request
+ */
+@Path("/secrets/batch")
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces(MediaType.APPLICATION_JSON)
+public class BatchSecretDeliveryResource {
+  private static final Logger logger = LoggerFactory.getLogger(BatchSecretDeliveryResource.class);
+
+  private final SecretDAO secretDAO;
+  private final SecretTransformer transformer;
+  private final AclDAO aclDAO;
+  private final ClientDAO clientDAO;
+
+  @Inject public BatchSecretDeliveryResource(SecretDAOFactory secretDAOFactory,
+      SecretTransformer transformer, AclDAOFactory aclDAOFactory,
+      ClientDAOFactory clientDAOFactory) {
+    this.secretDAO = secretDAOFactory.readonly();
+    this.transformer = transformer;
+    this.aclDAO = aclDAOFactory.readonly();
+    this.clientDAO = clientDAOFactory.readonly();
+  }
+
+  @VisibleForTesting BatchSecretDeliveryResource(SecretDAO secretDAO,
+      SecretTransformer transformer, AclDAO aclDAO, ClientDAO clientDAO) {
+    this.secretDAO = secretDAO;
+    this.transformer = transformer;
+    this.aclDAO = aclDAO;
+    this.clientDAO = clientDAO;
+  }
+
+  /**
+   * Retrieve several Secrets by name
+   *
+   * @param request names of the Secrets to retrieve, each optionally versioned
+   *
+   * @description Returns one entry per requested name, in request order. Each entry carries the
+   * status a request to /secret/{name} would have received and, for 200, the Secret itself. A
+   * Secret which cannot be decrypted is reported as 500 without failing the other entries.
+   * @responseMessage 200 Entries for every requested Secret
+   * @responseMessage 422 Request was empty or named too many Secrets
+   */
+  @POST
+  public List<BatchSecretDeliveryResponse> getSecrets(@Valid BatchSecretRequest request,
+      @Auth Client client) {
+    SetMultimap<String, String> namesAndVersions = LinkedHashMultimap.create();
+    Map<String, String[]> parsed = new HashMap<>();
+    for (String secretName : request.secrets) {
+      try {
+        String[] parts = splitNameAndVersion(secretName);
+        parsed.put(secretName, parts);
+        namesAndVersions.put(parts[0], parts[1]);
+      } catch (ParseException e) {
+        logger.info("Client {} requested invalid secret name '{}'.", client.getName(), secretName);
+      }
+    }
+
+    ImmutableSet<String> readable =
+        aclDAO.getReadableSecretNamesFor(client, namesAndVersions.keySet());
+
+    // Encrypted content only; decryption is deferred until access is established.
+    Map<List<String>, SecretSeriesAndContent> found = new HashMap<>();
+    for (SecretSeriesAndContent secret : secretDAO.getSecretsByNameAndVersion(namesAndVersions)) {
+      found.put(key(secret.series().name(), secret.content().version().orElse("")), secret);
+    }
+
+    Optional<Boolean> clientExists = Optional.empty();
+    ImmutableList.Builder<BatchSecretDeliveryResponse> responses = ImmutableList.builder();
+    for (String secretName : request.secrets) {
+      String[] parts = parsed.get(secretName);
+      if (parts == null) {
+        responses.add(failed(secretName, Status.BAD_REQUEST));
+        continue;
+      }
+
+      SecretSeriesAndContent secret = found.get(key(parts[0], parts[1]));
+      if (secret == null) {
+        responses.add(failed(secretName, Status.NOT_FOUND));
+      } else if (readable.contains(parts[0])) {
+        logger.info("Client {} granted access to {}.", client.getName(), secretName);
+        // Decryption fails with a runtime exception for corrupt content, which should only cost
+        // the client that one secret.
+        try {
+          responses.add(BatchSecretDeliveryResponse.found(secretName,
+              SecretDeliveryResponse.fromSecret(transformer.transform(secret))));
+        } catch (RuntimeException e) {
+          logger.error("Failed creating response for secret {}: {}", secretName, e);
+          responses.add(failed(secretName, Status.INTERNAL_SERVER_ERROR));
+        }
+      } else {
+        if (!clientExists.isPresent()) {
+          clientExists = Optional.of(clientDAO.getClient(client.getName()).isPresent());
+        }
+        responses.add(failed(secretName, clientExists.get() ? Status.FORBIDDEN : Status.NOT_FOUND));
+      }
+    }
+    return responses.build();
+  }
+
+  private static List<String> key(String name, String version) {
+    return ImmutableList.of(name, version);
+  }
+
+  private static BatchSecretDeliveryResponse failed(String secretName, Status status) {
+    return BatchSecretDeliveryResponse.failed(secretName, status.getStatusCode());
+  }
+}
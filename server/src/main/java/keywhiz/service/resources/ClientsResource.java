@@ -19,6 +19,7 @@ package keywhiz.service.resources;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
 import java.util.List;
@@ -83,15 +84,27 @@ public class ClientsResource {
    *
    * @optionalParams name
    * @param name the name of the Client to retrieve, if provided
+   * @optionalParams after
+   * @param after only list Clients with a greater ID, if provided
+   * @optionalParams limit
+   * @param limit maximum number of Clients to list, if provided
    *
    * @description Returns a single Client or a set of all Clients for this user.
+   * Listing is paginated by ID when after or limit is given, with a Link header to the next page.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Client(s)
+   * @responseMessage 400 Invalid pagination parameters
    * @responseMessage 404 Client with given name not found (if name provided)
    */
   @GET
-  public Response findClients(@Auth User user, @DefaultValue("") @QueryParam("name") String name) {
+  public Response findClients(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
+      @QueryParam("after") LongParam after, @QueryParam("limit") IntParam limit) {
     if (name.isEmpty()) {
+      Optional<Pagination> pagination = Pagination.of(after, limit);
+      if (pagination.isPresent()) {
+        return pagination.get().respond(listClients(user, pagination.get()), Client::getId,
+            ClientsResource.class);
+      }
       return Response.ok().entity(listClients(user)).build();
     }
     return Response.ok().entity(getClientByName(user, name)).build();
@@ -103,6 +116,11 @@ public class ClientsResource {
     return ImmutableList.copyOf(clients);
   }
 
+  protected List<Client> listClients(@Auth User user, Pagination pagination) {
+    logger.info("User '{}' listing clients after id={}.", user, pagination.after());
+    return clientDAO.getClients(pagination.after(), pagination.limit());
+  }
+
   protected Client getClientByName(@Auth User user, String name) {
     logger.info("User '{}' retrieving client name={}.", user, name);
     return clientFromName(name);
@@ -19,6 +19,7 @@ package keywhiz.service.resources;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
 import java.util.List;
@@ -81,15 +82,27 @@ public class GroupsResource {
    *
    * @optionalParams name
    * @param name the name of the Group to retrieve, if provided
+   * @optionalParams after
+   * @param after only list Groups with a greater ID, if provided
+   * @optionalParams limit
+   * @param limit maximum number of Groups to list, if provided
    *
    * @description Returns a single Group or a set of all Groups for this user.
+   * Listing is paginated by ID when after or limit is given, with a Link header to the next page.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Group(s)
+   * @responseMessage 400 Invalid pagination parameters
    * @responseMessage 404 Group with given name not found (if name provided)
    */
   @GET
-  public Response findGroups(@Auth User user, @DefaultValue("") @QueryParam("name") String name) {
+  public Response findGroups(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
+      @QueryParam("after") LongParam after, @QueryParam("limit") IntParam limit) {
     if (name.isEmpty()) {
+      Optional<Pagination> pagination = Pagination.of(after, limit);
+      if (pagination.isPresent()) {
+        return pagination.get().respond(listGroups(user, pagination.get()), Group::getId,
+            GroupsResource.class);
+      }
       return Response.ok().entity(listGroups(user)).build();
     }
     return Response.ok().entity(getGroupByName(user, name)).build();
@@ -101,6 +114,11 @@ public class GroupsResource {
     return ImmutableList.copyOf(groups);
   }
 
+  protected List<Group> listGroups(@Auth User user, Pagination pagination) {
+    logger.info("User '{}' listing groups after id={}.", user, pagination.after());
+    return groupDAO.getGroups(pagination.after(), pagination.limit());
+  }
+
   protected Group getGroupByName(@Auth User user, String name) {
     logger.info("User '{}' retrieving group name={}.", user, name);
     return groupFromName(name);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import io.dropwizard.jersey.params.IntParam;
+import io.dropwizard.jersey.params.LongParam;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+import javax.annotation.Nullable;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import static java.lang.String.format;
+
+/**
+ * Keyset pagination parameters for list endpoints, given as {@code ?after=<id>&limit=N}.
+ *
+ * A page holds the entries whose id is greater than {@code after}, ordered by id. When a page is
+ * full, the response carries a {@code Link: <...>; rel="next"} header whose {@code after} cursor
+ * is the id of the last entry returned.
+ */
+final class Pagination {
+  static final int DEFAULT_LIMIT = 100;
+  static final int MAX_LIMIT = 1000;
+
+  private final long after;
+  private final int limit;
+
+  private Pagination(long after, int limit) {
+    this.after = after;
+    this.limit = limit;
+  }
+
+  /**
+   * @param after id cursor, if provided.
+   * @param limit page size, if provided.
+   * @return paging parameters, or empty when neither is given and the whole listing is wanted.
+   * @throws BadRequestException if the cursor or page size is out of range.
+   */
+  static Optional<Pagination> of(@Nullable LongParam after, @Nullable IntParam limit) {
+    if (after == null && limit == null) {
+      return Optional.empty();
+    }
+
+    long afterId = (after == null) ? 0 : after.get();
+    if (afterId < 0 || afterId > Integer.MAX_VALUE) {
+      throw new BadRequestException(format("Invalid cursor %d.", afterId));
+    }
+
+    int pageSize = (limit == null) ? DEFAULT_LIMIT : limit.get();
+    if (pageSize < 1 || pageSize > MAX_LIMIT) {
+      throw new BadRequestException(format("Limit must be between 1 and %d.", MAX_LIMIT));
+    }
+    return Optional.of(new Pagination(afterId, pageSize));
+  }
+
+  long after() {
+    return after;
+  }
+
+  int limit() {
+    return limit;
+  }
+
+  /**
+   * @param page entries fetched for this page, ordered by id. Entries may share an id, as versions
+   * of a secret do, in which case the limit applies to distinct ids.
+   * @param idOf extracts the id used as cursor.
+   * @param resource resource class whose path the next link points at.
+   * @return response listing the page, linking to the next one if this page is full.
+   */
+  <T> Response respond(List<T> page, ToLongFunction<T> idOf, Class<?> resource) {
+    Response.ResponseBuilder response = Response.ok().entity(page);
+    if (page.stream().mapToLong(idOf).distinct().count() >= limit) {
+      long cursor = idOf.applyAsLong(page.get(page.size() - 1));
+      response.link(UriBuilder.fromResource(resource)
+          .queryParam("after", cursor)
+          .queryParam("limit", limit)
+          .build(), "next");
+    }
+    return response.build();
+  }
+}
@@ -29,10 +29,13 @@ import javax.ws.rs.NotFoundException;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
-import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.daos.AclDAO;
@@ -80,15 +83,17 @@ public class SecretDeliveryResource {
    *
    * @param secretName the name of the Secret to retrieve
    *
-   * @description Returns a single Secret if found
+   * @description Returns a single Secret if found. Responses carry an ETag, and a request whose
+   * If-None-Match header matches it is answered without a body.
    * @responseMessage 200 Found and retrieved Secret with given name
+   * @responseMessage 304 Secret is unchanged since the ETag in If-None-Match was issued
    * @responseMessage 403 Secret is not assigned to Client
    * @responseMessage 404 Secret with given name not found
    * @responseMessage 500 Secret response could not be generated for given Secret
    */
   @GET
-  public SecretDeliveryResponse getSecret(@NotEmpty @PathParam("secretName") String secretName,
-                                          @Auth Client client) {
+  public Response getSecret(@NotEmpty @PathParam("secretName") String secretName,
+                            @Auth Client client, @Context Request request) {
     String[] parts;
     try {
       parts = splitNameAndVersion(secretName);
@@ -98,12 +103,16 @@ public class SecretDeliveryResource {
     String name = parts[0];
     String version = parts[1];
 
-    Optional<SanitizedSecret> sanitizedSecret = aclDAO.getSanitizedSecretFor(client, name, version);
-    Optional<Secret> secret = secretController.getSecretByNameAndVersion(name, version);
-
-    if (!sanitizedSecret.isPresent()) {
+    // Checked before the secret is read, so an unchanged secret is never decrypted. The fingerprint
+    // only exists if the client can access the secret, so it doubles as the access check.
+    Optional<String> fingerprint = aclDAO.getSecretFingerprintFor(client, name, version);
+    if (!fingerprint.isPresent()) {
+      // A denied client only learns whether the secret exists. Secrets from the controller decrypt
+      // on first read, so this does no crypto. A client whose automatic enrollment is still
+      // pending has no row yet, so it is told the secret does not exist.
       boolean clientExists = clientDAO.getClient(client.getName()).isPresent();
-      boolean secretExists = secret.isPresent();
+      boolean secretExists = clientExists &&
+          secretController.getSecretByNameAndVersion(name, version).isPresent();
 
       if (clientExists && secretExists) {
         throw new ForbiddenException(format("Access denied: %s at '%s' by '%s'", client.getName(),
@@ -113,9 +122,19 @@ public class SecretDeliveryResource {
       }
     }
 
+    EntityTag entityTag = new EntityTag(fingerprint.get());
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+
+    // Deleted since the access check.
+    Secret secret = secretController.getSecretByNameAndVersion(name, version)
+        .orElseThrow(NotFoundException::new);
+
     logger.info("Client {} granted access to {}.", client.getName(), secretName);
     try {
-      return SecretDeliveryResponse.fromSecret(secret.get());
+      return Response.ok(SecretDeliveryResponse.fromSecret(secret)).tag(entityTag).build();
     } catch (IllegalArgumentException e) {
       logger.error("Failed creating response for secret {}: {}", secretName, e);
       throw new InternalServerErrorException();
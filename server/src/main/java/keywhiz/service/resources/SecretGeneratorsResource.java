@@ -33,6 +33,7 @@ import javax.ws.rs.core.MediaType;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.auth.User;
 import keywhiz.generators.SecretGenerator;
+import keywhiz.generators.SecretGenerator.MaxBatchSize;
 import keywhiz.service.exceptions.UnprocessableEntityException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,11 +49,14 @@ public class SecretGeneratorsResource {
   private static final Logger logger = LoggerFactory.getLogger(SecretGeneratorsResource.class);
   private final ObjectMapper mapper;
   private final Map<String, SecretGenerator> generatorMap;
+  private final int maxBatchSize;
 
   @Inject
-  public SecretGeneratorsResource(ObjectMapper mapper, Map<String, SecretGenerator> generatorMap) {
+  public SecretGeneratorsResource(ObjectMapper mapper, Map<String, SecretGenerator> generatorMap,
+      @MaxBatchSize int maxBatchSize) {
     this.mapper = mapper;
     this.generatorMap = generatorMap;
+    this.maxBatchSize = maxBatchSize;
   }
 
   /**
@@ -116,7 +120,8 @@ public class SecretGeneratorsResource {
       throw new BadRequestException("Batch was empty.");
     }
 
-    return SanitizedSecret.fromSecrets(generator.batchGenerate(user.getName(), requestParams));
+    return SanitizedSecret.fromSecrets(generator.batchGenerate(user.getName(), requestParams,
+        maxBatchSize));
   }
 
   private SecretGenerator getGeneratorOrThrow(String generatorName) {
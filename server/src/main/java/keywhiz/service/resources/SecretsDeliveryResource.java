@@ -16,14 +16,26 @@
 
 package keywhiz.service.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.auth.Auth;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
 import keywhiz.service.daos.AclDAO;
@@ -31,8 +43,6 @@ import keywhiz.service.daos.AclDAO.AclDAOFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * @parentEndpointName secrets
  *
@@ -42,27 +52,108 @@ import static java.util.stream.Collectors.toList;
 @Produces(MediaType.APPLICATION_JSON)
 public class SecretsDeliveryResource {
   private static final Logger logger = LoggerFactory.getLogger(SecretsDeliveryResource.class);
+  private static final String GZIP_SUFFIX = "--gzip";
 
   private final AclDAO aclDAO;
+  private final AclDAO watchAclDAO;
+  private final ObjectMapper mapper;
+  private final SecretsWatcher watcher;
 
-  @Inject public SecretsDeliveryResource(AclDAOFactory aclDAOFactory) {
+  @Inject public SecretsDeliveryResource(AclDAOFactory aclDAOFactory, ObjectMapper mapper,
+      SecretsWatcher watcher) {
     this.aclDAO = aclDAOFactory.readonly();
+    // Watches are resumed by changes seen on the primary, which replicas may not have yet.
+    this.watchAclDAO = aclDAOFactory.readwrite();
+    this.mapper = mapper;
+    this.watcher = watcher;
   }
 
-  @VisibleForTesting SecretsDeliveryResource(AclDAO aclDAO) {
+  @VisibleForTesting SecretsDeliveryResource(AclDAO aclDAO, ObjectMapper mapper,
+      SecretsWatcher watcher) {
     this.aclDAO = aclDAO;
+    this.watchAclDAO = aclDAO;
+    this.mapper = mapper;
+    this.watcher = watcher;
   }
 
   /**
    * Retrieve Secret by name
    *
-   * @description Returns all Secrets for the current Client
+   * @description Returns all Secrets for the current Client. Responses carry an ETag, and a
+   * request whose If-None-Match header matches it is answered without a body.
+   * @responseMessage 200 Retrieved Secrets for the current Client
+   * @responseMessage 304 Secrets are unchanged since the ETag in If-None-Match was issued
    */
   @GET
-  public List<SecretDeliveryResponse> getSecrets(@Auth Client client) {
+  public Response getSecrets(@Auth Client client, @Context Request request) {
+    EntityTag entityTag = new EntityTag(aclDAO.getSecretsFingerprintFor(client));
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+
     logger.info("Client {} listed available secrets.", client.getName());
-    return aclDAO.getSanitizedSecretsFor(client).stream()
-        .map(SecretDeliveryResponse::fromSanitizedSecret)
-        .collect(toList());
+    return secretsResponse(aclDAO, client, entityTag);
+  }
+
+  /**
+   * Wait for changes to Secrets
+   *
+   * @param since ETag of the Secrets the Client last retrieved. If absent, Secrets are returned
+   * immediately.
+   *
+   * @description Waits until any Secret, access grant or membership affecting the current Client
+   * changes, then returns all Secrets for the Client like a plain retrieval, along with an ETag to
+   * pass as since on the next call.
+   * @responseMessage 200 Secrets changed, and the current Secrets are returned
+   * @responseMessage 304 Secrets did not change before the request timed out
+   * @responseMessage 503 Too many requests are already waiting
+   */
+  @GET
+  @Path("watch")
+  public void watchSecrets(@Auth Client client, @QueryParam("since") String since,
+      @Suspended AsyncResponse response) {
+    watcher.watch(client, tokenOf(since), response, (fingerprint) -> {
+      logger.info("Client {} notified of changed secrets.", client.getName());
+      return secretsResponse(watchAclDAO, client, new EntityTag(fingerprint));
+    });
+  }
+
+  // Each secret is serialized as soon as its row is read, so memory use does not grow with the
+  // number of secrets a client has. As a consequence the status is usually sent before all rows
+  // are read: if the database fails part way through, the client sees a 200 whose body is cut
+  // short. The array is deliberately left unterminated in that case, so the partial body cannot
+  // be parsed as a complete, shorter list of secrets.
+  private Response secretsResponse(AclDAO aclDAO, Client client, EntityTag entityTag) {
+    StreamingOutput secrets = output -> {
+      try (JsonGenerator generator = mapper.getFactory().createGenerator(output)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+        generator.writeStartArray();
+        aclDAO.forEachSanitizedSecretFor(client, secret -> {
+          try {
+            generator.writeObject(SecretDeliveryResponse.fromSanitizedSecret(secret));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        generator.writeEndArray();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
+    return Response.ok(secrets).tag(entityTag).build();
+  }
+
+  /** Accepts ETags verbatim from a header, quoted and possibly suffixed by the gzip handler. */
+  private static String tokenOf(@Nullable String since) {
+    if (since == null) {
+      return "";
+    }
+    String token = since.trim();
+    if (token.startsWith("\"") && token.endsWith("\"") && token.length() > 1) {
+      token = token.substring(1, token.length() - 1);
+    }
+    return token.endsWith(GZIP_SUFFIX)
+        ? token.substring(0, token.length() - GZIP_SUFFIX.length()) : token;
   }
 }
@@ -19,6 +19,7 @@ package keywhiz.service.resources;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.net.URI;
 import java.util.List;
@@ -95,16 +96,28 @@ public class SecretsResource {
    * @param name the name of the Secret to retrieve, if provided
    * @optionalParams version
    * @param version the version of the Secret to retrieve, if provided
+   * @optionalParams after
+   * @param after only list Secrets with a greater ID, if provided
+   * @optionalParams limit
+   * @param limit maximum number of Secret IDs to list, if provided. All versions are included.
    *
    * @description Returns a single Secret or a set of all Secrets for this user.
+   * Listing is paginated by ID when after or limit is given, with a Link header to the next page.
    * Used by Keywhiz CLI and the web ui.
    * @responseMessage 200 Found and retrieved Secret(s)
+   * @responseMessage 400 Invalid pagination parameters
    * @responseMessage 404 Secret with given name not found (if name provided)
    */
   @GET
   public Response findSecrets(@Auth User user, @DefaultValue("") @QueryParam("name") String name,
-      @DefaultValue("") @QueryParam("version") String version) {
+      @DefaultValue("") @QueryParam("version") String version,
+      @QueryParam("after") LongParam after, @QueryParam("limit") IntParam limit) {
     if (name.isEmpty()) {
+      Optional<Pagination> pagination = Pagination.of(after, limit);
+      if (pagination.isPresent()) {
+        return pagination.get().respond(listSecrets(user, pagination.get()), SanitizedSecret::id,
+            SecretsResource.class);
+      }
       return Response.ok().entity(listSecrets(user)).build();
     }
     return Response.ok().entity(retrieveSecret(user, name, version)).build();
@@ -115,6 +128,11 @@ public class SecretsResource {
     return secretController.getSanitizedSecrets();
   }
 
+  protected List<SanitizedSecret> listSecrets(@Auth User user, Pagination pagination) {
+    logger.info("User '{}' listing secrets after id={}.", user, pagination.after());
+    return secretController.getSanitizedSecrets(pagination.after(), pagination.limit());
+  }
+
   protected SanitizedSecret retrieveSecret(@Auth User user, String name, String version) {
     logger.info("User '{}' retrieving secret name={} version={}.", user, name, version);
     return sanitizedSecretFromNameAndVersion(name, version);
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.WatchConfig;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.ChangeNotifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Holds suspended requests of clients waiting for their secrets to change.
+ *
+ * A client's secrets are considered changed once {@link AclDAO#getSecretsFingerprintFor(Client)}
+ * differs from the token it waits on. Fingerprints are re-read after writes announced by the
+ * {@link ChangeNotifier}, coalescing bursts of writes, and periodically to catch writes made
+ * through other servers. Each re-read fingerprints every waiting client in one grouped query.
+ *
+ * Changed watches are resumed on a separate executor, as writing a response streams it to the
+ * client, and slow clients must not hold up rechecks.
+ */
+public class SecretsWatcher {
+  private static final Logger logger = LoggerFactory.getLogger(SecretsWatcher.class);
+
+  private final AclDAO aclDAO;
+  private final ScheduledExecutorService executor;
+  private final Executor responseExecutor;
+  private final long timeoutMillis;
+  private final int maxWatches;
+  private final ConcurrentMap<String, Set<Watch>> watchesByClient = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean recheckPending = new AtomicBoolean();
+
+  /**
+   * @param aclDAO DAO to compute fingerprints with. Should read from the primary database, since
+   * rechecks follow writes to it immediately.
+   * @param changeNotifier announces writes to recheck watches after
+   * @param executor runs rechecks
+   * @param responseExecutor writes responses to resumed watches
+   * @param config watch settings
+   */
+  public SecretsWatcher(AclDAO aclDAO, ChangeNotifier changeNotifier,
+      ScheduledExecutorService executor, Executor responseExecutor, WatchConfig config) {
+    this.aclDAO = checkNotNull(aclDAO);
+    this.executor = checkNotNull(executor);
+    this.responseExecutor = checkNotNull(responseExecutor);
+    this.timeoutMillis = config.getTimeout().toMilliseconds();
+    this.maxWatches = config.getMaxWatches();
+
+    changeNotifier.addListener(this::scheduleRecheck);
+    long interval = config.getRecheckInterval().toMilliseconds();
+    executor.scheduleWithFixedDelay(this::recheck, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Resumes a response once the client's secrets differ from a token, or with 304 Not Modified
+   * after the configured timeout.
+   *
+   * @param client client whose secrets are watched
+   * @param since fingerprint the client last saw
+   * @param response suspended response to resume
+   * @param changed builds the response for a client's new fingerprint
+   * @throws ServiceUnavailableException if the configured number of requests are already waiting
+   */
+  public void watch(Client client, String since, AsyncResponse response,
+      Function<String, Response> changed) {
+    if (size.get() >= maxWatches) {
+      throw new ServiceUnavailableException();
+    }
+    Watch watch = new Watch(client, since, response, changed);
+
+    response.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    response.setTimeoutHandler(timedOut -> {
+      remove(watch);
+      if (watch.done.compareAndSet(false, true)) {
+        timedOut.resume(Response.notModified(new EntityTag(since)).build());
+      }
+    });
+
+    // Registered before the first check so that a change in between is not missed.
+    add(watch);
+    String fingerprint;
+    try {
+      fingerprint = aclDAO.getSecretsFingerprintFor(client);
+    } catch (RuntimeException e) {
+      remove(watch);
+      throw e;
+    }
+    if (!fingerprint.equals(since)) {
+      remove(watch);
+      watch.resume(fingerprint);
+    }
+  }
+
+  /** @return number of requests currently waiting. */
+  public int size() {
+    return size.get();
+  }
+
+  private void scheduleRecheck() {
+    if (recheckPending.compareAndSet(false, true)) {
+      executor.execute(() -> {
+        recheckPending.set(false);
+        recheck();
+      });
+    }
+  }
+
+  private void recheck() {
+    // Exceptions must not escape, as they would cancel the periodic recheck.
+    try {
+      Set<String> clientNames = ImmutableSet.copyOf(watchesByClient.keySet());
+      if (clientNames.isEmpty()) {
+        return;
+      }
+      Map<String, String> fingerprints = aclDAO.getSecretsFingerprintsFor(clientNames);
+      for (String clientName : clientNames) {
+        Set<Watch> watches = watchesByClient.get(clientName);
+        String fingerprint = fingerprints.get(clientName);
+        if (watches == null || fingerprint == null) {
+          continue;
+        }
+        for (Watch watch : watches) {
+          if (!fingerprint.equals(watch.since)) {
+            remove(watch);
+            responseExecutor.execute(() -> watch.resume(fingerprint));
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.error("Failed checking watched secrets for changes", e);
+    }
+  }
+
+  private void add(Watch watch) {
+    watchesByClient.compute(watch.client.getName(), (name, watches) -> {
+      Set<Watch> updated = (watches == null) ? ConcurrentHashMap.newKeySet() : watches;
+      if (updated.add(watch)) {
+        size.incrementAndGet();
+      }
+      return updated;
+    });
+  }
+
+  private void remove(Watch watch) {
+    watchesByClient.computeIfPresent(watch.client.getName(), (name, watches) -> {
+      if (watches.remove(watch)) {
+        size.decrementAndGet();
+      }
+      return watches.isEmpty() ? null : watches;
+    });
+  }
+
+  private static class Watch {
+    final Client client;
+    final String since;
+    final AsyncResponse response;
+    final Function<String, Response> changed;
+    final AtomicBoolean done = new AtomicBoolean();
+
+    Watch(Client client, String since, AsyncResponse response,
+        Function<String, Response> changed) {
+      this.client = client;
+      this.since = since;
+      this.response = response;
+      this.changed = changed;
+    }
+
+    void resume(String fingerprint) {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        response.resume(changed.apply(fingerprint));
+      } catch (RuntimeException e) {
+        response.resume(e);
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.dropwizard.java8.auth.Authenticator;
 import java.net.URI;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.Optional;
 import javax.inject.Inject;
@@ -51,6 +52,9 @@ import org.slf4j.LoggerFactory;
 public class SessionLoginResource {
   private static final Logger logger = LoggerFactory.getLogger(SessionLoginResource.class);
 
+  /** How long a session cookie is valid after it is issued or renewed. */
+  public static final Duration SESSION_LIFETIME = Duration.ofMinutes(15);
+
   private final Authenticator<BasicCredentials, User> userAuthenticator;
   private final AuthenticatedEncryptedCookieFactory cookieFactory;
   private final XsrfProtection xsrfProtection;
@@ -71,6 +75,8 @@ public class SessionLoginResource {
    * @description Logs in using LDAP and sets session cookies to authorize further requests
    * @responseMessage 200 Logged in successfully
    * @responseMessage 401 Incorrect credentials or not authorized
+   * @responseMessage 429 Too many login attempts for the user
+   * @responseMessage 503 Too many logins in progress
    */
   @POST
   @Consumes(MediaType.APPLICATION_JSON)
@@ -104,7 +110,7 @@ public class SessionLoginResource {
   }
 
   public ImmutableList<NewCookie> cookiesForUser(User user) {
-    ZonedDateTime expiration = ZonedDateTime.now().plusMinutes(15);
+    ZonedDateTime expiration = ZonedDateTime.now().plus(SESSION_LIFETIME);
     String session = cookieFactory.getSession(user, expiration);
 
     NewCookie cookie = cookieFactory.cookieFor(session, expiration);
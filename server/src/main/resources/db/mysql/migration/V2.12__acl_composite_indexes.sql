@@ -0,0 +1,11 @@
+/* Drop duplicate rows left by concurrent grants or enrollments, keeping the oldest. */
+DELETE a FROM accessgrants a
+  JOIN accessgrants b ON a.groupid = b.groupid AND a.secretid = b.secretid AND a.id > b.id;
+DELETE a FROM memberships a
+  JOIN memberships b ON a.groupid = b.groupid AND a.clientid = b.clientid AND a.id > b.id;
+
+CREATE UNIQUE INDEX accessgrants_groupid_secretid_idx ON accessgrants (groupid, secretid);
+CREATE INDEX accessgrants_secretid_groupid_idx ON accessgrants (secretid, groupid);
+
+CREATE UNIQUE INDEX memberships_groupid_clientid_idx ON memberships (groupid, clientid);
+CREATE INDEX memberships_clientid_groupid_idx ON memberships (clientid, groupid);
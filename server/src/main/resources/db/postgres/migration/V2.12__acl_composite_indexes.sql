@@ -0,0 +1,9 @@
+/* Drop duplicate rows left by concurrent grants or enrollments, keeping the oldest. */
+DELETE FROM accessGrants WHERE id NOT IN (SELECT MIN(id) FROM accessGrants GROUP BY groupId, secretId);
+DELETE FROM memberships WHERE id NOT IN (SELECT MIN(id) FROM memberships GROUP BY groupId, clientId);
+
+CREATE UNIQUE INDEX accessgrants_groupid_secretid_idx ON accessGrants (groupId, secretId);
+CREATE INDEX accessgrants_secretid_groupid_idx ON accessGrants (secretId, groupId);
+
+CREATE UNIQUE INDEX memberships_groupid_clientid_idx ON memberships (groupId, clientId);
+CREATE INDEX memberships_clientid_groupid_idx ON memberships (clientId, groupId);
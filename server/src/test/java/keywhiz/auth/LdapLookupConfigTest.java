@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.Resources;
 import io.dropwizard.configuration.ConfigurationFactory;
 import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.util.Duration;
 import java.io.File;
 import javax.validation.Validation;
 import javax.validation.Validator;
@@ -54,5 +55,11 @@ public class LdapLookupConfigTest {
     assertThat(lookupConfig.getRoleBaseDN()).isEqualTo("ou=ApplicationAccess,dc=test,dc=com");
     assertThat(lookupConfig.getUserBaseDN()).isEqualTo("ou=people,dc=test,dc=com");
     assertThat(lookupConfig.getUserAttribute()).isEqualTo("uid");
+    assertThat(lookupConfig.getPoolSize()).isEqualTo(4);
+    assertThat(lookupConfig.getPoolMaxWait()).isEqualTo(Duration.seconds(2));
+    assertThat(lookupConfig.getHealthCheckInterval()).isEqualTo(Duration.minutes(1));
+    assertThat(lookupConfig.getCache().isEnabled()).isTrue();
+    assertThat(lookupConfig.getCache().getExpiration()).isEqualTo(Duration.minutes(10));
+    assertThat(lookupConfig.getNegativeCacheExpiration()).isEqualTo(Duration.seconds(5));
   }
 }
@@ -15,8 +15,14 @@
  */
 package keywhiz.auth.bcrypt;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.dropwizard.auth.basic.BasicCredentials;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import keywhiz.auth.User;
 import keywhiz.service.daos.UserDAO;
 import org.junit.Before;
@@ -27,7 +33,9 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 public class BcryptAuthenticatorTest {
@@ -84,4 +92,49 @@ public class BcryptAuthenticatorTest {
     assertThat(missingUser.isPresent()).isFalse();
   }
 
+  @Test
+  public void bcryptAuthenticatorRateLimitsAttemptsPerUsername() throws Exception {
+    when(userDAO.getHashedPassword("sysadmin")).thenReturn(Optional.of(hashedPass));
+    when(userDAO.getHashedPassword("otheradmin")).thenReturn(Optional.of(hashedPass));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    BcryptAuthenticator authenticator =
+        new BcryptAuthenticator(userDAO, executor, 0.001, new MetricRegistry());
+
+    try {
+      assertThat(authenticator.authenticate(new BasicCredentials("sysadmin", "badpass")))
+          .isEmpty();
+      try {
+        authenticator.authenticate(new BasicCredentials("sysadmin", "validpass"));
+        fail("Expected second attempt to be rate limited");
+      } catch (ClientErrorException e) {
+        assertThat(e.getResponse().getStatus()).isEqualTo(429);
+      }
+      assertThat(authenticator.authenticate(new BasicCredentials("otheradmin", "validpass")))
+          .isPresent();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = ServiceUnavailableException.class)
+  public void bcryptAuthenticatorRejectsWhenVerificationExecutorIsFull() throws Exception {
+    when(userDAO.getHashedPassword("sysadmin")).thenReturn(Optional.of(hashedPass));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+
+    new BcryptAuthenticator(userDAO, executor, null, new MetricRegistry())
+        .authenticate(new BasicCredentials("sysadmin", "validpass"));
+  }
+
+  @Test
+  public void bcryptAuthenticatorTimesVerifications() throws Exception {
+    when(userDAO.getHashedPassword("sysadmin")).thenReturn(Optional.of(hashedPass));
+    MetricRegistry metrics = new MetricRegistry();
+    BcryptAuthenticator authenticator = new BcryptAuthenticator(userDAO,
+        MoreExecutors.newDirectExecutorService(), null, metrics);
+
+    authenticator.authenticate(new BasicCredentials("sysadmin", "validpass"));
+    assertThat(metrics.timer(name(BcryptAuthenticator.class, "verifications")).getCount())
+        .isEqualTo(1);
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.auth.cookie;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import java.security.SecureRandom;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import javax.ws.rs.core.Cookie;
+import keywhiz.FakeRandom;
+import keywhiz.KeywhizService;
+import keywhiz.auth.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CookieAuthenticatorTest {
+  private static final User USER = User.named("username");
+
+  ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+  GCMEncryptor encryptor;
+  CookieAuthenticator authenticator;
+
+  @Before public void setUp() {
+    SecureRandom random = FakeRandom.create();
+    byte[] key = new byte[32];
+    random.nextBytes(key);
+    encryptor = spy(new GCMEncryptor(key, random));
+    authenticator = new CookieAuthenticator(mapper, encryptor);
+  }
+
+  @Test public void authenticatesValidCookie() throws Exception {
+    Cookie cookie = cookieFor(ZonedDateTime.now().plusMinutes(5));
+    assertThat(authenticator.authenticate(cookie)).contains(USER);
+  }
+
+  @Test public void rejectsExpiredCookie() throws Exception {
+    Cookie cookie = cookieFor(ZonedDateTime.now().minusMinutes(5));
+    assertThat(authenticator.authenticate(cookie)).isEmpty();
+  }
+
+  @Test public void decryptsRepeatedCookieOnce() throws Exception {
+    Cookie cookie = cookieFor(ZonedDateTime.now().plusMinutes(5));
+
+    assertThat(authenticator.authenticate(cookie)).contains(USER);
+    assertThat(authenticator.authenticate(cookie)).contains(USER);
+    assertThat(authenticator.getUserCookieData(cookie).get().getUser()).isEqualTo(USER);
+
+    verify(encryptor, times(1)).decrypt(any(byte[].class));
+  }
+
+  @Test public void rejectsTamperedCookieWithVerifiedMac() throws Exception {
+    Cookie cookie = cookieFor(ZonedDateTime.now().plusMinutes(5));
+    assertThat(authenticator.authenticate(cookie)).contains(USER);
+
+    // Keeps the authentication tag at the end of the cookie, changes the ciphertext before it.
+    byte[] tampered = Base64.getDecoder().decode(cookie.getValue());
+    tampered[0] = (byte) (tampered[0] ^ 1);
+    Cookie tamperedCookie = new Cookie("session", Base64.getEncoder().encodeToString(tampered));
+
+    assertThat(authenticator.authenticate(tamperedCookie)).isEmpty();
+  }
+
+  @Test public void rejectsVerifiedCookieOnceExpired() throws Exception {
+    Cookie cookie = cookieFor(ZonedDateTime.now().plusNanos(50_000_000));
+    assertThat(authenticator.authenticate(cookie)).contains(USER);
+
+    Thread.sleep(100);
+    assertThat(authenticator.authenticate(cookie)).isEmpty();
+  }
+
+  private Cookie cookieFor(ZonedDateTime expiration) throws Exception {
+    byte[] ciphertext =
+        encryptor.encrypt(mapper.writeValueAsBytes(new UserCookieData(USER, expiration)));
+    return new Cookie("session", Base64.getEncoder().encodeToString(ciphertext));
+  }
+}
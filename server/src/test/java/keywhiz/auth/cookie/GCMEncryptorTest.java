@@ -15,7 +15,17 @@
  */
 package keywhiz.auth.cookie;
 
+import com.google.common.collect.Sets;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.crypto.AEADBadTagException;
 import keywhiz.FakeRandom;
 import org.junit.Before;
@@ -66,4 +76,32 @@ public class GCMEncryptorTest {
 
     assertThat(firstIV).isNotEqualTo(secondIV);
   }
+
+  @Test
+  public void encryptsConcurrentlyWithUniqueNonces() throws Exception {
+    int threads = 4;
+    int encryptionsPerThread = 500;
+    Callable<Set<ByteBuffer>> encryptions = () -> {
+      Set<ByteBuffer> nonces = Sets.newHashSet();
+      for (int i = 0; i < encryptionsPerThread; i++) {
+        byte[] ciphertext = encryptor.encrypt(testMessage);
+        assertThat(encryptor.decrypt(ciphertext)).isEqualTo(testMessage);
+        nonces.add(ByteBuffer.wrap(GCMEncryptor.getNonce(ciphertext)));
+      }
+      return nonces;
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Set<ByteBuffer>>> results = executor.invokeAll(
+          IntStream.range(0, threads).mapToObj(i -> encryptions).collect(Collectors.toList()));
+      Set<ByteBuffer> nonces = Sets.newHashSet();
+      for (Future<Set<ByteBuffer>> result : results) {
+        nonces.addAll(result.get());
+      }
+      assertThat(nonces).hasSize(threads * encryptionsPerThread);
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
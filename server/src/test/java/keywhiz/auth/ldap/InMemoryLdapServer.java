@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.auth.ldap;
+
+import com.google.common.collect.ImmutableSet;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldif.LDIFException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.SocketFactory;
+import org.junit.rules.ExternalResource;
+
+/**
+ * Stand-in LDAP directory for tests, listening on plain LDAP on a free local port.
+ *
+ * Holds a service account, the user {@code sysadmin} in role {@code admin}, and the user
+ * {@code nobody} without any role.
+ */
+public class InMemoryLdapServer extends ExternalResource {
+  public static final String BASE_DN = "dc=example,dc=com";
+  public static final String USERS_DN = "ou=users," + BASE_DN;
+  public static final String ROLES_DN = "ou=roles," + BASE_DN;
+  public static final String SERVICE_DN = "cn=keywhiz,ou=services," + BASE_DN;
+  public static final String SERVICE_PASSWORD = "servicepass";
+
+  private final AtomicInteger searches = new AtomicInteger();
+  private InMemoryDirectoryServer server;
+
+  @Override protected void before() throws Exception {
+    InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+    config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+      @Override public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+        // Pool health checks read the root DSE; only count lookups below the base DN.
+        if (request.getRequest().getBaseDN().endsWith(BASE_DN)) {
+          searches.incrementAndGet();
+        }
+      }
+    });
+
+    server = new InMemoryDirectoryServer(config);
+    server.add("dn: " + BASE_DN, "objectClass: domain", "dc: example");
+    server.add("dn: ou=services," + BASE_DN, "objectClass: organizationalUnit", "ou: services");
+    server.add("dn: " + USERS_DN, "objectClass: organizationalUnit", "ou: users");
+    server.add("dn: " + ROLES_DN, "objectClass: organizationalUnit", "ou: roles");
+    server.add("dn: " + SERVICE_DN, "objectClass: person", "cn: keywhiz", "sn: keywhiz",
+        "userPassword: " + SERVICE_PASSWORD);
+    addUser("sysadmin", "validpass");
+    addUser("nobody", "nobodypass");
+    server.add("dn: cn=admin," + ROLES_DN, "objectClass: groupOfUniqueNames", "cn: admin",
+        "uniqueMember: " + userDN("sysadmin"));
+    server.startListening();
+  }
+
+  @Override protected void after() {
+    server.shutDown(true);
+  }
+
+  public static String userDN(String username) {
+    return "uid=" + username + "," + USERS_DN;
+  }
+
+  public void addUser(String username, String password) throws LDAPException, LDIFException {
+    server.add("dn: " + userDN(username), "objectClass: inetOrgPerson", "uid: " + username,
+        "cn: " + username, "sn: " + username, "userPassword: " + password);
+  }
+
+  /** @return lookup config matching this directory, requiring the {@code admin} role. */
+  public LdapLookupConfig lookupConfig() {
+    return new LdapLookupConfig(USERS_DN, "uid", ImmutableSet.of("admin"), ROLES_DN);
+  }
+
+  /** @return a connection factory for this directory, bound as the service account. */
+  public LdapConnectionFactory connectionFactory(LdapLookupConfig config) {
+    return new LdapConnectionFactory("localhost", server.getListenPort(), SERVICE_DN,
+        SERVICE_PASSWORD, config, SocketFactory.getDefault());
+  }
+
+  /** @return number of user and role searches served so far. */
+  public int searchCount() {
+    return searches.get();
+  }
+}
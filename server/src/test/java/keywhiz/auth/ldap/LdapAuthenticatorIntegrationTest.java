@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.auth.ldap;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.util.Duration;
+import java.util.Optional;
+import javax.ws.rs.ForbiddenException;
+import keywhiz.auth.User;
+import keywhiz.service.config.CacheConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LdapAuthenticatorIntegrationTest {
+  @Rule public InMemoryLdapServer ldapServer = new InMemoryLdapServer();
+
+  LdapLookupConfig config;
+  LdapConnectionFactory connectionFactory;
+
+  @Before public void setUp() {
+    config = ldapServer.lookupConfig();
+    connectionFactory = ldapServer.connectionFactory(config);
+  }
+
+  @After public void tearDown() {
+    connectionFactory.close();
+  }
+
+  @Test public void authenticatesMemberOfRequiredRole() {
+    Optional<User> user = uncached().authenticate(new BasicCredentials("sysadmin", "validpass"));
+    assertThat(user).contains(User.named("sysadmin"));
+  }
+
+  @Test public void rejectsWrongPassword() {
+    Optional<User> user = uncached().authenticate(new BasicCredentials("sysadmin", "badpass"));
+    assertThat(user).isEmpty();
+  }
+
+  @Test public void rejectsUnknownUser() {
+    Optional<User> user = uncached().authenticate(new BasicCredentials("unknown", "validpass"));
+    assertThat(user).isEmpty();
+  }
+
+  @Test(expected = ForbiddenException.class)
+  public void forbidsUserWithoutRequiredRole() {
+    uncached().authenticate(new BasicCredentials("nobody", "nobodypass"));
+  }
+
+  @Test public void searchesOnEveryLoginWithoutCache() {
+    LdapAuthenticator authenticator = uncached();
+    authenticator.authenticate(new BasicCredentials("sysadmin", "validpass"));
+    authenticator.authenticate(new BasicCredentials("sysadmin", "validpass"));
+    assertThat(ldapServer.searchCount()).isEqualTo(4);
+  }
+
+  @Test public void cachesLookupsButNotPasswords() {
+    LdapAuthenticator authenticator = cached(Duration.minutes(1));
+
+    assertThat(authenticator.authenticate(new BasicCredentials("sysadmin", "validpass")))
+        .isPresent();
+    assertThat(ldapServer.searchCount()).isEqualTo(2);
+
+    assertThat(authenticator.authenticate(new BasicCredentials("sysadmin", "validpass")))
+        .isPresent();
+    assertThat(authenticator.authenticate(new BasicCredentials("sysadmin", "badpass")))
+        .isEmpty();
+    assertThat(ldapServer.searchCount()).isEqualTo(2);
+  }
+
+  @Test public void cachesUnknownUsers() {
+    LdapAuthenticator authenticator = cached(Duration.minutes(1));
+    authenticator.authenticate(new BasicCredentials("unknown", "validpass"));
+    authenticator.authenticate(new BasicCredentials("unknown", "validpass"));
+    assertThat(ldapServer.searchCount()).isEqualTo(1);
+  }
+
+  @Test public void unknownUsersExpireAfterNegativeExpiration() throws Exception {
+    LdapAuthenticator authenticator = cached(Duration.milliseconds(1));
+    assertThat(authenticator.authenticate(new BasicCredentials("newuser", "newpass"))).isEmpty();
+
+    ldapServer.addUser("newuser", "newpass");
+    Thread.sleep(5);
+    try {
+      authenticator.authenticate(new BasicCredentials("newuser", "newpass"));
+    } catch (ForbiddenException expected) {
+      // Found and authenticated, but not in the admin role.
+    }
+    assertThat(ldapServer.searchCount()).isEqualTo(3);
+  }
+
+  private LdapAuthenticator uncached() {
+    return new LdapAuthenticator(connectionFactory, config);
+  }
+
+  private LdapAuthenticator cached(Duration negativeExpiration) {
+    CacheConfig cacheConfig = new CacheConfig();
+    cacheConfig.setEnabled(true);
+    cacheConfig.setExpiration(Duration.minutes(1));
+    return new LdapAuthenticator(connectionFactory, config,
+        LdapLookupCache.create(cacheConfig, negativeExpiration, new MetricRegistry()));
+  }
+}
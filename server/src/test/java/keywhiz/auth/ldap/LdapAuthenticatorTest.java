@@ -17,7 +17,8 @@ package keywhiz.auth.ldap;
 
 import com.google.common.collect.ImmutableSet;
 import com.unboundid.ldap.sdk.Attribute;
-import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
@@ -36,14 +37,14 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({LDAPConnection.class, SearchResult.class, SearchResultEntry.class})
+@PrepareForTest({SearchResult.class, SearchResultEntry.class})
 public class LdapAuthenticatorTest {
   @Mock LdapConnectionFactory ldapConnectionFactory;
-  @Mock LDAPConnection ldapConnection;
-  @Mock LDAPConnection ldapUserAuthConnection;
   @Mock SearchResult dnSearchResult;
   @Mock SearchResult roleSearchResult;
 
@@ -62,25 +63,31 @@ public class LdapAuthenticatorTest {
     List<SearchResultEntry> roleResults =
         Arrays.asList(new SearchResultEntry("cn=admin,ou=roles", new Attribute[]{}));
 
-    when(ldapConnectionFactory.getLDAPConnection()).thenReturn(ldapConnection);
-
-    when(ldapConnection.search(argThat(new IsDnSearch()))).thenReturn(dnSearchResult);
+    when(ldapConnectionFactory.search(argThat(new IsDnSearch()))).thenReturn(dnSearchResult);
     when(dnSearchResult.getEntryCount()).thenReturn(1);
     when(dnSearchResult.getSearchEntries()).thenReturn(dnResults);
 
-    when(ldapConnection.search(argThat(new IsRoleSearch()))).thenReturn(roleSearchResult);
+    when(ldapConnectionFactory.search(argThat(new IsRoleSearch()))).thenReturn(roleSearchResult);
     when(roleSearchResult.getEntryCount()).thenReturn(1);
     when(roleSearchResult.getSearchEntries()).thenReturn(roleResults);
   }
 
   @Test
   public void ldapAuthenticatorCreatesUserOnSuccess() throws Exception {
-    when(ldapConnectionFactory.getLDAPConnection(PEOPLE_DN, "validpass"))
-        .thenReturn(ldapUserAuthConnection);
-
     User user = ldapAuthenticator.authenticate(new BasicCredentials("sysadmin", "validpass"))
         .orElseThrow(RuntimeException::new);
     assertThat(user).isEqualTo(User.named("sysadmin"));
+    verify(ldapConnectionFactory).bind(PEOPLE_DN, "validpass");
+  }
+
+  @Test
+  public void ldapAuthenticatorRejectsWrongPassword() throws Exception {
+    doThrow(new LDAPException(ResultCode.INVALID_CREDENTIALS))
+        .when(ldapConnectionFactory).bind(PEOPLE_DN, "badpass");
+
+    Optional<User> user =
+        ldapAuthenticator.authenticate(new BasicCredentials("sysadmin", "badpass"));
+    assertThat(user.isPresent()).isFalse();
   }
 
   @Test
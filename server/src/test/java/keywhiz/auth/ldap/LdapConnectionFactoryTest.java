@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package keywhiz.auth.ldap;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+import io.dropwizard.util.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static keywhiz.auth.ldap.InMemoryLdapServer.SERVICE_DN;
+import static keywhiz.auth.ldap.InMemoryLdapServer.USERS_DN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class LdapConnectionFactoryTest {
+  private static final String USER_DN = InMemoryLdapServer.userDN("sysadmin");
+
+  @Rule public InMemoryLdapServer ldapServer = new InMemoryLdapServer();
+
+  LdapConnectionFactory connectionFactory;
+
+  @Before public void setUp() throws Exception {
+    LdapLookupConfig config = ldapServer.lookupConfig();
+    config.setPoolSize(2);
+    config.setPoolMaxWait(Duration.milliseconds(100));
+    connectionFactory = ldapServer.connectionFactory(config);
+  }
+
+  @After public void tearDown() {
+    connectionFactory.close();
+  }
+
+  @Test public void searchesAsServiceAccount() throws Exception {
+    SearchRequest request = new SearchRequest(USERS_DN, SearchScope.SUB, "(uid=sysadmin)");
+    assertThat(connectionFactory.search(request).getSearchEntries())
+        .extracting(entry -> entry.getDN())
+        .containsExactly(USER_DN);
+  }
+
+  @Test public void userBindRevertsToServiceAccount() throws Exception {
+    connectionFactory.bind(USER_DN, "validpass");
+    assertPooledConnectionsBoundAsServiceAccount();
+  }
+
+  @Test public void failedUserBindRevertsToServiceAccount() throws Exception {
+    try {
+      connectionFactory.bind(USER_DN, "badpass");
+      fail("Expected bind with a wrong password to fail");
+    } catch (LDAPException e) {
+      assertThat(e.getResultCode()).isEqualTo(ResultCode.INVALID_CREDENTIALS);
+    }
+    assertPooledConnectionsBoundAsServiceAccount();
+  }
+
+  @Test public void poolIsBounded() throws Exception {
+    LDAPConnectionPool pool = connectionFactory.getConnectionPool();
+    LDAPConnection first = pool.getConnection();
+    LDAPConnection second = pool.getConnection();
+    try {
+      pool.getConnection();
+      fail("Expected checkout from an exhausted pool to fail");
+    } catch (LDAPException expected) {
+    } finally {
+      pool.releaseConnection(first);
+      pool.releaseConnection(second);
+    }
+  }
+
+  @Test public void stoppingClosesPool() throws Exception {
+    LDAPConnectionPool pool = connectionFactory.getConnectionPool();
+    connectionFactory.stop();
+    assertThat(pool.isClosed()).isTrue();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test public void reportsPoolMetrics() throws Exception {
+    MetricRegistry metrics = new MetricRegistry();
+    connectionFactory.registerMetrics(metrics);
+    Gauge<Long> checkouts = metrics.getGauges()
+        .get(name(LdapConnectionFactory.class, "successful-checkouts"));
+    assertThat(checkouts.getValue()).isEqualTo(0L);
+
+    connectionFactory.bind(USER_DN, "validpass");
+    assertThat(checkouts.getValue()).isEqualTo(1L);
+    assertThat(metrics.getGauges()
+        .get(name(LdapConnectionFactory.class, "maximum-connections")).getValue())
+        .isEqualTo(2L);
+  }
+
+  private void assertPooledConnectionsBoundAsServiceAccount() throws LDAPException {
+    LDAPConnectionPool pool = connectionFactory.getConnectionPool();
+    LDAPConnection connection = pool.getConnection();
+    try {
+      assertThat(((SimpleBindRequest) connection.getLastBindRequest()).getBindDN())
+          .isEqualTo(SERVICE_DN);
+    } finally {
+      pool.releaseConnection(connection);
+    }
+  }
+}
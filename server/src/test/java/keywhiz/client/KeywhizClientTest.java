@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import io.dropwizard.jackson.Jackson;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import keywhiz.KeywhizService;
+import keywhiz.api.model.Group;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeywhizClientTest {
+  private static final OffsetDateTime NOW = OffsetDateTime.now();
+
+  ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+  OkHttpClient httpClient = new OkHttpClient();
+  AtomicInteger requests = new AtomicInteger();
+  KeywhizClient keywhizClient;
+
+  @Before public void setUp() {
+    keywhizClient = new KeywhizClient(mapper, httpClient, HttpUrl.parse("https://localhost:4445/"));
+  }
+
+  @Test public void iterationEndsWhenServerIgnoresPagingParameters() throws Exception {
+    List<Group> groups = new ArrayList<>();
+    for (int id = 1; id <= 600; id++) {
+      groups.add(new Group(id, "group" + id, null, NOW, null, NOW, null));
+    }
+    respondWith(mapper.writeValueAsString(groups));
+
+    List<Group> iterated = ImmutableList.copyOf(keywhizClient.iterateGroups());
+
+    assertThat(iterated.stream().map(Group::getId).collect(toList()))
+        .isEqualTo(groups.stream().map(Group::getId).collect(toList()));
+    assertThat(requests.get()).isEqualTo(2);
+  }
+
+  /** Answers every request with the same body, as a server without pagination support would. */
+  private void respondWith(String body) {
+    httpClient.interceptors().add(chain -> {
+      requests.incrementAndGet();
+      return new Response.Builder()
+          .request(chain.request())
+          .protocol(Protocol.HTTP_1_1)
+          .code(200)
+          .body(ResponseBody.create(MediaType.parse("application/json"), body))
+          .build();
+    });
+  }
+}
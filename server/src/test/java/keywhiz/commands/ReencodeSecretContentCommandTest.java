@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.commands;
+
+import java.util.Map;
+import keywhiz.TestDBRule;
+import keywhiz.service.crypto.ContentCryptographer;
+import keywhiz.service.crypto.CryptoFixtures;
+import org.jooq.DSLContext;
+import org.jooq.Record3;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toMap;
+import static keywhiz.jooq.tables.Secrets.SECRETS;
+import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReencodeSecretContentCommandTest {
+  @Rule public final TestDBRule testDBRule = new TestDBRule();
+
+  ContentCryptographer cryptographer = CryptoFixtures.contentCryptographer();
+  DSLContext jooqContext;
+
+  @Before public void setUp() {
+    jooqContext = testDBRule.jooqContext();
+    DbSeedCommand.doImport(jooqContext);
+  }
+
+  @Test public void reencodesLegacyContent() {
+    Map<Integer, String> before = decryptedContent();
+    assertThat(before).isNotEmpty();
+
+    int reencoded = ReencodeSecretContentCommand.reencode(jooqContext, 2);
+    assertThat(reencoded).isEqualTo(before.size());
+
+    for (String encryptedContent : jooqContext.select(SECRETS_CONTENT.ENCRYPTED_CONTENT)
+        .from(SECRETS_CONTENT)
+        .fetch(SECRETS_CONTENT.ENCRYPTED_CONTENT)) {
+      assertThat(ContentCryptographer.isLegacyFormat(encryptedContent)).isFalse();
+    }
+    assertThat(decryptedContent()).isEqualTo(before);
+  }
+
+  @Test public void reencodingIsIdempotent() {
+    ReencodeSecretContentCommand.reencode(jooqContext, 100);
+    assertThat(ReencodeSecretContentCommand.reencode(jooqContext, 100)).isZero();
+  }
+
+  @Test public void leavesContentDerivedFromAnotherName() {
+    jooqContext.update(SECRETS).set(SECRETS.NAME, "Renamed_Password")
+        .where(SECRETS.NAME.eq("Hacking_Password"))
+        .execute();
+    int total = jooqContext.fetchCount(SECRETS_CONTENT);
+
+    assertThat(ReencodeSecretContentCommand.reencode(jooqContext, 100)).isEqualTo(total - 1);
+  }
+
+  private Map<Integer, String> decryptedContent() {
+    return jooqContext.select(SECRETS_CONTENT.ID, SECRETS.NAME, SECRETS_CONTENT.ENCRYPTED_CONTENT)
+        .from(SECRETS_CONTENT)
+        .join(SECRETS).on(SECRETS_CONTENT.SECRETID.eq(SECRETS.ID))
+        .fetch()
+        .stream()
+        .collect(toMap(Record3::value1, r -> cryptographer.decrypt(r.value2(), r.value3())));
+  }
+}
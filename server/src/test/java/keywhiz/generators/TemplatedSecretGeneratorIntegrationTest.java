@@ -77,7 +77,7 @@ public class TemplatedSecretGeneratorIntegrationTest {
     } catch (KeywhizClient.MalformedRequestException e) {
     }
 
-    assertThat(keywhizClient.allSecrets()).haveExactly(1, secretWithName("batchName"));
+    assertThat(keywhizClient.allSecrets()).haveExactly(0, secretWithName("batchName"));
   }
 
   @Test public void createsTemplatesInBatch() throws IOException {
@@ -102,7 +102,7 @@ public class TemplatedSecretGeneratorIntegrationTest {
 
     List<TemplatedSecretsGeneratorRequest> templateBatch = Lists.newArrayList();
 
-    for (int i = 0; i < SecretGenerator.MAX_TEMPLATE_BATCH_SIZE + 1; i++) {
+    for (int i = 0; i < SecretGenerator.DEFAULT_MAX_BATCH_SIZE + 1; i++) {
       templateBatch.add(new TemplatedSecretsGeneratorRequest("{{#numeric}}20{{/numeric}}",
           "batchName" + i, "desc", false, ImmutableMap.of()));
     }
@@ -17,8 +17,15 @@
 package keywhiz.service.crypto;
 
 import com.sun.crypto.provider.SunJCE;
+import io.dropwizard.jackson.Jackson;
+import java.nio.ByteBuffer;
 import java.security.Provider;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import keywhiz.FakeRandom;
@@ -29,6 +36,7 @@ import org.junit.Test;
 
 import static com.google.common.io.BaseEncoding.base16;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getDecoder;
 import static java.util.Base64.getEncoder;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -46,7 +54,7 @@ public class ContentCryptographerTest {
   }
 
   @Before public void setUp() throws Exception {
-    cryptographer = new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create());
+    cryptographer = new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create(), 100);
   }
 
   @Test public void encryptDecrypt() throws Exception {
@@ -57,7 +65,133 @@ public class ContentCryptographerTest {
         .encryptionKeyDerivedFrom("secret_filename.gpg")
         .encrypt(inputBase64);
     assertThat(crypted).isNotEmpty().isNotEqualTo(inputBase64);
-    String outputBase64 = cryptographer.decrypt(crypted);
+    String outputBase64 = cryptographer.decrypt("secret_filename.gpg", crypted);
     assertThat(outputBase64).isEqualTo(inputBase64);
   }
+
+  @Test public void encryptsEnvelope() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+
+    String crypted = cryptographer.encryptionKeyDerivedFrom("secret_filename.gpg").encrypt(inputBase64);
+    assertThat(ContentCryptographer.isLegacyFormat(crypted)).isFalse();
+    assertThat(crypted).doesNotContain("secret_filename.gpg");
+    // 2 magic bytes, version and nonce length bytes, the 12 byte nonce and the ciphertext with a
+    // 16 byte tag.
+    assertThat(getDecoder().decode(crypted)).hasSize(4 + 12 + 11 + 16);
+  }
+
+  @Test public void decryptsLegacyJson() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    String legacy = legacyJson("secret_filename.gpg", inputBase64);
+
+    assertThat(ContentCryptographer.isLegacyFormat(legacy)).isTrue();
+    assertThat(cryptographer.decrypt("secret_filename.gpg", legacy)).isEqualTo(inputBase64);
+  }
+
+  @Test public void reencodesLegacyJsonAsEnvelope() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    String legacy = legacyJson("secret_filename.gpg", inputBase64);
+
+    String envelope = ContentCryptographer.toEnvelope("secret_filename.gpg", legacy);
+    assertThat(ContentCryptographer.isLegacyFormat(envelope)).isFalse();
+    assertThat(cryptographer.decrypt("secret_filename.gpg", envelope)).isEqualTo(inputBase64);
+  }
+
+  @Test public void reencodesSeededContentWithLongerIv() throws Exception {
+    String legacy = "{\"derivationInfo\":\"Hacking_Password\",\"content\":\"jpNVoXZao+b+f591w+CHWTj7D1M\","
+        + "\"iv\":\"W+pT37jJP4uDGHmuczXVCA\"}";
+    ContentCryptographer seeded = CryptoFixtures.contentCryptographer();
+
+    String envelope = ContentCryptographer.toEnvelope("Hacking_Password", legacy);
+    assertThat(seeded.decrypt("Hacking_Password", envelope))
+        .isEqualTo(seeded.decrypt("Hacking_Password", legacy));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void doesNotReencodeContentDerivedFromAnotherName() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    ContentCryptographer.toEnvelope("renamed", legacyJson("secret_filename.gpg", inputBase64));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownEnvelopeVersion() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    byte[] envelope = getDecoder().decode(
+        cryptographer.encryptionKeyDerivedFrom("secret_filename.gpg").encrypt(inputBase64));
+    envelope[2] = 2;
+    cryptographer.decrypt("secret_filename.gpg", getEncoder().encodeToString(envelope));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonceLengthBeyondEnvelope() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    byte[] envelope = getDecoder().decode(
+        cryptographer.encryptionKeyDerivedFrom("secret_filename.gpg").encrypt(inputBase64));
+    // Read as a signed byte, this length would be negative.
+    envelope[3] = (byte) 0x80;
+    cryptographer.decrypt("secret_filename.gpg", getEncoder().encodeToString(envelope));
+  }
+
+  @Test public void encryptsWithoutVerification() throws Exception {
+    ContentCryptographer unverified =
+        new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create(), 0);
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+
+    String crypted = unverified.encryptionKeyDerivedFrom("secret_filename.gpg").encrypt(inputBase64);
+    assertThat(cryptographer.decrypt("secret_filename.gpg", crypted)).isEqualTo(inputBase64);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidVerificationPercent() throws Exception {
+    new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create(), 101);
+  }
+
+  @Test public void decryptsAfterDerivedKeyEviction() throws Exception {
+    ContentCryptographer smallCache =
+        new ContentCryptographer(BASE_KEY, new SunJCE(), BC, FakeRandom.create(), 100, 1);
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+
+    String first = smallCache.encryptionKeyDerivedFrom("first").encrypt(inputBase64);
+    String second = smallCache.encryptionKeyDerivedFrom("second").encrypt(inputBase64);
+
+    assertThat(smallCache.decrypt("first", first)).isEqualTo(inputBase64);
+    assertThat(smallCache.decrypt("second", second)).isEqualTo(inputBase64);
+    assertThat(cryptographer.decrypt("first", first)).isEqualTo(inputBase64);
+  }
+
+  /** Re-packages envelope content in the JSON format that was written before envelopes. */
+  private String legacyJson(String secretName, String plaintextBase64) throws Exception {
+    ByteBuffer envelope = ByteBuffer.wrap(getDecoder().decode(
+        cryptographer.encryptionKeyDerivedFrom(secretName).encrypt(plaintextBase64)));
+    envelope.position(3);
+    byte[] nonce = new byte[envelope.get()];
+    envelope.get(nonce);
+    byte[] ciphertext = new byte[envelope.remaining()];
+    envelope.get(ciphertext);
+    return Jackson.newObjectMapper()
+        .writeValueAsString(ContentCryptographer.Crypted.of(secretName, ciphertext, nonce));
+  }
+
+  @Test public void decryptsConcurrently() throws Exception {
+    String inputBase64 = getEncoder().encodeToString("Hello World".getBytes(UTF_8));
+    List<String> crypted = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      crypted.add(cryptographer.encryptionKeyDerivedFrom("secret" + i).encrypt(inputBase64));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String name = "secret" + i % crypted.size();
+        String ciphertext = crypted.get(i % crypted.size());
+        results.add(executor.submit(() -> cryptographer.decrypt(name, ciphertext)));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo(inputBase64);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -60,7 +60,7 @@ public class CryptoFixtures {
       throw Throwables.propagate(e);
     }
 
-    cryptographer = new ContentCryptographer(baseKey, provider, provider, FakeRandom.create());
+    cryptographer = new ContentCryptographer(baseKey, provider, provider, FakeRandom.create(), 100);
     return cryptographer;
   }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.crypto;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.api.model.SecretSeriesAndContent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Base64.getEncoder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SecretTransformerTest {
+  private static final OffsetDateTime NOW = OffsetDateTime.now();
+
+  ContentCryptographer cryptographer = CryptoFixtures.contentCryptographer();
+  ExecutorService executor;
+
+  @Before public void setUp() {
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test public void transformsListsInParallelInOrder() {
+    List<SecretSeriesAndContent> versions = versions(cryptographer, 100);
+
+    List<Secret> serial = new SecretTransformer(cryptographer).transform(versions);
+    List<Secret> parallel = new SecretTransformer(cryptographer, executor, 4).transform(versions);
+
+    assertThat(parallel).hasSize(100).isEqualTo(serial);
+    for (int i = 0; i < versions.size(); i++) {
+      assertThat(parallel.get(i).getVersion()).isEqualTo(versions.get(i).content().version().get());
+      assertThat(parallel.get(i).getSecret()).isEqualTo(plaintext(i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void propagatesDecryptionFailuresFromOtherThreads() {
+    List<SecretSeriesAndContent> versions = versions(cryptographer, 100);
+    SecretSeriesAndContent last = versions.get(99);
+    List<SecretSeriesAndContent> corrupted = ImmutableList.<SecretSeriesAndContent>builder()
+        .addAll(versions.subList(0, 99))
+        .add(SecretSeriesAndContent.of(last.series(), SecretContent.of(99, 1, "not encrypted",
+            "v99", NOW, "creator", NOW, "creator", ImmutableMap.of())))
+        .build();
+
+    new SecretTransformer(cryptographer, executor, 4).transform(corrupted);
+  }
+
+  @Test public void transformsLazilyWithoutDecryptingUntilRead() {
+    ContentCryptographer mockCryptographer = mock(ContentCryptographer.class);
+    when(mockCryptographer.decrypt(anyString(), anyString())).thenReturn(plaintext(0));
+    List<SecretSeriesAndContent> versions = versions(cryptographer, 3);
+
+    List<Secret> secrets = new SecretTransformer(mockCryptographer).transformLazily(versions);
+
+    assertThat(secrets).extracting("version").containsExactly("v0", "v1", "v2");
+    verify(mockCryptographer, never()).decrypt(anyString(), anyString());
+
+    assertThat(secrets.get(0).getSecret()).isEqualTo(plaintext(0));
+    assertThat(secrets.get(0).getSecret()).isEqualTo(plaintext(0));
+    verify(mockCryptographer, times(1)).decrypt(anyString(), anyString());
+  }
+
+  private static List<SecretSeriesAndContent> versions(ContentCryptographer cryptographer,
+      int count) {
+    SecretSeries series = SecretSeries.of(1, "versioned", null, NOW, "creator", NOW, "creator",
+        null, null);
+    ImmutableList.Builder<SecretSeriesAndContent> versions = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      String encrypted = cryptographer.encryptionKeyDerivedFrom(series.name()).encrypt(plaintext(i));
+      versions.add(SecretSeriesAndContent.of(series, SecretContent.of(i, 1, encrypted, "v" + i,
+          NOW, "creator", NOW, "creator", ImmutableMap.of())));
+    }
+    return versions.build();
+  }
+
+  private static String plaintext(int i) {
+    return getEncoder().encodeToString(("secret number " + i).getBytes(UTF_8));
+  }
+}
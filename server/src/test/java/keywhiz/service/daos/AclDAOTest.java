@@ -16,13 +16,20 @@
 
 package keywhiz.service.daos;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
 import com.google.inject.Guice;
 import com.google.inject.testing.fieldbinder.Bind;
 import com.google.inject.testing.fieldbinder.BoundFieldModule;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import keywhiz.TestDBRule;
 import keywhiz.api.model.Client;
@@ -31,12 +38,18 @@ import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.VersionGenerator;
+import keywhiz.service.config.CacheConfig;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import keywhiz.service.daos.GroupDAO.GroupDAOFactory;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
 import keywhiz.service.daos.SecretSeriesDAO.SecretSeriesDAOFactory;
+import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -48,6 +61,7 @@ import static keywhiz.jooq.tables.Memberships.MEMBERSHIPS;
 import static keywhiz.jooq.tables.Secrets.SECRETS;
 import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
 public class AclDAOTest {
   @Rule public final TestDBRule testDBRule = new TestDBRule();
@@ -55,6 +69,8 @@ public class AclDAOTest {
   @Bind @SuppressWarnings("unused") ObjectMapper objectMapper = new ObjectMapper();
   @Bind DSLContext jooqContext;
   @Bind @Readonly DSLContext jooqReadonlyContext;
+  @Bind AclCache aclCache;
+  @Bind ClientCache clientCache = ClientCache.disabled();
 
   @Inject SecretSeriesDAOFactory secretSeriesDAOFactory;
   @Inject SecretDAOFactory secretDAOFactory;
@@ -62,6 +78,7 @@ public class AclDAOTest {
   @Inject GroupDAOFactory groupDAOFactory;
   @Inject AclDAO.AclDAOFactory aclDAOFactory;
 
+  MetricRegistry metricRegistry = new MetricRegistry();
   Client client1, client2;
   Group group1, group2, group3;
   Secret secret1, secret2;
@@ -72,6 +89,9 @@ public class AclDAOTest {
 
   @Before public void setUp() {
     jooqContext = jooqReadonlyContext = testDBRule.jooqContext();
+    CacheConfig cacheConfig = new CacheConfig();
+    cacheConfig.setEnabled(true);
+    aclCache = AclCache.create(cacheConfig, metricRegistry);
     Guice.createInjector(BoundFieldModule.of(this)).injectMembers(this);
 
     secretSeriesDAO = secretSeriesDAOFactory.readwrite();
@@ -117,6 +137,39 @@ public class AclDAOTest {
     assertThat(accessGrantsTableSize()).isEqualTo(before + 1);
   }
 
+  @Test public void findsAndAllowsAccessTwiceWithoutError() {
+    aclDAO.findAndAllowAccess(secret2.getId(), group1.getId());
+    aclDAO.findAndAllowAccess(secret2.getId(), group1.getId());
+    assertThat(accessGrantsTableSize()).isEqualTo(1);
+  }
+
+  @Test public void findsAndEnrollsClientTwiceWithoutError() {
+    aclDAO.findAndEnrollClient(client1.getId(), group1.getId());
+    aclDAO.findAndEnrollClient(client1.getId(), group1.getId());
+    assertThat(membershipsTableSize()).isEqualTo(1);
+  }
+
+  @Test public void recognizesDuplicateGrantOfConcurrentInsert() {
+    // What an insert racing another one past NOT EXISTS fails with.
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
+    try {
+      jooqContext.insertInto(ACCESSGRANTS, ACCESSGRANTS.GROUPID, ACCESSGRANTS.SECRETID)
+          .values(Math.toIntExact(group1.getId()), Math.toIntExact(secret2.getId()))
+          .execute();
+      failBecauseExceptionWasNotThrown(DataAccessException.class);
+    } catch (DataAccessException e) {
+      assertThat(AclDAO.isUniqueViolation(e)).isTrue();
+    }
+  }
+
+  @Test(expected = DataAccessException.class)
+  public void accessGrantsAreUnique() {
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
+    jooqContext.insertInto(ACCESSGRANTS, ACCESSGRANTS.GROUPID, ACCESSGRANTS.SECRETID)
+        .values(Math.toIntExact(group1.getId()), Math.toIntExact(secret2.getId()))
+        .execute();
+  }
+
   @Test public void revokesAccess() {
     aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
     int before = accessGrantsTableSize();
@@ -153,6 +206,14 @@ public class AclDAOTest {
     assertThat(membershipsTableSize()).isEqualTo(before + 1);
   }
 
+  @Test(expected = DataAccessException.class)
+  public void membershipsAreUnique() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
+    jooqContext.insertInto(MEMBERSHIPS, MEMBERSHIPS.GROUPID, MEMBERSHIPS.CLIENTID)
+        .values(Math.toIntExact(group2.getId()), Math.toIntExact(client1.getId()))
+        .execute();
+  }
+
   @Test public void evictsClient() {
     aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
     int before = membershipsTableSize();
@@ -205,6 +266,17 @@ public class AclDAOTest {
     assertThat(aclDAO.getGroupsFor(secret1)).containsOnly(group1, group2);
   }
 
+  @Test public void getGroupsForSecrets() {
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group3.getId());
+
+    ImmutableSetMultimap<Long, Group> groups = aclDAO.getGroupsForSecrets();
+    assertThat(groups.keySet()).containsOnly(secret1.getId(), secret2.getId());
+    assertThat(groups.get(secret1.getId())).containsOnly(group1, group2);
+    assertThat(groups.get(secret2.getId())).containsOnly(group3);
+  }
+
   @Test public void getGroupsForClient() {
     aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
     assertThat(aclDAO.getGroupsFor(client1)).containsOnly(group2);
@@ -213,6 +285,20 @@ public class AclDAOTest {
     assertThat(aclDAO.getGroupsFor(client1)).containsOnly(group1, group2);
   }
 
+  @Test public void getGroupsForClients() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group3.getId());
+
+    ImmutableSetMultimap<Long, Group> groups =
+        aclDAO.getGroupsForClients(ImmutableList.of(client1.getId(), client2.getId()));
+    assertThat(groups.get(client1.getId())).containsOnly(group1, group2);
+    assertThat(groups.get(client2.getId())).containsOnly(group3);
+
+    assertThat(aclDAO.getGroupsForClients(ImmutableList.of(client2.getId())).keySet())
+        .containsOnly(client2.getId());
+  }
+
   @Test public void getClientsForGroup() {
     aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group1.getId());
     assertThat(aclDAO.getClientsFor(group1)).containsOnly(client2);
@@ -246,6 +332,82 @@ public class AclDAOTest {
     assertThat(aclDAO.getSanitizedSecretsFor(client2)).isEmpty();
   }
 
+  @Test public void secretsFingerprintChangesWithAccess() {
+    String initial = aclDAO.getSecretsFingerprintFor(client2);
+    assertThat(aclDAO.getSecretsFingerprintFor(client2)).isEqualTo(initial);
+    assertThat(aclDAO.getSecretsFingerprintFor(client1)).isNotEqualTo(initial);
+
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+    String granted = aclDAO.getSecretsFingerprintFor(client2);
+    assertThat(granted).isNotEqualTo(initial);
+
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group2.getId());
+    String grantedBoth = aclDAO.getSecretsFingerprintFor(client2);
+    assertThat(grantedBoth).isNotEqualTo(granted);
+
+    aclDAO.revokeAccess(jooqContext.configuration(), secret1.getId(), group2.getId());
+    assertThat(aclDAO.getSecretsFingerprintFor(client2)).isNotEqualTo(grantedBoth);
+
+    aclDAO.evictClient(jooqContext.configuration(), client2.getId(), group2.getId());
+    assertThat(aclDAO.getSecretsFingerprintFor(client2)).isEqualTo(initial);
+  }
+
+  @Test public void batchedFingerprintsMatchSingleFingerprints() {
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+
+    ImmutableMap<String, String> fingerprints = aclDAO.getSecretsFingerprintsFor(
+        ImmutableSet.of(client1.getName(), client2.getName(), "unknown"));
+
+    assertThat(fingerprints).containsOnlyKeys(client1.getName(), client2.getName(), "unknown");
+    assertThat(fingerprints.get(client1.getName()))
+        .isEqualTo(aclDAO.getSecretsFingerprintFor(client1));
+    assertThat(fingerprints.get(client2.getName()))
+        .isEqualTo(aclDAO.getSecretsFingerprintFor(client2));
+  }
+
+  @Test public void secretFingerprintOnlyForAccessibleSecrets() {
+    assertThat(aclDAO.getSecretFingerprintFor(client2, secret2.getName(), "")).isEmpty();
+
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+    assertThat(aclDAO.getSecretFingerprintFor(client2, secret2.getName(), "")).isPresent();
+    assertThat(aclDAO.getSecretFingerprintFor(client2, secret2.getName(), "1234")).isEmpty();
+    assertThat(aclDAO.getSecretFingerprintFor(client2, secret1.getName(), "")).isEmpty();
+  }
+
+  @Test public void getReadableSecretNamesForClient() {
+    ImmutableSet<String> names = ImmutableSet.of(secret1.getName(), secret2.getName(), "missing");
+    assertThat(aclDAO.getReadableSecretNamesFor(client2, names)).isEmpty();
+
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+    assertThat(aclDAO.getReadableSecretNamesFor(client2, names)).containsOnly(secret2.getName());
+  }
+
+  @Test public void getSanitizedSecretsForClientUsesSingleQuery() {
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group1.getId());
+    aclDAO.enrollClient(jooqContext.configuration(), client2.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group2.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group2.getId());
+
+    AtomicInteger queries = new AtomicInteger();
+    Configuration counting = jooqContext.configuration().derive(
+        new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+          @Override public void executeStart(ExecuteContext ctx) {
+            queries.incrementAndGet();
+          }
+        }));
+
+    Set<SanitizedSecret> secrets = aclDAOFactory.using(counting).getSanitizedSecretsFor(client2);
+    assertThat(secrets).hasSize(2);
+    assertThat(queries.get()).isEqualTo(1);
+  }
+
   @Test public void getClientsForSecret() {
     assertThat(aclDAO.getClientsFor(secret2)).isEmpty();
 
@@ -328,6 +490,60 @@ public class AclDAOTest {
     assertThat(secret).isEqualToIgnoringGivenFields(sanitizedSecret1, "id");
   }
 
+  @Test public void getSecretForIsCachedUntilAclChanges() throws Exception {
+    Meter hits = metricRegistry.meter(MetricRegistry.name(AclCache.class, "hits"));
+    Meter misses = metricRegistry.meter(MetricRegistry.name(AclCache.class, "misses"));
+
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+
+    assertThat(aclDAO.getSanitizedSecretFor(client1, secret1.getName(), secret1.getVersion()))
+        .isPresent();
+    assertThat(aclDAO.getSanitizedSecretFor(client1, secret2.getName(), secret2.getVersion()))
+        .isEmpty();
+    assertThat(misses.getCount()).isEqualTo(1);
+    assertThat(hits.getCount()).isEqualTo(1);
+
+    aclDAO.revokeAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    assertThat(aclDAO.getSanitizedSecretFor(client1, secret1.getName(), secret1.getVersion()))
+        .isEmpty();
+    assertThat(misses.getCount()).isEqualTo(2);
+
+    aclDAO.allowAccess(jooqContext.configuration(), secret2.getId(), group1.getId());
+    assertThat(aclDAO.getSanitizedSecretFor(client1, secret2.getName(), secret2.getVersion()))
+        .isPresent();
+
+    groupDAO.deleteGroup(group1);
+    assertThat(aclDAO.getSanitizedSecretFor(client1, secret2.getName(), secret2.getVersion()))
+        .isEmpty();
+  }
+
+  @Test public void recreatedClientDoesNotInheritCachedAccess() {
+    ImmutableSet<String> names = ImmutableSet.of(secret1.getName());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    assertThat(aclDAO.getReadableSecretNamesFor(client1, names)).containsOnly(secret1.getName());
+
+    clientDAO.deleteClient(client1);
+    long id = clientDAO.createClient(client1.getName(), "creator", Optional.empty());
+    Client recreated = clientDAO.getClientById(id).get();
+
+    assertThat(aclDAO.getReadableSecretNamesFor(recreated, names)).isEmpty();
+  }
+
+  @Test public void recreatedSecretDoesNotInheritCachedAccess() {
+    ImmutableSet<String> names = ImmutableSet.of(secret1.getName());
+    aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
+    aclDAO.allowAccess(jooqContext.configuration(), secret1.getId(), group1.getId());
+    assertThat(aclDAO.getReadableSecretNamesFor(client1, names)).containsOnly(secret1.getName());
+
+    SecretDAO secretDAO = secretDAOFactory.readwrite();
+    secretDAO.deleteSecretsByName(secret1.getName());
+    SecretFixtures.using(secretDAO).createSecret(secret1.getName(), "c2VjcmV0MQ==");
+
+    assertThat(aclDAO.getReadableSecretNamesFor(client1, names)).isEmpty();
+  }
+
   @Test public void getSecretsReturnsDistinct() {
     // client1 has two paths to secret1
     aclDAO.enrollClient(jooqContext.configuration(), client1.getId(), group1.getId());
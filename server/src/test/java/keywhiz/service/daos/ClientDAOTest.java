@@ -16,6 +16,8 @@
 
 package keywhiz.service.daos;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Guice;
 import com.google.inject.testing.fieldbinder.Bind;
 import com.google.inject.testing.fieldbinder.BoundFieldModule;
@@ -24,6 +26,7 @@ import java.util.Set;
 import javax.inject.Inject;
 import keywhiz.TestDBRule;
 import keywhiz.api.model.Client;
+import keywhiz.service.config.CacheConfig;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.daos.ClientDAO.ClientDAOFactory;
 import org.jooq.DSLContext;
@@ -39,6 +42,8 @@ public class ClientDAOTest {
 
   @Bind DSLContext jooqContext;
   @Bind @Readonly DSLContext jooqReadonlyContext;
+  @Bind ClientCache clientCache;
+  @Bind AclCache aclCache = AclCache.disabled();
 
   @Inject ClientDAOFactory clientDAOFactory;
 
@@ -47,6 +52,9 @@ public class ClientDAOTest {
 
   @Before public void setUp() throws Exception {
     jooqContext = jooqReadonlyContext = testDBRule.jooqContext();
+    CacheConfig cacheConfig = new CacheConfig();
+    cacheConfig.setEnabled(true);
+    clientCache = ClientCache.create(cacheConfig, new MetricRegistry());
     Guice.createInjector(BoundFieldModule.of(this)).injectMembers(this);
 
     clientDAO = clientDAOFactory.readwrite();
@@ -79,6 +87,19 @@ public class ClientDAOTest {
     assertThat(clientById.getId()).isEqualTo(id);
   }
 
+  @Test public void createClientsSkipsExisting() {
+    int before = tableSize();
+    clientDAO.createClients(ImmutableSet.of("client1", "newClient1", "newClient2"), "creator",
+        Optional.of("desc"));
+
+    assertThat(tableSize()).isEqualTo(before + 2);
+    assertThat(clientDAO.getClient("client1")).contains(client1);
+    Client newClient = clientDAO.getClient("newClient2").orElseThrow(RuntimeException::new);
+    assertThat(newClient.getCreatedBy()).isEqualTo("creator");
+    assertThat(newClient.isEnabled()).isTrue();
+    assertThat(newClient.isAutomationAllowed()).isFalse();
+  }
+
   @Test public void deleteClient() {
     int before = tableSize();
     clientDAO.deleteClient(client1);
@@ -86,6 +107,17 @@ public class ClientDAOTest {
     assertThat(clientDAO.getClients()).containsOnly(client2);
   }
 
+  @Test public void deleteClientInvalidatesCache() {
+    clientCache.get("CN=client1", () -> Optional.of(client1));
+    clientCache.get("CN=client1,OU=other", () -> Optional.of(client1));
+    clientCache.get("CN=client2", () -> Optional.of(client2));
+
+    clientDAO.deleteClient(client1);
+    assertThat(clientCache.get("CN=client1", Optional::empty)).isEmpty();
+    assertThat(clientCache.get("CN=client1,OU=other", Optional::empty)).isEmpty();
+    assertThat(clientCache.get("CN=client2", Optional::empty)).contains(client2);
+  }
+
   @Test public void getClientByName() {
     assertThat(clientDAO.getClient("client1")).contains(client1);
   }
@@ -108,6 +140,15 @@ public class ClientDAOTest {
     assertThat(clients).containsOnly(client1, client2);
   }
 
+  @Test public void getsClientsInPages() {
+    Client client3 = clientDAO.getClientById(
+        clientDAO.createClient("client3", "creator", Optional.empty())).get();
+
+    assertThat(clientDAO.getClients(0, 2)).containsExactly(client1, client2);
+    assertThat(clientDAO.getClients(client2.getId(), 2)).containsExactly(client3);
+    assertThat(clientDAO.getClients(client3.getId(), 2)).isEmpty();
+  }
+
   private int tableSize() {
     return jooqContext.fetchCount(CLIENTS);
   }
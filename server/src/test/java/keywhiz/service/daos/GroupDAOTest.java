@@ -41,6 +41,8 @@ public class GroupDAOTest {
 
   @Bind DSLContext jooqContext;
   @Bind @Readonly DSLContext jooqReadonlyContext;
+  @Bind AclCache aclCache = AclCache.disabled();
+  @Bind ClientCache clientCache = ClientCache.disabled();
 
   @Inject GroupDAOFactory groupDAOFactory;
 
@@ -105,6 +107,12 @@ public class GroupDAOTest {
     assertThat(groupDAO.getGroups()).containsOnly(group1, group2);
   }
 
+  @Test public void getGroupsInPages() {
+    assertThat(groupDAO.getGroups(0, 1)).containsExactly(group1);
+    assertThat(groupDAO.getGroups(group1.getId(), 1)).containsExactly(group2);
+    assertThat(groupDAO.getGroups(group2.getId(), 1)).isEmpty();
+  }
+
   @Test(expected = DataAccessException.class)
   public void willNotCreateDuplicateGroup() throws Exception {
     groupDAO.createGroup("group1", "creator1", Optional.empty());
@@ -17,7 +17,9 @@
 package keywhiz.service.daos;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.inject.Guice;
 import com.google.inject.testing.fieldbinder.Bind;
 import com.google.inject.testing.fieldbinder.BoundFieldModule;
@@ -32,6 +34,7 @@ import keywhiz.api.model.VersionGenerator;
 import keywhiz.service.config.Readonly;
 import keywhiz.service.crypto.ContentCryptographer;
 import keywhiz.service.crypto.CryptoFixtures;
+import keywhiz.service.daos.SecretDAO.NewSecret;
 import keywhiz.service.daos.SecretDAO.SecretDAOFactory;
 import org.jooq.DSLContext;
 import org.jooq.Table;
@@ -43,6 +46,7 @@ import org.junit.Test;
 import static keywhiz.jooq.tables.Secrets.SECRETS;
 import static keywhiz.jooq.tables.SecretsContent.SECRETS_CONTENT;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
 public class SecretDAOTest {
   @Rule public final TestDBRule testDBRule = new TestDBRule();
@@ -50,6 +54,7 @@ public class SecretDAOTest {
   @Bind @SuppressWarnings("unused") ObjectMapper objectMapper = new ObjectMapper();
   @Bind DSLContext jooqContext;
   @Bind @Readonly DSLContext jooqReadonlyContext;
+  @Bind AclCache aclCache = AclCache.disabled();
 
   @Inject SecretDAOFactory secretDAOFactory;
 
@@ -124,6 +129,16 @@ public class SecretDAOTest {
         secret2.series().name(), secret2.content().version().get()).get();
   }
 
+  @Test public void getSecretsByNameAndVersion() {
+    ImmutableSetMultimap<String, String> namesAndVersions = ImmutableSetMultimap.of(
+        series1.name(), version,
+        series2.name(), "",
+        series2.name(), "missing",
+        "missing", "");
+    assertThat(secretDAO.getSecretsByNameAndVersion(namesAndVersions))
+        .containsOnly(secret1, secret2);
+  }
+
   @Test public void createSecret() {
     int secretsBefore = tableSize(SECRETS);
     int secretContentsBefore = tableSize(SECRETS_CONTENT);
@@ -132,15 +147,13 @@ public class SecretDAOTest {
     String content = "c2VjcmV0MQ==";
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     String version = VersionGenerator.now().toHex();
-    long newId = secretDAO.createSecret(name, encryptedContent, version, "creator",
-        ImmutableMap.of(), "", null, ImmutableMap.of());
-    SecretSeriesAndContent newSecret = secretDAO.getSecretByIdAndVersion(newId, version).get();
+    SecretSeriesAndContent newSecret = secretDAO.createSecret(name, encryptedContent, version,
+        "creator", ImmutableMap.of(), "", null, ImmutableMap.of());
 
     assertThat(tableSize(SECRETS)).isEqualTo(secretsBefore + 1);
     assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore + 1);
 
-    newSecret = secretDAO.getSecretByNameAndVersion(
-        newSecret.series().name(), newSecret.content().version().orElse("")).get();
+    assertThat(secretDAO.getSecretByNameAndVersion(name, version)).contains(newSecret);
     assertThat(secretDAO.getSecrets()).containsOnly(secret1, secret2, newSecret);
   }
 
@@ -153,14 +166,14 @@ public class SecretDAOTest {
     String encryptedContent1 = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     String version = VersionGenerator.fromLong(1234).toHex();
     long id = secretDAO.createSecret(name, encryptedContent1, version, "creator", ImmutableMap.of(),
-        "", null, ImmutableMap.of());
+        "", null, ImmutableMap.of()).series().id();
     SecretSeriesAndContent newSecret1 = secretDAO.getSecretByIdAndVersion(id, version).get();
 
     content = "amFja2RvcnNrZXkK";
     String encryptedContent2 = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
     version = VersionGenerator.fromLong(4321).toHex();
     id = secretDAO.createSecret(name, encryptedContent2, version, "creator", ImmutableMap.of(), "",
-        null, ImmutableMap.of());
+        null, ImmutableMap.of()).series().id();
     SecretSeriesAndContent newSecret2 = secretDAO.getSecretByIdAndVersion(id, version).get();
 
     // Only one new secrets entry should be created - there should be 2 secrets_content entries though
@@ -173,6 +186,51 @@ public class SecretDAOTest {
     assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore + 2);
   }
 
+  @Test public void createSecretsInBatch() {
+    int secretsBefore = tableSize(SECRETS);
+    int secretContentsBefore = tableSize(SECRETS_CONTENT);
+
+    List<NewSecret> batch = ImmutableList.of(
+        NewSecret.of("batchSecret", "encrypted1", "", "creator", emptyMetadata, "desc", null, null),
+        NewSecret.of(series2.name(), "encrypted2", "two", "creator", emptyMetadata, "", null, null),
+        NewSecret.of("batchSecret", "encrypted3", "three", "creator", ImmutableMap.of("mode", "0400"),
+            "other desc", "templated", ImmutableMap.of("template", "{{#numeric}}4{{/numeric}}")));
+    List<SecretSeriesAndContent> created = secretDAO.createSecrets(batch);
+
+    assertThat(tableSize(SECRETS)).isEqualTo(secretsBefore + 1);
+    assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore + 3);
+
+    assertThat(created).hasSize(3);
+    assertThat(created.get(0).series().description()).isEqualTo("desc");
+    assertThat(created.get(0).series()).isEqualTo(created.get(2).series());
+    assertThat(created.get(1).series().id()).isEqualTo(series2.id());
+    assertThat(created.get(2).content().metadata()).containsEntry("mode", "0400");
+    for (int i = 0; i < batch.size(); i++) {
+      assertThat(created.get(i).content().encryptedContent())
+          .isEqualTo(batch.get(i).encryptedSecret());
+      assertThat(secretDAO.getSecretByNameAndVersion(batch.get(i).name(), batch.get(i).version()))
+          .contains(created.get(i));
+    }
+  }
+
+  @Test public void createSecretsRollsBackWholeBatch() {
+    int secretsBefore = tableSize(SECRETS);
+    int secretContentsBefore = tableSize(SECRETS_CONTENT);
+
+    List<NewSecret> batch = ImmutableList.of(
+        NewSecret.of("rolledBack", "encrypted1", "", "creator", emptyMetadata, "", null, null),
+        NewSecret.of(series1.name(), "encrypted2", version, "creator", emptyMetadata, "", null,
+            null));
+    try {
+      secretDAO.createSecrets(batch);
+      failBecauseExceptionWasNotThrown(DataAccessException.class);
+    } catch (DataAccessException expected) {
+    }
+
+    assertThat(tableSize(SECRETS)).isEqualTo(secretsBefore);
+    assertThat(tableSize(SECRETS_CONTENT)).isEqualTo(secretContentsBefore);
+  }
+
   @Test public void getSecretByNameAndVersion() {
     String name = secret1.series().name();
     String version = secret1.content().version().orElse("");
@@ -189,7 +247,8 @@ public class SecretDAOTest {
     String name = secret1.series().name();
     String content = "bmV3ZXJTZWNyZXQy";
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
-    long newId = secretDAO.createSecret(name, encryptedContent, futureStamp, "creator", ImmutableMap.of(), "desc", null, null);
+    long newId = secretDAO.createSecret(name, encryptedContent, futureStamp, "creator",
+        ImmutableMap.of(), "desc", null, null).series().id();
     SecretSeriesAndContent newerSecret = secretDAO.getSecretByIdAndVersion(newId, futureStamp)
         .orElseThrow(RuntimeException::new);
 
@@ -237,6 +296,18 @@ public class SecretDAOTest {
     assertThat(secretDAO.getSecrets()).containsOnly(secret1, secret2);
   }
 
+  @Test public void getSecretsInPages() {
+    secretDAO.createSecret(series1.name(), encryptedContent, "other", "creator",
+        ImmutableMap.of(), "", null, null);
+    SecretSeriesAndContent otherVersion =
+        secretDAO.getSecretByNameAndVersion(series1.name(), "other").get();
+
+    // Limits apply to series, so every version of secret1 fits in the first page.
+    assertThat(secretDAO.getSecrets(0, 1)).containsExactly(secret1, otherVersion);
+    assertThat(secretDAO.getSecrets(series1.id(), 1)).containsExactly(secret2);
+    assertThat(secretDAO.getSecrets(series2.id(), 1)).isEmpty();
+  }
+
   @Test public void deleteSecretsByName() {
     secretDAO.createSecret("toBeDeleted_deleteSecretsByName", "encryptedShhh", "first", "creator",
         ImmutableMap.of(), "", null, null);
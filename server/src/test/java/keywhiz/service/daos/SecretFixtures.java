@@ -18,6 +18,7 @@ package keywhiz.service.daos;
 
 import com.google.common.collect.ImmutableMap;
 import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretSeriesAndContent;
 import keywhiz.service.crypto.ContentCryptographer;
 import keywhiz.service.crypto.CryptoFixtures;
 import keywhiz.service.crypto.SecretTransformer;
@@ -64,9 +65,9 @@ public class SecretFixtures {
    */
   public Secret createSecret(String name, String content, String version) {
     String encryptedContent = cryptographer.encryptionKeyDerivedFrom(name).encrypt(content);
-    long id =
+    SecretSeriesAndContent created =
         secretDAO.createSecret(name, encryptedContent, version, "creator", ImmutableMap.of(),
             "", null, ImmutableMap.of());
-    return transformer.transform(secretDAO.getSecretByIdAndVersion(id, version).get());
+    return transformer.transform(created, content);
   }
 }
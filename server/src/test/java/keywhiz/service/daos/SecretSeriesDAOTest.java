@@ -41,6 +41,7 @@ public class SecretSeriesDAOTest {
   @Bind @SuppressWarnings("unused") ObjectMapper objectMapper = new ObjectMapper();
   @Bind DSLContext jooqContext;
   @Bind @Readonly DSLContext jooqReadonlyContext;
+  @Bind AclCache aclCache = AclCache.disabled();
 
   @Inject SecretSeriesDAOFactory secretSeriesDAOFactory;
 
@@ -75,6 +76,19 @@ public class SecretSeriesDAOTest {
         "name", "description", "type", "generationOptions");
   }
 
+  @Test public void createSecretSeriesIfAbsentReusesExistingSeries() {
+    int before = tableSize();
+
+    SecretSeries created = secretSeriesDAO.createSecretSeriesIfAbsent("upsertedSeries", "creator",
+        "desc", null, ImmutableMap.of("foo", "bar"));
+    SecretSeries existing = secretSeriesDAO.createSecretSeriesIfAbsent("upsertedSeries", "other",
+        "other desc", "type", null);
+
+    assertThat(tableSize()).isEqualTo(before + 1);
+    assertThat(existing).isEqualTo(created);
+    assertThat(secretSeriesDAO.getSecretSeriesByName("upsertedSeries")).contains(created);
+  }
+
   @Test public void deleteSecretSeriesByName() {
     secretSeriesDAO.createSecretSeries("toBeDeleted_deleteSecretSeriesByName", "creator", "", null, null);
 
@@ -17,6 +17,7 @@ package keywhiz.service.filters;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import javax.ws.rs.core.NewCookie;
 import keywhiz.auth.User;
 import keywhiz.auth.cookie.CookieAuthenticator;
 import keywhiz.auth.cookie.CookieConfig;
+import keywhiz.auth.cookie.UserCookieData;
 import keywhiz.service.resources.SessionLoginResource;
 import org.eclipse.jetty.server.CookieCutter;
 import org.junit.Before;
@@ -39,6 +41,7 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static com.google.common.net.HttpHeaders.SET_COOKIE;
+import static keywhiz.service.resources.SessionLoginResource.SESSION_LIFETIME;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.when;
@@ -74,7 +77,7 @@ public class CookieRenewingFilterTest {
     CookieConfig cookieConfig = new CookieConfig();
     cookieConfig.setName(SESSION_COOKIE);
 
-    filter = new CookieRenewingFilter(cookieConfig, authenticator, sessionLoginResource);
+    filter = new CookieRenewingFilter(cookieConfig, authenticator, sessionLoginResource, 0.5);
 
     when(response.getHeaders()).thenReturn(new MultivaluedHashMap<>());
   }
@@ -82,7 +85,8 @@ public class CookieRenewingFilterTest {
   @Test public void setsAllNewCookieWithValidCookie() throws Exception {
     User user = User.named("username");
     when(request.getCookies()).thenReturn(ImmutableMap.of(SESSION_COOKIE, cookie));
-    when(authenticator.authenticate(cookie)).thenReturn(Optional.of(user));
+    when(authenticator.getUserCookieData(cookie)).thenReturn(Optional.of(
+        new UserCookieData(user, ZonedDateTime.now().plus(SESSION_LIFETIME.dividedBy(4)))));
 
     NewCookie newCookie1 = new NewCookie(SESSION_COOKIE, "new session");
     NewCookie newCookie2 = new NewCookie("XSRF", "new xsrf");
@@ -95,9 +99,35 @@ public class CookieRenewingFilterTest {
         entry(newCookie2.getName(), newCookie2.getValue()));
   }
 
+  @Test public void doesNothingWhenCookieIsFresh() throws Exception {
+    when(request.getCookies()).thenReturn(ImmutableMap.of(SESSION_COOKIE, cookie));
+    when(authenticator.getUserCookieData(cookie)).thenReturn(Optional.of(new UserCookieData(
+        User.named("username"), ZonedDateTime.now().plus(SESSION_LIFETIME.multipliedBy(3).dividedBy(4)))));
+
+    filter.filter(request, response);
+
+    assertThat(response.getHeaders()).doesNotContainKey(SET_COOKIE);
+  }
+
+  @Test public void renewsFreshCookieWhenFractionIsZero() throws Exception {
+    User user = User.named("username");
+    when(request.getCookies()).thenReturn(ImmutableMap.of(SESSION_COOKIE, cookie));
+    when(authenticator.getUserCookieData(cookie)).thenReturn(
+        Optional.of(new UserCookieData(user, ZonedDateTime.now().plus(SESSION_LIFETIME))));
+    NewCookie newCookie = new NewCookie(SESSION_COOKIE, "new session");
+    when(sessionLoginResource.cookiesForUser(user)).thenReturn(ImmutableList.of(newCookie));
+
+    CookieConfig cookieConfig = new CookieConfig();
+    cookieConfig.setName(SESSION_COOKIE);
+    new CookieRenewingFilter(cookieConfig, authenticator, sessionLoginResource, 0)
+        .filter(request, response);
+
+    assertThat(getCookieMap(response)).contains(entry(SESSION_COOKIE, "new session"));
+  }
+
   @Test public void doesNothingWhenCookieInvalid() throws Exception {
     when(request.getCookies()).thenReturn(ImmutableMap.of(SESSION_COOKIE, cookie));
-    when(authenticator.authenticate(cookie)).thenReturn(Optional.empty());
+    when(authenticator.getUserCookieData(cookie)).thenReturn(Optional.empty());
 
     filter.filter(request, response);
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.filters;
+
+import com.google.common.net.HttpHeaders;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class GzipETagFilterTest {
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock ContainerRequestContext request;
+  MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+  GzipETagFilter filter = new GzipETagFilter();
+
+  @Before public void setUp() {
+    when(request.getHeaders()).thenReturn(headers);
+  }
+
+  @Test public void stripsGzipSuffix() throws Exception {
+    headers.add(HttpHeaders.IF_NONE_MATCH, "\"abc--gzip\", \"def\"");
+    filter.filter(request);
+    assertThat(headers.getFirst(HttpHeaders.IF_NONE_MATCH)).isEqualTo("\"abc\", \"def\"");
+  }
+
+  @Test public void ignoresRequestsWithoutIfNoneMatch() throws Exception {
+    filter.filter(request);
+    assertThat(headers).isEmpty();
+  }
+}
@@ -24,6 +24,7 @@ import javax.ws.rs.core.SecurityContext;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.Client;
 import keywhiz.auth.mutualssl.SimplePrincipal;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.junit.Before;
@@ -51,7 +52,7 @@ public class AutomationClientAuthFactoryTest {
   AutomationClientAuthFactory factory;
 
   @Before public void setUp() {
-    factory = new AutomationClientAuthFactory(clientDAO);
+    factory = new AutomationClientAuthFactory(clientDAO, ClientCache.disabled());
 
     when(request.getSecurityContext()).thenReturn(securityContext);
     when(clientDAO.getClient("principal")).thenReturn(Optional.of(client));
@@ -16,6 +16,7 @@
 
 package keywhiz.service.providers;
 
+import com.codahale.metrics.MetricRegistry;
 import java.security.Principal;
 import java.time.OffsetDateTime;
 import java.util.Optional;
@@ -23,6 +24,8 @@ import javax.ws.rs.NotAuthorizedException;
 import javax.ws.rs.core.SecurityContext;
 import keywhiz.api.model.Client;
 import keywhiz.auth.mutualssl.SimplePrincipal;
+import keywhiz.service.config.CacheConfig;
+import keywhiz.service.daos.ClientCache;
 import keywhiz.service.daos.ClientDAO;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.junit.Before;
@@ -34,7 +37,9 @@ import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ClientAuthFactoryTest {
@@ -47,11 +52,12 @@ public class ClientAuthFactoryTest {
   @Mock ContainerRequest request;
   @Mock SecurityContext securityContext;
   @Mock ClientDAO clientDAO;
+  @Mock ClientEnrollmentWriter enrollmentWriter;
 
   ClientAuthFactory factory;
 
   @Before public void setUp() {
-    factory = new ClientAuthFactory(clientDAO);
+    factory = new ClientAuthFactory(clientDAO, ClientCache.disabled(), enrollmentWriter);
 
     when(request.getSecurityContext()).thenReturn(securityContext);
     when(clientDAO.getClient("principal")).thenReturn(Optional.of(client));
@@ -81,19 +87,58 @@ public class ClientAuthFactoryTest {
     factory.provide(request);
   }
 
-  @Test public void createsDbRecordForNewClient() throws Exception {
+  @Test public void enrollsNewClientInBackground() throws Exception {
     OffsetDateTime now = OffsetDateTime.now();
-    Client newClient = new Client(2345L, "new-client", "desc", now, "automatic", now, "automatic",
-        true, false);
+    Client provisionalClient = new Client(0, "new-client", "desc", now, "automatic", now,
+        "automatic", true, false);
 
     // lookup doesn't find client
     when(securityContext.getUserPrincipal()).thenReturn(SimplePrincipal.of("CN=new-client"));
     when(clientDAO.getClient("new-client")).thenReturn(Optional.empty());
 
-    // a new DB record is created
-    when(clientDAO.createClient(eq("new-client"), eq("automatic"), any())).thenReturn(2345L);
-    when(clientDAO.getClientById(2345L)).thenReturn(Optional.of(newClient));
+    // the client is queued for creation and served provisionally
+    when(enrollmentWriter.enroll("new-client")).thenReturn(provisionalClient);
 
-    assertThat(factory.provide(request)).isEqualTo(newClient);
+    assertThat(factory.provide(request)).isEqualTo(provisionalClient);
+    verify(clientDAO, never()).createClient(any(), any(), any());
+  }
+
+  @Test public void doesNotCacheProvisionalClients() {
+    factory = new ClientAuthFactory(clientDAO, enabledCache(), enrollmentWriter);
+    when(securityContext.getUserPrincipal()).thenReturn(SimplePrincipal.of("CN=new-client"));
+    when(clientDAO.getClient("new-client")).thenReturn(Optional.empty());
+    when(enrollmentWriter.enroll("new-client")).thenReturn(client);
+
+    factory.provide(request);
+    factory.provide(request);
+    verify(clientDAO, times(2)).getClient("new-client");
+  }
+
+  @Test public void cachedClientSkipsDatabase() {
+    factory = new ClientAuthFactory(clientDAO, enabledCache(), enrollmentWriter);
+    when(securityContext.getUserPrincipal()).thenReturn(principal);
+
+    assertThat(factory.provide(request)).isEqualTo(client);
+    assertThat(factory.provide(request)).isEqualTo(client);
+    verify(clientDAO, times(1)).getClient("principal");
+  }
+
+  @Test(expected = NotAuthorizedException.class)
+  public void rejectsCachedDisabledClients() {
+    Client disabledClient = new Client(1, "disabled", null, null, null, null, null,
+        false /* disabled */, false);
+    ClientCache clientCache = enabledCache();
+    clientCache.get("CN=disabled", () -> Optional.of(disabledClient));
+    factory = new ClientAuthFactory(clientDAO, clientCache, enrollmentWriter);
+
+    when(securityContext.getUserPrincipal()).thenReturn(SimplePrincipal.of("CN=disabled"));
+
+    factory.provide(request);
+  }
+
+  private static ClientCache enabledCache() {
+    CacheConfig cacheConfig = new CacheConfig();
+    cacheConfig.setEnabled(true);
+    return ClientCache.create(cacheConfig, new MetricRegistry());
   }
 }
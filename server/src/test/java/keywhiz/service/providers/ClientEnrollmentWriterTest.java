@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.providers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import io.dropwizard.util.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.ServiceUnavailableException;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.EnrollmentConfig;
+import keywhiz.service.daos.ClientDAO;
+import org.jooq.exception.DataAccessException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static keywhiz.service.providers.ClientEnrollmentWriter.CREATOR;
+import static keywhiz.service.providers.ClientEnrollmentWriter.DESCRIPTION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ClientEnrollmentWriterTest {
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock ClientDAO clientDAO;
+  @Mock ScheduledExecutorService executor;
+
+  ClientEnrollmentWriter writer;
+
+  @Before public void setUp() {
+    EnrollmentConfig config = new EnrollmentConfig();
+    config.setFlushInterval(Duration.milliseconds(50));
+    config.setMaxBatchSize(2);
+    config.setMaxPending(3);
+    writer = new ClientEnrollmentWriter(clientDAO, executor, config);
+  }
+
+  @Test public void servesProvisionalClientWithoutWriting() {
+    Client client = writer.enroll("new-client");
+
+    assertThat(client.getName()).isEqualTo("new-client");
+    assertThat(client.isEnabled()).isTrue();
+    assertThat(client.isAutomationAllowed()).isFalse();
+    verifyZeroInteractions(clientDAO);
+  }
+
+  @Test public void coalescesRepeatedEnrollments() {
+    Client first = writer.enroll("new-client");
+    Client second = writer.enroll("new-client");
+
+    assertThat(second).isSameAs(first);
+    assertThat(writer.pending()).isEqualTo(1);
+    verify(executor, times(1)).schedule(any(Runnable.class), eq(50L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test public void flushWritesInBatches() {
+    writer.enroll("client1");
+    writer.enroll("client2");
+    writer.enroll("client3");
+
+    writer.flush();
+    assertThat(writer.pending()).isEqualTo(1);
+    verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any());
+
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+
+    ArgumentCaptor<Set> batches = ArgumentCaptor.forClass(Set.class);
+    verify(clientDAO, times(2)).createClients(batches.capture(), eq(CREATOR),
+        eq(Optional.of(DESCRIPTION)));
+    assertThat(batches.getAllValues()).extracting(Set::size).containsExactly(2, 1);
+    assertThat(Sets.union(batches.getAllValues().get(0), batches.getAllValues().get(1)))
+        .containsOnly("client1", "client2", "client3");
+  }
+
+  @Test public void retriesFailedBatchIndividually() {
+    writer.enroll("good");
+    writer.enroll("bad");
+    doThrow(new DataAccessException("duplicate")).when(clientDAO)
+        .createClients(eq(ImmutableSet.of("good", "bad")), any(), any());
+    doThrow(new DataAccessException("duplicate")).when(clientDAO)
+        .createClients(eq(ImmutableSet.of("bad")), any(), any());
+
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+    verify(clientDAO).createClients(ImmutableSet.of("good"), CREATOR, Optional.of(DESCRIPTION));
+  }
+
+  @Test public void flushSurvivesUnexpectedFailure() {
+    writer.enroll("client1");
+    doThrow(new IllegalStateException("pool closed")).when(clientDAO)
+        .createClients(eq(ImmutableSet.of("client1")), any(), any());
+
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+
+    writer.enroll("client1");
+    assertThat(writer.pending()).isEqualTo(1);
+  }
+
+  @Test public void refusesNewClientsBeyondLimit() {
+    writer.enroll("client1");
+    writer.enroll("client2");
+    writer.enroll("client3");
+
+    try {
+      writer.enroll("client4");
+      failBecauseExceptionWasNotThrown(ServiceUnavailableException.class);
+    } catch (ServiceUnavailableException expected) {
+    }
+    assertThat(writer.enroll("client1").getName()).isEqualTo("client1");
+    assertThat(writer.pending()).isEqualTo(3);
+
+    writer.flush();
+    assertThat(writer.enroll("client4").getName()).isEqualTo("client4");
+  }
+}
@@ -17,7 +17,9 @@ package keywhiz.service.resources;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
@@ -36,6 +38,9 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AutomationClientResourceTest {
@@ -63,7 +68,7 @@ public class AutomationClientResourceTest {
     when(clientDAO.getClient("client")).thenReturn(Optional.of(client));
     when(aclDAO.getGroupsFor(client)).thenReturn(ImmutableSet.of(firstGroup, secondGroup));
 
-    Response response = resource.findClient(automation, Optional.of("client"));
+    Response response = resource.findClient(automation, Optional.of("client"), null, null);
     assertThat(response.getEntity()).hasSameClassAs(expectedClient);
     ClientDetailResponse actualResponse = (ClientDetailResponse) response.getEntity();
     assertThat(actualResponse).isEqualToComparingFieldByField(expectedClient);
@@ -72,7 +77,25 @@ public class AutomationClientResourceTest {
   @Test(expected = NotFoundException.class)
   public void findClientByNameNotFound() {
     when(clientDAO.getClient("client")).thenReturn(Optional.empty());
-    resource.findClient(automation, Optional.of("client"));
+    resource.findClient(automation, Optional.of("client"), null, null);
+  }
+
+  @Test public void listClientsWithBulkGroupLookup() {
+    Client client = new Client(2, "client", "2nd client", now, "test", now, "test", true, false);
+    Client other = new Client(3, "other", "3rd client", now, "test", now, "test", true, false);
+    Group group = new Group(1, "group", "testing group", now, "client", now, "client");
+
+    when(clientDAO.getClients()).thenReturn(ImmutableSet.of(client, other));
+    when(aclDAO.getGroupsForClients(ImmutableList.of(2L, 3L)))
+        .thenReturn(ImmutableSetMultimap.of(2L, group));
+
+    Response response = resource.findClient(automation, Optional.empty(), null, null);
+    @SuppressWarnings("unchecked")
+    List<ClientDetailResponse> clients = (List<ClientDetailResponse>) response.getEntity();
+    assertThat(clients).extracting("name").containsExactly("client", "other");
+    assertThat(clients.get(0).groups).containsExactly(group);
+    assertThat(clients.get(1).groups).isEmpty();
+    verify(aclDAO, never()).getGroupsFor(any(Client.class));
   }
 
   @Test public void createNewClient() {
@@ -60,7 +60,7 @@ public class AutomationSecretGeneratorsResourceTest {
 
   @Before public void setUp() {
     resource = new AutomationSecretGeneratorsResource(objectMapper,
-        ImmutableMap.of(generatorName, generator));
+        ImmutableMap.of(generatorName, generator), SecretGenerator.DEFAULT_MAX_BATCH_SIZE);
     when(generator.getRequestType()).thenReturn(Integer.class);
   }
 
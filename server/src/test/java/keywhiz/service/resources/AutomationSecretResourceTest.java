@@ -15,14 +15,18 @@
  */
 package keywhiz.service.resources;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
 import java.time.OffsetDateTime;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import keywhiz.api.AutomationSecretResponse;
 import keywhiz.api.CreateSecretRequest;
 import keywhiz.api.model.AutomationClient;
 import keywhiz.api.model.Client;
+import keywhiz.api.model.Group;
 import keywhiz.api.model.Secret;
 import keywhiz.api.model.SecretSeries;
 import keywhiz.api.model.VersionGenerator;
@@ -40,9 +44,12 @@ import org.mockito.junit.MockitoRule;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -101,6 +108,27 @@ public class AutomationSecretResourceTest {
     assertThat(response.metadata()).isEqualTo(secret.getMetadata());
   }
 
+  @Test
+  public void readAllSecretsGroupsGrantsInMemory() {
+    Secret secret1 = new Secret(1, "secret1", "", "desc", "c2VjcmV0MQ==", NOW, "test", NOW, "test",
+        null, null, null);
+    Secret secret2 = new Secret(2, "secret2", "", "desc", "c2VjcmV0Mg==", NOW, "test", NOW, "test",
+        null, null, null);
+    Group group = new Group(3, "group", "desc", NOW, "test", NOW, "test");
+
+    when(secretController.getSecrets()).thenReturn(ImmutableList.of(secret1, secret2));
+    when(aclDAO.getGroupsForSecrets()).thenReturn(ImmutableSetMultimap.of(1L, group));
+
+    List<AutomationSecretResponse> responses = resource.readSecrets(automation, null);
+    assertThat(responses).extracting(AutomationSecretResponse::name)
+        .containsExactly("secret1", "secret2");
+    assertThat(responses.get(0).groups()).containsExactly(group);
+    assertThat(responses.get(1).groups()).isEmpty();
+
+    verify(aclDAO, never()).getGroupsFor(any(Secret.class));
+    verify(secretController, never()).getSecretByIdAndVersion(anyLong(), anyString());
+  }
+
   @Test
   public void deleteSecret() throws Exception {
     SecretSeries secretSeries = SecretSeries.of(0, /* Set by DB */
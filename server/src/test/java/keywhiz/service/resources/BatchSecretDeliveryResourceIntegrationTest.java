@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import io.dropwizard.jackson.Jackson;
+import java.time.OffsetDateTime;
+import java.util.List;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import keywhiz.IntegrationTestRule;
+import keywhiz.KeywhizService;
+import keywhiz.TestClients;
+import keywhiz.api.BatchSecretDeliveryResponse;
+import keywhiz.api.BatchSecretRequest;
+import keywhiz.api.SecretDeliveryResponse;
+import keywhiz.api.model.Secret;
+import keywhiz.client.KeywhizClient;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+
+import static keywhiz.testing.HttpClients.testUrl;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchSecretDeliveryResourceIntegrationTest {
+  ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+  OkHttpClient client;
+  Secret generalPassword;
+
+  @ClassRule public static final RuleChain chain = IntegrationTestRule.rule();
+
+  @Before public void setUp() throws Exception {
+    client = TestClients.mutualSslClient();
+    generalPassword = new Secret(0, "General_Password", null, null, "YXNkZGFz",
+        OffsetDateTime.parse("2011-09-29T15:46:00Z"), null,
+        OffsetDateTime.parse("2011-09-29T15:46:00Z"), null, null, "upload", null);
+  }
+
+  @Test public void returnsEachSecretWithItsStatus() throws Exception {
+    Response response = post(client, ImmutableList.of(
+        "General_Password", "Hacking_Password", "nonexistent", "a..b..c"));
+    assertThat(response.code()).isEqualTo(200);
+
+    List<BatchSecretDeliveryResponse> responses = mapper.readValue(response.body().string(),
+        new TypeReference<List<BatchSecretDeliveryResponse>>() {});
+    assertThat(responses).extracting(r -> r.name)
+        .containsExactly("General_Password", "Hacking_Password", "nonexistent", "a..b..c");
+    assertThat(responses).extracting(r -> r.status).containsExactly(200, 403, 404, 400);
+    assertThat(mapper.writeValueAsString(responses.get(0).secret))
+        .isEqualTo(mapper.writeValueAsString(SecretDeliveryResponse.fromSecret(generalPassword)));
+  }
+
+  @Test public void rejectsEmptyRequest() throws Exception {
+    Response response = post(client, ImmutableList.of());
+    assertThat(response.code()).isEqualTo(422);
+  }
+
+  @Test public void returnsUnauthorizedWhenUnauthenticated() throws Exception {
+    Response response = post(TestClients.unauthenticatedClient(), ImmutableList.of("General_Password"));
+    assertThat(response.code()).isEqualTo(401);
+  }
+
+  private Response post(OkHttpClient httpClient, ImmutableList<String> secrets) throws Exception {
+    String body = mapper.writeValueAsString(new BatchSecretRequest(secrets));
+    Request post = new Request.Builder()
+        .post(RequestBody.create(KeywhizClient.JSON, body))
+        .url(testUrl("/secrets/batch"))
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+        .addHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+        .build();
+    return httpClient.newCall(post).execute();
+  }
+}
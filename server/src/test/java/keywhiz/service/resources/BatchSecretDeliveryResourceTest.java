@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import keywhiz.api.BatchSecretDeliveryResponse;
+import keywhiz.api.BatchSecretRequest;
+import keywhiz.api.SecretDeliveryResponse;
+import keywhiz.api.model.Client;
+import keywhiz.api.model.Secret;
+import keywhiz.api.model.SecretContent;
+import keywhiz.api.model.SecretSeries;
+import keywhiz.api.model.SecretSeriesAndContent;
+import keywhiz.service.crypto.SecretTransformer;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.ClientDAO;
+import keywhiz.service.daos.SecretDAO;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchSecretDeliveryResourceTest {
+  private static final OffsetDateTime NOW = OffsetDateTime.now();
+
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock SecretDAO secretDAO;
+  @Mock SecretTransformer transformer;
+  @Mock AclDAO aclDAO;
+  @Mock ClientDAO clientDAO;
+  BatchSecretDeliveryResource resource;
+
+  final Client client = new Client(0, "principal", null, null, null, null, null, false, false);
+  final SecretSeriesAndContent allowed = seriesAndContent(1, "allowed", "");
+  final SecretSeriesAndContent denied = seriesAndContent(2, "denied", "");
+  final Secret allowedSecret = new Secret(1, "allowed", null, null, "YWJj", NOW, null, NOW, null,
+      null, null, null);
+
+  @Before public void setUp() {
+    resource = new BatchSecretDeliveryResource(secretDAO, transformer, aclDAO, clientDAO);
+    when(secretDAO.getSecretsByNameAndVersion(any()))
+        .thenReturn(ImmutableList.of(allowed, denied));
+    when(aclDAO.getReadableSecretNamesFor(any(), anySetOf(String.class)))
+        .thenReturn(ImmutableSet.of("allowed"));
+    when(transformer.transform(allowed)).thenReturn(allowedSecret);
+    when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
+  }
+
+  @Test public void reportsStatusPerSecretInRequestOrder() {
+    List<BatchSecretDeliveryResponse> responses = resource.getSecrets(
+        new BatchSecretRequest(ImmutableList.of("missing", "denied", "allowed")), client);
+
+    assertThat(responses).containsExactly(
+        BatchSecretDeliveryResponse.failed("missing", 404),
+        BatchSecretDeliveryResponse.failed("denied", 403),
+        BatchSecretDeliveryResponse.found("allowed",
+            SecretDeliveryResponse.fromSecret(allowedSecret)));
+  }
+
+  @Test public void doesNotDecryptDeniedSecrets() {
+    resource.getSecrets(new BatchSecretRequest(ImmutableList.of("denied")), client);
+    verify(transformer, never()).transform(denied);
+  }
+
+  @Test public void reportsNotFoundForDeniedSecretsWhenClientIsUnknown() {
+    when(clientDAO.getClient(client.getName())).thenReturn(Optional.empty());
+
+    List<BatchSecretDeliveryResponse> responses =
+        resource.getSecrets(new BatchSecretRequest(ImmutableList.of("denied")), client);
+    assertThat(responses).containsExactly(BatchSecretDeliveryResponse.failed("denied", 404));
+  }
+
+  @Test public void reportsBadRequestForInvalidNames() {
+    List<BatchSecretDeliveryResponse> responses =
+        resource.getSecrets(new BatchSecretRequest(ImmutableList.of("a..b..c", "allowed")), client);
+
+    assertThat(responses).extracting(r -> r.status).containsExactly(400, 200);
+  }
+
+  @Test public void reportsInternalErrorOnlyForSecretsFailingToDecrypt() {
+    SecretSeriesAndContent corrupt = seriesAndContent(3, "corrupt", "");
+    when(secretDAO.getSecretsByNameAndVersion(any()))
+        .thenReturn(ImmutableList.of(allowed, corrupt));
+    when(aclDAO.getReadableSecretNamesFor(any(), anySetOf(String.class)))
+        .thenReturn(ImmutableSet.of("allowed", "corrupt"));
+    when(transformer.transform(corrupt))
+        .thenThrow(new IllegalArgumentException("Invalid envelope nonce length 0"));
+
+    List<BatchSecretDeliveryResponse> responses =
+        resource.getSecrets(new BatchSecretRequest(ImmutableList.of("corrupt", "allowed")), client);
+
+    assertThat(responses).extracting(r -> r.status).containsExactly(500, 200);
+  }
+
+  private static SecretSeriesAndContent seriesAndContent(long id, String name, String version) {
+    return SecretSeriesAndContent.of(
+        SecretSeries.of(id, name, null, NOW, null, NOW, null, null, null),
+        SecretContent.of(id, id, "encrypted", version, NOW, null, NOW, null, ImmutableMap.of()));
+  }
+}
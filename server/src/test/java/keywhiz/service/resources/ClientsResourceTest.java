@@ -16,13 +16,16 @@
 
 package keywhiz.service.resources;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import java.time.OffsetDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
 import keywhiz.api.ClientDetailResponse;
@@ -71,6 +74,28 @@ public class ClientsResourceTest {
     assertThat(response).containsOnly(client1, client2);
   }
 
+  @Test public void listClientsInPages() {
+    Client client1 = new Client(1, "client", "1st client", now, "test", now, "test", true, false);
+    Client client2 = new Client(2, "client2", "2nd client", now, "test", now, "test", true, false);
+
+    when(clientDAO.getClients(0, 2)).thenReturn(ImmutableList.of(client1, client2));
+    when(clientDAO.getClients(2, 2)).thenReturn(ImmutableList.of());
+
+    Response response = resource.findClients(user, "", null, new IntParam("2"));
+    assertThat(response.getEntity()).isEqualTo(ImmutableList.of(client1, client2));
+    assertThat(response.getLink("next").getUri().toString())
+        .isEqualTo("/admin/clients?after=2&limit=2");
+
+    response = resource.findClients(user, "", new LongParam("2"), new IntParam("2"));
+    assertThat(response.getEntity()).isEqualTo(ImmutableList.of());
+    assertThat(response.getLink("next")).isNull();
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void rejectsOversizedPages() {
+    resource.findClients(user, "", null, new IntParam(Integer.toString(Pagination.MAX_LIMIT + 1)));
+  }
+
   @Test public void createsClient() {
     CreateClientRequest request = new CreateClientRequest("new-client-name");
     when(clientDAO.createClient("new-client-name", "user", Optional.empty())).thenReturn(42L);
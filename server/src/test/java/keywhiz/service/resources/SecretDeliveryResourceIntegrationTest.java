@@ -60,6 +60,27 @@ public class SecretDeliveryResourceIntegrationTest {
         .isEqualTo(mapper.writeValueAsString(SecretDeliveryResponse.fromSecret(generalPassword)));
   }
 
+  @Test public void returnsNotModifiedWhenETagMatches() throws Exception {
+    Request get = new Request.Builder()
+        .get()
+        .url(testUrl("/secret/General_Password"))
+        .build();
+
+    Response response = client.newCall(get).execute();
+    assertThat(response.code()).isEqualTo(200);
+    String etag = response.header("ETag");
+    assertThat(etag).isNotEmpty();
+
+    Request conditionalGet = new Request.Builder()
+        .get()
+        .url(testUrl("/secret/General_Password"))
+        .header("If-None-Match", etag)
+        .build();
+
+    response = client.newCall(conditionalGet).execute();
+    assertThat(response.code()).isEqualTo(304);
+  }
+
   @Test public void returnsNotFoundWhenSecretUnspecified() throws Exception {
     Request get = new Request.Builder()
         .get()
@@ -19,6 +19,9 @@ import java.time.OffsetDateTime;
 import java.util.Optional;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.SanitizedSecret;
@@ -35,6 +38,11 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SecretDeliveryResourceTest {
@@ -45,6 +53,7 @@ public class SecretDeliveryResourceTest {
   @Mock SecretController secretController;
   @Mock AclDAO aclDAO;
   @Mock ClientDAO clientDAO;
+  @Mock Request request;
   SecretDeliveryResource secretDeliveryResource;
 
   final Client client = new Client(0, "principal", null, null, null, null, null, false, false);
@@ -55,6 +64,8 @@ public class SecretDeliveryResourceTest {
 
   @Before public void setUp() {
     secretDeliveryResource = new SecretDeliveryResource(secretController, aclDAO, clientDAO);
+    when(aclDAO.getSecretFingerprintFor(any(), anyString(), anyString()))
+        .thenReturn(Optional.empty());
   }
 
   @Test public void returnsSecretWhenAllowed() throws Exception {
@@ -63,13 +74,15 @@ public class SecretDeliveryResourceTest {
     String name = sanitizedSecret.name();
     String version = sanitizedSecret.version();
 
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(sanitizedSecret));
+    when(aclDAO.getSecretFingerprintFor(client, name, version))
+        .thenReturn(Optional.of("fingerprint"));
     when(secretController.getSecretByNameAndVersion(name, version))
         .thenReturn(Optional.of(secret));
 
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(sanitizedSecret.name(), client);
+    SecretDeliveryResponse response = deliver(sanitizedSecret.name());
     assertThat(response).isEqualTo(SecretDeliveryResponse.fromSecret(secret));
+    // The fingerprint already establishes access.
+    verify(aclDAO, never()).getSanitizedSecretFor(any(), anyString(), anyString());
   }
 
   @Test public void returnsVersionedSecretWhenAllowed() throws Exception {
@@ -78,56 +91,108 @@ public class SecretDeliveryResourceTest {
     Secret versionedSecret = new Secret(2, name, version, null, "U3BpZGVybWFu", NOW, null, NOW,
         null, null, null, null);
 
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(SanitizedSecret.fromSecret(versionedSecret)));
+    when(aclDAO.getSecretFingerprintFor(client, name, version))
+        .thenReturn(Optional.of("fingerprint"));
     when(secretController.getSecretByNameAndVersion(name, version))
         .thenReturn(Optional.of(versionedSecret));
 
     String displayName = versionedSecret.getDisplayName();
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(displayName, client);
+    SecretDeliveryResponse response = deliver(displayName);
     assertThat(response).isEqualTo(SecretDeliveryResponse.fromSecret(versionedSecret));
   }
 
   @Test(expected = NotFoundException.class)
   public void returnsNotFoundWhenClientDoesNotExist() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, secret.getName(), "")).thenReturn(Optional.empty());
     when(clientDAO.getClient(client.getName())).thenReturn(Optional.empty());
     when(secretController.getSecretByNameAndVersion(secret.getName(), ""))
         .thenReturn(Optional.of(secret));
 
-    secretDeliveryResource.getSecret(secret.getName(), client);
+    secretDeliveryResource.getSecret(secret.getName(), client, request);
   }
 
   @Test(expected = NotFoundException.class)
   public void returnsNotFoundWhenSecretDoesNotExist() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, "secret_name", "")).thenReturn(Optional.empty());
     when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
     when(secretController.getSecretByNameAndVersion("secret_name", ""))
         .thenReturn(Optional.empty());
 
-    secretDeliveryResource.getSecret("secret_name", client);
+    secretDeliveryResource.getSecret("secret_name", client, request);
   }
 
   @Test(expected = ForbiddenException.class)
   public void returnsUnauthorizedWhenDenied() throws Exception {
-    when(aclDAO.getSanitizedSecretFor(client, secret.getName(), "")).thenReturn(Optional.empty());
     when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
     when(secretController.getSecretByNameAndVersion(secret.getName(), ""))
         .thenReturn(Optional.of(secret));
 
-    secretDeliveryResource.getSecret(secret.getName(), client);
+    secretDeliveryResource.getSecret(secret.getName(), client, request);
+  }
+
+  @Test public void deniesAccessWithoutDecrypting() throws Exception {
+    Secret encrypted = new Secret(0, "secret_name", null, null, () -> {
+      throw new AssertionError("secret decrypted for denied client");
+    }, NOW, null, NOW, null, null, null, null);
+    when(clientDAO.getClient(client.getName())).thenReturn(Optional.of(client));
+    when(secretController.getSecretByNameAndVersion("secret_name", ""))
+        .thenReturn(Optional.of(encrypted));
+
+    try {
+      secretDeliveryResource.getSecret("secret_name", client, request);
+      failBecauseExceptionWasNotThrown(ForbiddenException.class);
+    } catch (ForbiddenException expected) {
+    }
+  }
+
+  @Test public void unknownClientDoesNotReadSecret() throws Exception {
+    when(clientDAO.getClient(client.getName())).thenReturn(Optional.empty());
+
+    try {
+      secretDeliveryResource.getSecret(secret.getName(), client, request);
+      failBecauseExceptionWasNotThrown(NotFoundException.class);
+    } catch (NotFoundException expected) {
+    }
+    verify(secretController, never()).getSecretByNameAndVersion(anyString(), anyString());
   }
 
   @Test public void doesNotEscapeBase64() throws Exception {
     String name = secretBase64.getName();
     String version = secretBase64.getVersion();
 
-    when(aclDAO.getSanitizedSecretFor(client, name, version))
-        .thenReturn(Optional.of(SanitizedSecret.fromSecret(secretBase64)));
+    when(aclDAO.getSecretFingerprintFor(client, name, version))
+        .thenReturn(Optional.of("fingerprint"));
     when(secretController.getSecretByNameAndVersion(name, version))
         .thenReturn(Optional.of(secretBase64));
 
-    SecretDeliveryResponse response = secretDeliveryResource.getSecret(secretBase64.getName(), client);
+    SecretDeliveryResponse response = deliver(secretBase64.getName());
     assertThat(response.getSecret()).isEqualTo(secretBase64.getSecret());
   }
+
+  @Test public void tagsSecretWithFingerprint() throws Exception {
+    when(aclDAO.getSecretFingerprintFor(client, secret.getName(), ""))
+        .thenReturn(Optional.of("fingerprint"));
+    when(secretController.getSecretByNameAndVersion(secret.getName(), ""))
+        .thenReturn(Optional.of(secret));
+
+    Response response = secretDeliveryResource.getSecret(secret.getName(), client, request);
+    assertThat(response.getEntityTag()).isEqualTo(new EntityTag("fingerprint"));
+    assertThat(response.getEntity()).isEqualTo(SecretDeliveryResponse.fromSecret(secret));
+  }
+
+  @Test public void returnsNotModifiedWithoutReadingSecret() throws Exception {
+    EntityTag entityTag = new EntityTag("fingerprint");
+    when(aclDAO.getSecretFingerprintFor(client, secret.getName(), ""))
+        .thenReturn(Optional.of("fingerprint"));
+    when(request.evaluatePreconditions(entityTag))
+        .thenReturn(Response.notModified().tag(entityTag));
+
+    Response response = secretDeliveryResource.getSecret(secret.getName(), client, request);
+    assertThat(response.getStatus()).isEqualTo(304);
+    assertThat(response.getEntityTag()).isEqualTo(entityTag);
+    verify(secretController, never()).getSecretByNameAndVersion(anyString(), anyString());
+  }
+
+  private SecretDeliveryResponse deliver(String secretName) {
+    return (SecretDeliveryResponse) secretDeliveryResource.getSecret(secretName, client, request)
+        .getEntity();
+  }
 }
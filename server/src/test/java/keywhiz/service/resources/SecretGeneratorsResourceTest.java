@@ -57,7 +57,7 @@ public class SecretGeneratorsResourceTest {
 
   @Before public void setUp() {
     resource = new SecretGeneratorsResource(objectMapper,
-        ImmutableMap.of(generatorName, generator));
+        ImmutableMap.of(generatorName, generator), SecretGenerator.DEFAULT_MAX_BATCH_SIZE);
     when(generator.getRequestType()).thenReturn(Integer.class);
   }
 
@@ -106,6 +106,45 @@ public class SecretsDeliveryResourceIntegrationTest {
     assertThat(response.body().string()).startsWith("[").endsWith("]");
   }
 
+  @Test
+  public void returnsNotModifiedWhenETagMatches() throws Exception {
+    Request get = new Request.Builder()
+        .get()
+        .url(testUrl("/secrets"))
+        .build();
+
+    Response response = client.newCall(get).execute();
+    assertThat(response.code()).isEqualTo(200);
+    String etag = response.header("ETag");
+    assertThat(etag).isNotEmpty();
+
+    Request conditionalGet = new Request.Builder()
+        .get()
+        .url(testUrl("/secrets"))
+        .header("If-None-Match", etag)
+        .build();
+
+    response = client.newCall(conditionalGet).execute();
+    assertThat(response.code()).isEqualTo(304);
+
+    // ETags are per client.
+    response = noSecretsClient.newCall(conditionalGet).execute();
+    assertThat(response.code()).isEqualTo(200);
+  }
+
+  @Test
+  public void watchReturnsSecretsWhenTokenIsStale() throws Exception {
+    Request get = new Request.Builder()
+        .get()
+        .url(testUrl("/secrets/watch?since=stale"))
+        .build();
+
+    Response response = client.newCall(get).execute();
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(response.header("ETag")).isNotEmpty();
+    assertThat(response.body().string()).contains(generalPassword.getName());
+  }
+
   @Test
   public void returnsUnauthorizedWhenUnauthenticated() throws Exception {
     Request get = new Request.Builder()
@@ -15,15 +15,25 @@
  */
 package keywhiz.service.resources;
 
-import com.google.common.collect.ImmutableSet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.jackson.Jackson;
+import java.io.ByteArrayOutputStream;
 import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.List;
+import java.util.function.Consumer;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import keywhiz.KeywhizService;
 import keywhiz.api.SecretDeliveryResponse;
 import keywhiz.api.model.Client;
 import keywhiz.api.model.SanitizedSecret;
 import keywhiz.api.model.Secret;
 import keywhiz.service.daos.AclDAO;
+import org.jooq.exception.DataAccessException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,6 +43,12 @@ import org.mockito.junit.MockitoRule;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SecretsDeliveryResourceTest {
@@ -40,7 +56,11 @@ public class SecretsDeliveryResourceTest {
 
   @Rule public MockitoRule mockito = MockitoJUnit.rule();
 
+  ObjectMapper mapper = KeywhizService.customizeObjectMapper(Jackson.newObjectMapper());
+
   @Mock AclDAO aclDAO;
+  @Mock Request request;
+  @Mock SecretsWatcher watcher;
   SecretsDeliveryResource secretsDeliveryResource;
 
   Secret firstSecret = new Secret(0, "first_secret_name", null, null,
@@ -54,31 +74,75 @@ public class SecretsDeliveryResourceTest {
   Client client;
 
   @Before public void setUp() {
-    secretsDeliveryResource = new SecretsDeliveryResource(aclDAO);
+    secretsDeliveryResource = new SecretsDeliveryResource(aclDAO, mapper, watcher);
     client = new Client(0, "client_name", null, null, null, null, null, false, false);
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn("fingerprint");
   }
 
   @Test public void returnsEmptyJsonArrayWhenUserHasNoSecrets() throws Exception {
-    when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of());
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
-    assertThat(secrets).isEmpty();
+    assertThat(getSecrets()).isEqualTo("[]");
   }
 
   @Test public void returnsJsonArrayWhenUserHasOneSecret() throws Exception {
-    when(aclDAO.getSanitizedSecretsFor(client)).thenReturn(ImmutableSet.of(sanitizedFirstSecret));
+    givenSecrets(sanitizedFirstSecret);
 
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
-    assertThat(secrets).containsOnly(SecretDeliveryResponse.fromSanitizedSecret(
-        SanitizedSecret.fromSecret(firstSecret)));
+    assertThat(getSecrets()).isEqualTo(mapper.writeValueAsString(ImmutableList.of(
+        SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(firstSecret)))));
   }
 
   @Test public void returnsJsonArrayWhenUserHasMultipleSecrets() throws Exception {
-    when(aclDAO.getSanitizedSecretsFor(client))
-        .thenReturn(ImmutableSet.of(sanitizedFirstSecret, sanitizedSecondSecret));
+    givenSecrets(sanitizedFirstSecret, sanitizedSecondSecret);
 
-    List<SecretDeliveryResponse> secrets = secretsDeliveryResource.getSecrets(client);
-    assertThat(secrets).containsOnly(
+    assertThat(getSecrets()).isEqualTo(mapper.writeValueAsString(ImmutableList.of(
         SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(firstSecret)),
-        SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(secondSecret)));
+        SecretDeliveryResponse.fromSanitizedSecret(SanitizedSecret.fromSecret(secondSecret)))));
+  }
+
+  @Test public void returnsNotModifiedWithoutReadingSecrets() throws Exception {
+    EntityTag entityTag = new EntityTag("fingerprint");
+    when(request.evaluatePreconditions(entityTag))
+        .thenReturn(Response.notModified().tag(entityTag));
+
+    Response response = secretsDeliveryResource.getSecrets(client, request);
+    assertThat(response.getStatus()).isEqualTo(304);
+    assertThat(response.getEntity()).isNull();
+    verify(aclDAO, never()).forEachSanitizedSecretFor(any(), any());
+  }
+
+  @Test public void leavesArrayUnterminatedWhenReadingFails() throws Exception {
+    doAnswer(invocation -> {
+      @SuppressWarnings("unchecked")
+      Consumer<SanitizedSecret> consumer = (Consumer<SanitizedSecret>) invocation.getArguments()[1];
+      consumer.accept(sanitizedFirstSecret);
+      throw new DataAccessException("connection lost");
+    }).when(aclDAO).forEachSanitizedSecretFor(eq(client), any());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Response response = secretsDeliveryResource.getSecrets(client, request);
+    try {
+      ((StreamingOutput) response.getEntity()).write(output);
+      failBecauseExceptionWasNotThrown(DataAccessException.class);
+    } catch (DataAccessException expected) {
+    }
+
+    assertThat(output.toString(UTF_8.name())).isEqualTo("[" + mapper.writeValueAsString(
+        SecretDeliveryResponse.fromSanitizedSecret(sanitizedFirstSecret)));
+  }
+
+  private void givenSecrets(SanitizedSecret... secrets) {
+    doAnswer(invocation -> {
+      @SuppressWarnings("unchecked")
+      Consumer<SanitizedSecret> consumer = (Consumer<SanitizedSecret>) invocation.getArguments()[1];
+      Arrays.stream(secrets).forEach(consumer);
+      return null;
+    }).when(aclDAO).forEachSanitizedSecretFor(eq(client), any());
+  }
+
+  private String getSecrets() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Response response = secretsDeliveryResource.getSecrets(client, request);
+    assertThat(response.getEntityTag()).isEqualTo(new EntityTag("fingerprint"));
+    ((StreamingOutput) response.getEntity()).write(output);
+    return output.toString(UTF_8.name());
   }
 }
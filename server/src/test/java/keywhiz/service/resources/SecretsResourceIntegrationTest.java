@@ -18,6 +18,7 @@ package keywhiz.service.resources;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import keywhiz.IntegrationTestRule;
@@ -31,6 +32,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.RuleChain;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
@@ -49,6 +51,17 @@ public class SecretsResourceIntegrationTest {
         .contains("Nobody_PgPass", "Hacking_Password", "General_Password", "NonexistentOwner_Pass",
             "Versioned_Password");
   }
+  @Test public void iteratesOverAllSecrets() throws IOException {
+    keywhizClient.login(DbSeedCommand.defaultUser, DbSeedCommand.defaultPassword.toCharArray());
+    List<String> iterated = new ArrayList<>();
+    keywhizClient.iterateSecrets().forEachRemaining(s -> iterated.add(s.name()));
+
+    List<String> listed =
+        keywhizClient.allSecrets().stream().map(SanitizedSecret::name).sorted().collect(toList());
+    assertThat(iterated.stream().sorted().collect(toList())).isEqualTo(listed);
+    assertThat(iterated).contains("Nobody_PgPass", "Versioned_Password");
+  }
+
   @Test public void listingExcludesSecretContent() throws IOException {
     // This is checking that the response body doesn't contain the secret information anywhere, not
     // just that the resulting Java objects parsed by gson don't.
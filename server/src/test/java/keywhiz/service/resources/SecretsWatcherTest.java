@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package keywhiz.service.resources;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import keywhiz.api.model.Client;
+import keywhiz.service.config.WatchConfig;
+import keywhiz.service.daos.AclDAO;
+import keywhiz.service.daos.ChangeNotifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SecretsWatcherTest {
+  @Rule public MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock AclDAO aclDAO;
+  @Mock ChangeNotifier changeNotifier;
+  @Mock AsyncResponse asyncResponse;
+
+  final Client client = new Client(0, "client", null, null, null, null, null, false, false);
+  final Response changed = Response.ok().build();
+  final Function<String, Response> onChange = (fingerprint) -> changed;
+
+  final List<Runnable> resumes = new ArrayList<>();
+  ScheduledExecutorService executor;
+  SecretsWatcher watcher;
+  Runnable notify;
+
+  @Before public void setUp() {
+    WatchConfig config = new WatchConfig();
+    config.setRecheckInterval(Duration.hours(1));
+    config.setMaxWatches(2);
+    executor = Executors.newSingleThreadScheduledExecutor();
+    watcher = new SecretsWatcher(aclDAO, changeNotifier, executor, this::resumeLater, config);
+
+    ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+    verify(changeNotifier).addListener(listener.capture());
+    notify = listener.getValue();
+  }
+
+  @After public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test public void resumesImmediatelyWhenAlreadyChanged() {
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn("new");
+
+    watcher.watch(client, "old", asyncResponse, onChange);
+    verify(asyncResponse).resume(changed);
+    assertThat(watcher.size()).isZero();
+  }
+
+  @Test public void resumesAfterNotifiedChange() throws Exception {
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn("old");
+    watcher.watch(client, "old", asyncResponse, onChange);
+    assertThat(watcher.size()).isEqualTo(1);
+
+    givenFingerprint("old");
+    notify.run();
+    drain();
+    assertThat(resumes).isEmpty();
+
+    givenFingerprint("new");
+    notify.run();
+    drain();
+    assertThat(watcher.size()).isZero();
+
+    // Responses are written on the response executor, never by the recheck itself.
+    verify(asyncResponse, never()).resume(any(Response.class));
+    assertThat(resumes).hasSize(1);
+    resumes.get(0).run();
+    verify(asyncResponse).resume(changed);
+  }
+
+  @Test public void rejectsWatchesBeyondLimit() {
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn("old");
+    watcher.watch(client, "old", asyncResponse, onChange);
+    watcher.watch(client, "old", asyncResponse, onChange);
+
+    try {
+      watcher.watch(client, "old", asyncResponse, onChange);
+      failBecauseExceptionWasNotThrown(ServiceUnavailableException.class);
+    } catch (ServiceUnavailableException expected) {
+    }
+    assertThat(watcher.size()).isEqualTo(2);
+  }
+
+  @Test public void answersNotModifiedOnTimeout() throws Exception {
+    when(aclDAO.getSecretsFingerprintFor(client)).thenReturn("old");
+    watcher.watch(client, "old", asyncResponse, onChange);
+
+    ArgumentCaptor<TimeoutHandler> handler = ArgumentCaptor.forClass(TimeoutHandler.class);
+    verify(asyncResponse).setTimeoutHandler(handler.capture());
+    handler.getValue().handleTimeout(asyncResponse);
+
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(asyncResponse).resume(response.capture());
+    assertThat(response.getValue().getStatus()).isEqualTo(304);
+    assertThat(watcher.size()).isZero();
+
+    givenFingerprint("new");
+    notify.run();
+    drain();
+    assertThat(resumes).isEmpty();
+  }
+
+  private void givenFingerprint(String fingerprint) {
+    when(aclDAO.getSecretsFingerprintsFor(ImmutableSet.of(client.getName())))
+        .thenReturn(ImmutableMap.of(client.getName(), fingerprint));
+  }
+
+  private synchronized void resumeLater(Runnable resume) {
+    resumes.add(resume);
+  }
+
+  /** Waits for a scheduled recheck to complete. */
+  private void drain() throws Exception {
+    executor.submit(() -> {}).get();
+  }
+}